@@ -0,0 +1,117 @@
+package benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordFetcher;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+
+/**
+ * Generated data shared by the benchmarks.
+ */
+final class BenchmarkData {
+    /** Cities the generated records are spread over, so the location fields repeat. */
+    private static final String[][] PLACES = {
+        {"San Francisco", "California", "US", "94110"},
+        {"Plainview", "New York", "US", "11803"},
+        {"Englewood", "Colorado", "US", "80110"},
+        {"Seattle", "Washington", "US", "98109"},
+        {"Frankfurt am Main", "Hesse", "DE", "60313"},
+        {"Tokyo", "Tokyo", "JP", "100-0001"},
+    };
+
+    /** Fetcher that answers straight away, in place of the network. */
+    static final RecordFetcher STUB_FETCHER = hostname -> new DNRecord(hostname, "10.1.2.3",
+            "Seattle", "Washington", "US", "98109", 47.6062, -122.3321);
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private BenchmarkData() {
+        // empty
+    }
+
+    /**
+     * Gets the generated hostname for a record.
+     *
+     * @param i the number of the record
+     * @return the hostname
+     */
+    static String hostname(int i) {
+        return "host" + i + ".example.com";
+    }
+
+    /**
+     * Generates records.
+     *
+     * @param count the number of records
+     * @return the records
+     */
+    static List<DNRecord> records(int count) {
+        List<DNRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String[] place = PLACES[i % PLACES.length];
+            records.add(new DNRecord(hostname(i),
+                    "10." + (i >>> 16 & 0xFF) + "." + (i >>> 8 & 0xFF) + "." + (i & 0xFF),
+                    place[0], place[1], place[2], place[3], -60 + (i % 12_000) / 100.0,
+                    -180 + (i % 36_000) / 100.0));
+        }
+        return records;
+    }
+
+    /**
+     * Writes a database of generated records.
+     *
+     * @param dir the folder to write to
+     * @param count the number of records
+     * @return the database file
+     * @throws IOException if the file cannot be written
+     */
+    static Path writeDatabase(Path dir, int count) throws IOException {
+        Path database = dir.resolve("hostrecords.xml");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(database))) {
+            DataFormatter.write(records(count), Formats.XML, out);
+        }
+        return database;
+    }
+
+    /**
+     * Reads a file from the benchmark resources.
+     *
+     * @param name the name of the resource
+     * @return its contents
+     */
+    static byte[] resource(String name) {
+        try (var in = BenchmarkData.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Deletes a folder and everything in it.
+     *
+     * @param dir the folder
+     * @throws IOException if something cannot be deleted
+     */
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
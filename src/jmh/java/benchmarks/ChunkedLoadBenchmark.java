@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+import student.model.io.ChunkedRecordReader;
+import student.model.io.RecordReader;
+
+/**
+ * Time to read every record of a large generated file in chunks, on pools of different sizes,
+ * against the sequential xml reader. Scaling is only visible on a machine with that many cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkedLoadBenchmark {
+    /** Number of records in the file. */
+    @Param({"1000000"})
+    private int records;
+
+    /** Format of the file, XML or CSV. */
+    @Param({"XML", "CSV"})
+    private Formats format;
+
+    /** Threads in the pool the chunks are parsed on. */
+    @Param({"1", "2", "4", "8", "16"})
+    private int threads;
+
+    /** Folder holding the file. */
+    private Path dir;
+    /** The generated file. */
+    private Path file;
+    /** The pool the chunks are parsed on. */
+    private ForkJoinPool pool;
+
+    /**
+     * Writes the file and starts the pool.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dninfo-chunked");
+        file = dir.resolve("hostrecords." + format.name().toLowerCase());
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            DataFormatter.write(BenchmarkData.records(records), format, out);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Stops the pool and deletes the file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Reads every record in chunks on the pool, keeping them as a load does.
+     *
+     * @return the number of records
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public int chunked() throws IOException {
+        try (Stream<DNRecord> stream = ChunkedRecordReader.stream(file, pool)) {
+            return stream.toList().size();
+        }
+    }
+
+    /**
+     * Reads every record of the xml file in order on this thread, the way the loader did before.
+     * Only measured once, for the XML file on a single thread.
+     *
+     * @return the number of records
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public int sequential() throws IOException {
+        if (format != Formats.XML || threads != 1) {
+            return 0;
+        }
+        try (Stream<DNRecord> stream = RecordReader.stream(file)) {
+            return stream.toList().size();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.RecordCodec;
+
+/**
+ * Databind against the record codec, for writing a list of records as json and for reading a
+ * captured ipapi.co response as xml and as json. Run with {@code -prof gc} for the allocation per
+ * operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CodecBenchmark {
+    /** Records written by each write. */
+    private static final int RECORDS = 1000;
+
+    /** The records to write. */
+    private final List<DNRecord> records = BenchmarkData.records(RECORDS);
+    /** The captured xml response. */
+    private final byte[] xml = BenchmarkData.resource("ipapi-response.xml");
+    /** The captured json response. */
+    private final byte[] json = BenchmarkData.resource("ipapi-response.json");
+    /** Json mapper without the codec, finding its serializer through reflection. */
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    /** Xml mapper without the codec. */
+    private final XmlMapper xmlMapper = new XmlMapper();
+    /** Factory the codec writes and reads json with. */
+    private final JsonFactory jsonFactory = new JsonFactory();
+    /** Reused output, so the buffer growth is not measured. */
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(RECORDS * 256);
+
+    /**
+     * Writes the records as json with databind.
+     *
+     * @return the size written
+     * @throws IOException if the records cannot be written
+     */
+    @Benchmark
+    public int writeDatabind() throws IOException {
+        out.reset();
+        try (JsonGenerator gen = jsonMapper.getFactory().createGenerator(out)) {
+            gen.writeStartArray();
+            for (DNRecord record : records) {
+                jsonMapper.writeValue(gen, record);
+            }
+            gen.writeEndArray();
+        }
+        return out.size();
+    }
+
+    /**
+     * Writes the records as json with the codec.
+     *
+     * @return the size written
+     * @throws IOException if the records cannot be written
+     */
+    @Benchmark
+    public int writeCodec() throws IOException {
+        out.reset();
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            gen.writeStartArray();
+            for (DNRecord record : records) {
+                RecordCodec.write(record, gen);
+            }
+            gen.writeEndArray();
+        }
+        return out.size();
+    }
+
+    /**
+     * Reads the json response with databind.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord readJsonDatabind() throws IOException {
+        return jsonMapper.readValue(json, DNRecord.class);
+    }
+
+    /**
+     * Reads the json response with the codec.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord readJsonCodec() throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(json)) {
+            return RecordCodec.read(parser);
+        }
+    }
+
+    /**
+     * Reads the xml response with databind.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord readXmlDatabind() throws IOException {
+        return xmlMapper.readValue(xml, DNRecord.class);
+    }
+
+    /**
+     * Reads the xml response with the codec.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord readXmlCodec() throws IOException {
+        return RecordCodec.readXml(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+
+/**
+ * Time for {@link DataFormatter} to write a list of records in each format. The output is thrown
+ * away, so only the formatting is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FormatBenchmark {
+    /** Number of records written. */
+    private static final int RECORDS = 10_000;
+
+    /** The format written. */
+    @Param({"JSON", "XML", "CSV", "PRETTY", "BINARY"})
+    private Formats format;
+
+    /** The records written. */
+    private List<DNRecord> records;
+
+    /**
+     * Generates the records.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        records = BenchmarkData.records(RECORDS);
+    }
+
+    /**
+     * Writes every record.
+     */
+    @Benchmark
+    public void write() {
+        DataFormatter.write(records, format, OutputStream.nullOutputStream());
+    }
+}
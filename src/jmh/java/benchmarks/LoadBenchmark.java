@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.io.RecordSnapshot;
+
+/**
+ * Time to load every record of a generated database, from the xml file and from the binary
+ * snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoadBenchmark {
+    /** Number of records in the database. */
+    @Param({"1000", "100000", "1000000"})
+    private int records;
+
+    /** True to load from the snapshot, false to parse the xml. */
+    @Param({"false", "true"})
+    private boolean snapshot;
+
+    /** Folder holding the database. */
+    private Path dir;
+    /** The generated database. */
+    private Path database;
+
+    /**
+     * Writes the database, and its snapshot if it is used.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dninfo-load");
+        database = BenchmarkData.writeDatabase(dir, records);
+        System.setProperty("dninfo.db.snapshot", Boolean.toString(snapshot));
+        if (snapshot) {
+            RecordSnapshot.forDatabase(database);
+        }
+    }
+
+    /**
+     * Deletes the database.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.clearProperty("dninfo.db.snapshot");
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Loads every record.
+     *
+     * @return the records
+     */
+    @Benchmark
+    public List<DNRecord> load() {
+        return DomainNameModel.getInstance(database.toString(), BenchmarkData.STUB_FETCHER)
+                .getRecords();
+    }
+}
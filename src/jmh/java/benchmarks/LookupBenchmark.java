@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * Time for {@link DomainNameModel#getRecord(String)} when the hostname is in the database, and
+ * when it is not and has to be fetched. The fetcher is a stub that answers straight away, so a miss
+ * measures the model's own work: building the record into the index and saving it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LookupBenchmark {
+    /** Number of records in the database. */
+    private static final int RECORDS = 10_000;
+
+    /** Folder holding the database. */
+    private Path dir;
+    /** The model looked up in. */
+    private DomainNameModel model;
+    /** Picks the next hostname, so the hits do not all find the same record. */
+    private int next;
+
+    /**
+     * Writes the database and loads it.
+     *
+     * @throws IOException if the database cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dninfo-lookup");
+        Path database = BenchmarkData.writeDatabase(dir, RECORDS);
+        model = DomainNameModel.getInstance(database.toString(), BenchmarkData.STUB_FETCHER);
+        model.getRecords();
+    }
+
+    /**
+     * Deletes the database.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Looks up a hostname that is in the database.
+     *
+     * @return the record
+     */
+    @Benchmark
+    public DNRecord hit() {
+        next = (next + 1) % RECORDS;
+        return model.getRecord(BenchmarkData.hostname(next));
+    }
+
+    /**
+     * Looks up a hostname that has never been seen.
+     *
+     * @return the record
+     */
+    @Benchmark
+    public DNRecord miss() {
+        return model.getRecord("miss" + next++ + ".example.org");
+    }
+}
@@ -0,0 +1,70 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * Time to read a captured ipapi.co response into a record, as xml and as json. The fresh mapper
+ * case is what a network lookup does today.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+    /** The captured xml response. */
+    private final byte[] xml = BenchmarkData.resource("ipapi-response.xml");
+    /** The captured json response. */
+    private final byte[] json = BenchmarkData.resource("ipapi-response.json");
+    /** Shared xml mapper. */
+    private final XmlMapper xmlMapper = new XmlMapper();
+    /** Shared json mapper. */
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    /**
+     * Reads the xml response with the shared mapper.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord xml() throws IOException {
+        return xmlMapper.readValue(xml, DNRecord.class);
+    }
+
+    /**
+     * Reads the xml response with a new mapper.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord xmlFreshMapper() throws IOException {
+        return new XmlMapper().readValue(xml, DNRecord.class);
+    }
+
+    /**
+     * Reads the json response with the shared mapper.
+     *
+     * @return the record
+     * @throws IOException if the response cannot be read
+     */
+    @Benchmark
+    public DNRecord json() throws IOException {
+        return jsonMapper.readValue(json, DNRecord.class);
+    }
+}
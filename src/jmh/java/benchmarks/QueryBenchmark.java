@@ -0,0 +1,96 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordQuery;
+
+/**
+ * Cost of "the first 100 records in a region, by hostname" on a loaded model: planned by the model
+ * with its region index and a top-k heap, against sorting every matching record from a full scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QueryBenchmark {
+    /** The query asked. */
+    private static final RecordQuery QUERY = RecordQuery.parse("region=Tokyo", "hostname", "100");
+
+    /** Number of records in the database. */
+    @Param({"200000"})
+    private int records;
+
+    /** Folder holding the database. */
+    private Path dir;
+    /** The loaded model. */
+    private DomainNameModel model;
+
+    /**
+     * Writes the database and loads it.
+     *
+     * @throws IOException if the database cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dninfo-query");
+        model = DomainNameModel.getInstance(BenchmarkData.writeDatabase(dir, records).toString(),
+                BenchmarkData.STUB_FETCHER);
+        model.getRecords();
+    }
+
+    /**
+     * Deletes the database.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Runs the query through the model.
+     *
+     * @return the records
+     */
+    @Benchmark
+    public List<DNRecord> planned() {
+        try (Stream<DNRecord> found = model.query(QUERY)) {
+            return found.toList();
+        }
+    }
+
+    /**
+     * Streams every record, then filters, sorts and limits them.
+     *
+     * @return the records
+     */
+    @Benchmark
+    public List<DNRecord> scanAndSort() {
+        try (Stream<DNRecord> all = model.streamRecords()) {
+            return all.filter(QUERY::matches).sorted(QUERY.order()).limit(QUERY.getLimit())
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.io.ShardManifest;
+
+/**
+ * Cost of the operations that open the database fresh, as a single run of the app does, on a
+ * single file and on a sharded database: looking up one hostname, and adding one record and
+ * compacting it into the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ShardBenchmark {
+    /** Number of records in the database. */
+    @Param({"200000"})
+    private int records;
+
+    /** Number of shards, 1 for the single file database. */
+    @Param({"1", "16"})
+    private int shards;
+
+    /** Folder holding the database. */
+    private Path dir;
+    /** The database given to the model. */
+    private String database;
+    /** Picks the next hostname. */
+    private int next;
+
+    /**
+     * Writes the database, splits it if asked, and builds the snapshots.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("dninfo-shard");
+        Path file = BenchmarkData.writeDatabase(dir, records);
+        if (shards > 1) {
+            Path sharded = dir.resolve("shards");
+            ShardManifest.create(sharded, shards, BenchmarkData.records(records).iterator());
+            database = sharded.toString();
+        } else {
+            database = file.toString();
+        }
+        DomainNameModel.getInstance(database, BenchmarkData.STUB_FETCHER).getRecords();
+    }
+
+    /**
+     * Deletes the database.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Opens the database and looks up a hostname in it.
+     *
+     * @return the record
+     */
+    @Benchmark
+    public DNRecord coldLookup() {
+        next = (next + 7919) % records;
+        return DomainNameModel.getInstance(database, BenchmarkData.STUB_FETCHER)
+                .getRecord(BenchmarkData.hostname(next));
+    }
+
+    /**
+     * Opens the database, adds a record and compacts it into the database file.
+     *
+     * @return the record
+     * @throws IOException if the database cannot be written
+     */
+    @Benchmark
+    public DNRecord insertAndCompact() throws IOException {
+        DomainNameModel model = DomainNameModel.getInstance(database, BenchmarkData.STUB_FETCHER);
+        DNRecord record = model.getRecord("new" + next++ + ".example.org");
+        model.compact();
+        return record;
+    }
+}
@@ -0,0 +1,128 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time for a new JVM to look up a single hostname and exit, with and without an AppCDS archive,
+ * which is what the installed launcher uses. The database snapshot is built before measuring, so
+ * each run is the warm record case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+@Fork(1)
+public class StartupBenchmark {
+    /** The format printed. */
+    @Param({"pretty", "json"})
+    private String format;
+
+    /** True to start with the archive. */
+    @Param({"false", "true"})
+    private boolean cds;
+
+    /** Folder holding the database and the archive. */
+    private Path dir;
+    /** The command that runs a lookup. */
+    private List<String> command;
+
+    /**
+     * Writes the database and runs once to build its snapshot, and the archive if it is used.
+     *
+     * @throws IOException if the files cannot be written
+     * @throws InterruptedException if interrupted waiting for the run
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        dir = Files.createTempDirectory("dninfo-startup");
+        Path database = BenchmarkData.writeDatabase(dir, 1000);
+        Path archive = dir.resolve("app.jsa");
+        command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        if (cds) {
+            command.add("-XX:SharedArchiveFile=" + archive);
+            command.add("-XX:+AutoCreateSharedArchive");
+        }
+        command.addAll(List.of("-cp", jarClassPath(),
+                "student.DNInfoApp", BenchmarkData.hostname(500), "-f", format, "--data",
+                database.toString()));
+        launch();
+    }
+
+    /**
+     * Gets the class path of this JVM with every folder packed into a jar, as an archive can only
+     * be used with jars on the class path, the same as the installed app has.
+     *
+     * @return the class path
+     * @throws IOException if a jar cannot be written
+     */
+    private String jarClassPath() throws IOException {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            Path path = Path.of(entry);
+            if (!Files.isDirectory(path)) {
+                entries.add(entry);
+                continue;
+            }
+            Path jar = dir.resolve("classes" + entries.size() + ".jar");
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar));
+                    Stream<Path> files = Files.walk(path)) {
+                for (Path file : files.filter(Files::isRegularFile).toList()) {
+                    out.putNextEntry(new JarEntry(
+                            path.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, (OutputStream) out);
+                    out.closeEntry();
+                }
+            }
+            entries.add(jar.toString());
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Deletes the database and the archive.
+     *
+     * @throws IOException if the files cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkData.delete(dir);
+    }
+
+    /**
+     * Starts the JVM, looks up the hostname and waits for it to exit.
+     *
+     * @return the exit code
+     * @throws IOException if the JVM cannot be started
+     * @throws InterruptedException if interrupted waiting for it
+     */
+    @Benchmark
+    public int launch() throws IOException, InterruptedException {
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start().waitFor();
+    }
+}
@@ -1,11 +1,14 @@
 package student;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import student.controller.ArgsController;
 
 /**
  * Main driver for the program.
- * 
+ *
  * DO NOT modify the name of this class (we call main directly in our test code).
- * 
+ *
  */
 public final class DNInfoApp {
 
@@ -15,11 +18,60 @@ public final class DNInfoApp {
     }
 
     /**
-     * Main entry point for the program.
-     * 
+     * Main entry point for the program. Exits with status 1 if the run failed, so scripts can tell
+     * a failure from an empty answer.
+     *
      * @param args the command line arguments
      */
     public static void main(String[] args) {
+        int status = run(args);
+        if (status != 0) {
+            System.exit(status);
+        }
+    }
+
+    /**
+     * Runs the program without exiting, reporting any failure on stderr.
+     *
+     * @param args the command line arguments
+     * @return 0 if the run worked, 1 if the arguments were wrong or the run failed
+     */
+    public static int run(String... args) {
+        ArgsController controller = new ArgsController();
+        try {
+            controller.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(controller.getHelp());
+            return 1;
+        }
+        if (controller.isHelp()) {
+            System.out.println(controller.getHelp());
+            return 0;
+        }
+        try {
+            controller.run();
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Error: " + describe(e));
+        }
+        return 1;
+    }
 
+    /**
+     * Describes a failure by its type and message, followed by those of its cause. The message of
+     * an IO exception is often just a file name, so the type says what went wrong with it.
+     *
+     * @param error the failure
+     * @return the description
+     */
+    private static String describe(Throwable error) {
+        String description = error.getClass().getSimpleName()
+                + (error.getMessage() == null ? "" : ": " + error.getMessage());
+        Throwable cause = error.getCause();
+        return cause == null || cause == error ? description
+                : description + " (" + describe(cause) + ")";
     }
 }
@@ -1,13 +1,43 @@
 package student.controller;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordFetcher;
+import student.model.RecordQuery;
+import student.model.formatters.DataFormatter;
 import student.model.formatters.Formats;
+import student.model.io.RecordImporter;
+import student.model.io.ShardManifest;
+import student.model.metrics.Metrics;
 
 /**
  * A controller to handle the arguments.
  */
 public class ArgsController {
+    /** Number of shards --shard splits the database into, unless --shards says otherwise. */
+    private static final int DEFAULT_SHARDS = 16;
+
     /** Model of the application. */
     private DomainNameModel model;
     /** The format to output. */
@@ -16,27 +46,486 @@ public class ArgsController {
     private OutputStream output = System.out;
     /** The hostname to look up. */
     private String hostname = "all"; // default to all
-
-
+    /** The file to write to, null for stdout. */
+    private String outputFile;
+    /** The database file. */
+    private String database = DomainNameModel.DATABASE;
+    /** True if the help was asked for. */
+    private boolean help;
+    /** Location query, null to look up the hostname instead. */
+    private Around around;
+    /** File of hostnames to look up, "-" for stdin, null to look up the hostname instead. */
+    private String input;
+    /** True to write bulk results as they finish rather than in input order. */
+    private boolean unordered;
+    /** File to write the metrics to at exit, null for none. */
+    private String metricsFile;
+    /** Port to serve lookups on, -1 to run once instead. */
+    private int servePort = -1;
+    /** Address of a running server to forward lookups to, null to look up locally. */
+    private String remote;
+    /** Folder to split the database into, null to run a lookup instead. */
+    private String shardDir;
+    /** Number of shards to split the database into. */
+    private int shardCount = DEFAULT_SHARDS;
+    /** Filter, sort and limit for the records written, null to write them all as they are. */
+    private RecordQuery query;
+    /** File of records to convert to the output format, "-" for stdin, null to look up instead. */
+    private String convert;
 
     /**
      * Get the help message. Left this here, so you didn't have to write it - however you are free
      * to change it and the file name if you want/need to.
-     * 
+     *
      * @return the help message
      */
     public String getHelp() {
         return """
-                DNInfoApp [hostname|all] [-f json|xml|csv|pretty] [-o file path] [-h | --help] [--data filepath]
+                DNInfoApp [hostname|all] [-f json|xml|csv|pretty|binary] [-o file path] [-h | --help] [--data filepath]
+                          [--near lat,lon,km | --nearest lat,lon,count] [--input file|- [--unordered]]
+                          [--metrics file] [--serve port | --remote [host:]port]
+                          [--shard folder [--shards count]]
+                          [--where field=value,... ] [--sort [-]field] [--limit count]
+                          [--convert file|-]
 
                 Looks up the information for a given hostname (url) or displays information for
                 all domains in the database. Can be output in json, xml, csv, or pretty format.
                 If -o file is provided, the output will be written to the file instead of stdout.
 
+                --near lists the domains located within km kilometres of lat,lon, closest first.
+                --nearest lists the count domains located closest to lat,lon.
+
+                --input looks up every hostname in the file (- for stdin), one per line, writing each
+                record as soon as it is ready, in input order unless --unordered is given. A summary
+                of hits, misses and failures is written to stderr.
+
+                --metrics writes counters and latency percentiles for dns, http, parsing, saving and
+                formatting to the file when the run ends, as JSON if the name ends in .json and in the
+                Prometheus text format otherwise.
+
+                --serve keeps the database loaded and answers lookups over http on the local port:
+                GET /record/{hostname}?format=json|xml|csv|pretty, POST /records with one hostname
+                per line, and GET /metrics. --remote sends a hostname lookup to such a server, and
+                looks it up locally if no server is running.
+
+                --shard splits the database into count files (16 by default) in the folder, by a hash
+                of the hostname, with a manifest.json listing them. Giving the folder to --data then
+                reads the sharded database: a lookup opens one shard, and a new record rewrites one.
+
+                --where keeps only the records whose fields have the values, ignoring case, such as
+                --where country=US,region=California. --sort orders them by a field, largest first
+                with a leading -, and --limit keeps the first count. They apply to all, a hostname,
+                --near and --nearest. Hostname, ip, region, country and postal are indexed, so a
+                --where on one of them does not read every record.
+
+                --convert reads the records in the file (- for stdin) and writes them in the -f format,
+                one at a time, so a file of any size converts in constant memory. The input format is
+                found from its first bytes: xml, json, csv with a header row, or binary (files only).
+                --where, --sort and --limit apply to the records converted. --data also reads any of
+                these formats, so an export from another system can be used as the database as is;
+                new records are only saved to an xml database, so the export is never rewritten.
+
                 --data is mainly used in testing to provide a different data file, defaults to the hostrecords.xml file.
                 """;
     }
 
+    /**
+     * Parses the command line arguments. Options can be in any order, and the first argument that
+     * is not an option is the hostname.
+     *
+     * @param args the command line arguments
+     * @throws IllegalArgumentException if an option is unknown or is missing its value
+     */
+    public void parseArgs(String... args) {
+        boolean hostnameSet = false;
+        String where = null;
+        String sort = null;
+        String limit = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-h", "--help" -> help = true;
+                case "-f" -> format = checkForFormat(getArgPlusOne(args, i++));
+                case "-o" -> outputFile = getArgPlusOne(args, i++);
+                case "--data" -> database = getArgPlusOne(args, i++);
+                case "--near" -> around = Around.parse(getArgPlusOne(args, i++), false);
+                case "--nearest" -> around = Around.parse(getArgPlusOne(args, i++), true);
+                case "--input" -> input = getArgPlusOne(args, i++);
+                case "--unordered" -> unordered = true;
+                case "--metrics" -> metricsFile = getArgPlusOne(args, i++);
+                case "--serve" -> servePort = parsePort(getArgPlusOne(args, i++));
+                case "--remote" -> remote = getArgPlusOne(args, i++);
+                case "--shard" -> shardDir = getArgPlusOne(args, i++);
+                case "--shards" -> shardCount = parseShards(getArgPlusOne(args, i++));
+                case "--where" -> where = getArgPlusOne(args, i++);
+                case "--sort" -> sort = getArgPlusOne(args, i++);
+                case "--limit" -> limit = getArgPlusOne(args, i++);
+                case "--convert" -> convert = getArgPlusOne(args, i++);
+                default -> {
+                    if (args[i].startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    if (!hostnameSet) {
+                        hostname = args[i];
+                        hostnameSet = true;
+                    }
+                }
+            }
+        }
+        if (where != null || sort != null || limit != null) {
+            query = RecordQuery.parse(where, sort, limit);
+        }
+    }
+
+    /**
+     * Gets the value that follows an option.
+     *
+     * @param args the command line arguments
+     * @param i the position of the option
+     * @return the value
+     * @throws IllegalArgumentException if there is no value
+     */
+    private static String getArgPlusOne(String[] args, int i) {
+        if (i + 1 >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[i]);
+        }
+        return args[i + 1];
+    }
+
+    /**
+     * Parses a port number.
+     *
+     * @param value the port
+     * @return the port
+     * @throws IllegalArgumentException if it is not a port number
+     */
+    private static int parsePort(String value) {
+        try {
+            int port = Integer.parseInt(value.trim());
+            if (port >= 0 && port <= 65_535) {
+                return port;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid port: " + value);
+    }
+
+    /**
+     * Parses a number of shards.
+     *
+     * @param value the number of shards
+     * @return the number of shards
+     * @throws IllegalArgumentException if it is not a positive number
+     */
+    private static int parseShards(String value) {
+        try {
+            int count = Integer.parseInt(value.trim());
+            if (count >= 1) {
+                return count;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid number of shards: " + value);
+    }
+
+    /**
+     * Gets the format for a name.
+     *
+     * @param value the name of the format
+     * @return the format
+     * @throws IllegalArgumentException if there is no such format
+     */
+    private static Formats checkForFormat(String value) {
+        Formats found = Formats.containsValues(value);
+        if (found == null) {
+            throw new IllegalArgumentException("Invalid format: " + value);
+        }
+        return found;
+    }
+
+    /**
+     * Checks if the help was asked for.
+     *
+     * @return true if the help should be shown instead of running
+     */
+    public boolean isHelp() {
+        return help;
+    }
+
+    /**
+     * Runs the lookup the arguments asked for and writes the records out, then writes the metrics
+     * if they were asked for, even if the run failed.
+     *
+     * @throws IOException if the output file cannot be written
+     * @throws IllegalArgumentException if the location query is not valid
+     */
+    public void run() throws IOException {
+        if (servePort >= 0) {
+            serve();
+            return;
+        }
+        try {
+            if (shardDir != null) {
+                shard();
+                return;
+            }
+            if (input != null) {
+                runBulk();
+                return;
+            }
+            if (convert != null) {
+                convert();
+                return;
+            }
+            openOutput();
+            try {
+                if (!forward()) {
+                    model = DomainNameModel.getInstance(database);
+                    write();
+                }
+            } finally {
+                closeOutput();
+            }
+        } finally {
+            writeMetrics();
+        }
+    }
+
+    /**
+     * Starts serving lookups and returns, leaving the server running until the program is stopped.
+     * The metrics are written when it stops.
+     *
+     * @throws IOException if the port cannot be opened
+     */
+    private void serve() throws IOException {
+        model = DomainNameModel.getInstance(database);
+        model.getRecords(); // load the database now rather than on the first request
+        LookupServer server = new LookupServer(model, servePort);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            writeMetrics();
+        }, "lookup-server-shutdown"));
+        System.err.println("Serving lookups on http://localhost:" + server.getPort() + "/");
+    }
+
+    /**
+     * Splits the database into the folder given with --shard.
+     *
+     * @throws IOException if the shards cannot be written
+     */
+    private void shard() throws IOException {
+        model = DomainNameModel.getInstance(database);
+        try (Stream<DNRecord> records = model.streamRecords()) {
+            ShardManifest manifest = ShardManifest.create(Path.of(shardDir), shardCount,
+                    records.iterator());
+            System.err.println("Wrote " + manifest.getShards().size() + " shards listed in "
+                    + manifest.getFile());
+        }
+    }
+
+    /**
+     * Converts the records in the file given with --convert to the output format, reading and
+     * writing one record at a time.
+     *
+     * @throws IOException if the input cannot be opened or the output cannot be written
+     */
+    private void convert() throws IOException {
+        Stream<DNRecord> records = "-".equals(convert)
+                ? RecordImporter.stream(new BufferedInputStream(System.in))
+                : RecordImporter.stream(Path.of(convert));
+        try (records) {
+            openOutput();
+            try {
+                DataFormatter.write(query == null ? records : query.apply(records), format,
+                        output);
+            } finally {
+                closeOutput();
+            }
+        }
+    }
+
+    /**
+     * Sends the hostname lookup to the server given with --remote, and writes its answer.
+     *
+     * @return true if the server answered, false if the lookup should be done locally
+     * @throws IOException if the output cannot be written
+     */
+    private boolean forward() throws IOException {
+        if (remote == null || around != null || query != null
+                || "all".equalsIgnoreCase(hostname)) {
+            return false;
+        }
+        String authority = remote.contains(":") ? remote : "localhost:" + remote;
+        URI uri = URI.create("http://" + authority + "/record/"
+                + URLEncoder.encode(hostname, StandardCharsets.UTF_8) + "?format="
+                + format.name().toLowerCase(Locale.ROOT));
+        HttpResponse<byte[]> response;
+        try {
+            response = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()
+                    .send(HttpRequest.newBuilder(uri).GET().build(),
+                            HttpResponse.BodyHandlers.ofByteArray());
+        } catch (ConnectException | HttpConnectTimeoutException e) {
+            System.err.println("No lookup server at " + authority + ", looking up locally");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for " + authority, e);
+        }
+        if (response.statusCode() == 200) {
+            output.write(response.body());
+        } else {
+            // the same as a local lookup that fails: the reason on stderr, an empty list out
+            System.err.print(new String(response.body(), StandardCharsets.UTF_8));
+            DataFormatter.write(List.of(), format, output);
+        }
+        return true;
+    }
+
+    /**
+     * Writes the metrics to the file given with --metrics, reporting rather than throwing any
+     * failure so it does not hide the result of the run.
+     */
+    private void writeMetrics() {
+        if (metricsFile == null) {
+            return;
+        }
+        try {
+            Metrics.write(Path.of(metricsFile));
+        } catch (IOException e) {
+            System.err.println("Unable to write metrics to " + metricsFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Opens the output file, if one was given.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    private void openOutput() throws IOException {
+        if (outputFile != null && !"stdout".equalsIgnoreCase(outputFile)) {
+            output = new BufferedOutputStream(Files.newOutputStream(Path.of(outputFile)));
+        }
+    }
+
+    /**
+     * Closes the output, unless it is stdout.
+     *
+     * @throws IOException if the output cannot be closed
+     */
+    private void closeOutput() throws IOException {
+        if (output != System.out) {
+            output.close();
+        }
+    }
+
+    /**
+     * Looks up every hostname in the input, writing each record as soon as it is ready, then
+     * writes a summary to stderr.
+     *
+     * A miss is a hostname that had to be fetched, counted by wrapping the network fetcher.
+     *
+     * @throws IOException if the input cannot be opened or the output cannot be written
+     */
+    private void runBulk() throws IOException {
+        AtomicInteger fetched = new AtomicInteger();
+        RecordFetcher network = RecordFetcher.network();
+        model = DomainNameModel.getInstance(database, hostname -> {
+            DNRecord record = network.fetch(hostname);
+            fetched.incrementAndGet();
+            return record;
+        });
+        boolean stdin = "-".equals(input);
+        BufferedReader in = stdin
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(input), StandardCharsets.UTF_8);
+        try {
+            openOutput();
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        try (BulkLookup lookups = new BulkLookup(model, in, DomainNameModel.DEFAULT_CONCURRENCY,
+                !unordered)) {
+            DataFormatter.write(lookups, format, output, 1);
+            int misses = fetched.get();
+            int hits = lookups.getLookedUp() - lookups.getFailed() - misses;
+            System.err.println("Looked up " + lookups.getLookedUp() + " hostnames: " + hits
+                    + " hits, " + misses + " misses, " + lookups.getFailed() + " failures");
+        } finally {
+            closeOutput();
+            if (!stdin) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Writes the records asked for to the output, narrowed by the query if one was given. A query
+     * over all the records is run by the model, so it can use its indexes, and is streamed to the
+     * output as it is answered.
+     */
+    private void write() {
+        if (around != null) {
+            List<DNRecord> found = around.nearest()
+                    ? model.getNearestRecords(around.latitude(), around.longitude(),
+                            (int) around.limit())
+                    : model.getRecordsNear(around.latitude(), around.longitude(), around.limit());
+            DataFormatter.write(narrow(found), format, output);
+        } else if ("all".equalsIgnoreCase(hostname)) {
+            try (Stream<DNRecord> records = query == null ? model.streamRecords()
+                    : model.query(query)) {
+                DataFormatter.write(records, format, output);
+            }
+        } else {
+            DNRecord record = model.getRecord(hostname);
+            DataFormatter.write(narrow(record == null ? List.of() : List.of(record)), format,
+                    output);
+        }
+    }
+
+    /**
+     * Narrows records already found by the query, if one was given.
+     *
+     * @param found the records
+     * @return the records the query keeps
+     */
+    private List<DNRecord> narrow(List<DNRecord> found) {
+        return query == null ? found : query.apply(found.stream()).toList();
+    }
 
+    /**
+     * A location query from --near or --nearest.
+     *
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param limit the radius in kilometres, or the number of records for nearest
+     * @param nearest true for the closest records, false for the records within the radius
+     */
+    private record Around(double latitude, double longitude, double limit, boolean nearest) {
 
+        /**
+         * Parses the value of the option.
+         *
+         * @param value lat,lon,km or lat,lon,count
+         * @param nearest true for --nearest
+         * @return the query
+         * @throws IllegalArgumentException if the value is not three numbers
+         */
+        static Around parse(String value, boolean nearest) {
+            String[] parts = value.split(",");
+            try {
+                if (parts.length == 3) {
+                    double limit = nearest ? Integer.parseInt(parts[2].trim())
+                            : Double.parseDouble(parts[2].trim());
+                    return new Around(Double.parseDouble(parts[0].trim()),
+                            Double.parseDouble(parts[1].trim()), limit, nearest);
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            String expected = nearest ? "lat,lon,count" : "lat,lon,km";
+            throw new IllegalArgumentException("Expected " + expected + " but got: " + value);
+        }
+    }
 }
@@ -0,0 +1,229 @@
+package student.controller;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.DomainNameModel.LookupResult;
+
+/**
+ * Looks up hostnames read one per line, handing back each record as soon as it is ready.
+ *
+ * A reader thread reads the lines and starts a lookup on a virtual thread for each one. At most
+ * maxConcurrency lookups are running or waiting to be taken at any time, so a long input never
+ * piles up in memory. In ordered mode the records come back in input order, otherwise in the
+ * order the lookups finish. Blank lines and lines starting with # are skipped.
+ *
+ * Once the input holds more than a handful of hostnames, the model is loaded into memory before
+ * the rest are started, so each lookup checks memory instead of reading the database file.
+ *
+ * Hostnames that fail are reported on stderr and left out, and counted in {@link #getFailed()}.
+ */
+final class BulkLookup implements Iterator<DNRecord>, AutoCloseable {
+    /** Number of hostnames looked up before the model is loaded into memory. */
+    private static final int LOAD_AFTER = 16;
+
+    /** Put on the queue after the last result. */
+    private static final CompletableFuture<LookupResult> END = new CompletableFuture<>();
+
+    /** The model to look up in. */
+    private final DomainNameModel model;
+    /** The hostnames, one per line. */
+    private final BufferedReader in;
+    /** True to hand back the records in input order. */
+    private final boolean ordered;
+    /** A permit for each lookup running or waiting to be taken. */
+    private final Semaphore permits;
+    /** The results to hand back, in the order they are taken. */
+    private final BlockingQueue<CompletableFuture<LookupResult>> ready =
+            new LinkedBlockingQueue<>();
+    /** Reads the lines and starts the lookups. */
+    private final Thread reader;
+
+    /** The error reading the input, if there was one. */
+    private volatile IOException readError;
+    /** The next record, or null if it has not been taken yet. */
+    private DNRecord next;
+    /** True once the last result has been taken. */
+    private boolean done;
+    /** Number of hostnames looked up. */
+    private int lookedUp;
+    /** Number of hostnames that failed. */
+    private int failed;
+
+    /**
+     * Starts looking up the hostnames.
+     *
+     * @param model the model to look up in
+     * @param in the hostnames, one per line; it is not closed
+     * @param maxConcurrency the most lookups running or waiting to be taken
+     * @param ordered true to hand back the records in input order
+     */
+    BulkLookup(DomainNameModel model, BufferedReader in, int maxConcurrency, boolean ordered) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.model = model;
+        this.in = in;
+        this.ordered = ordered;
+        this.permits = new Semaphore(maxConcurrency);
+        this.reader = Thread.ofVirtual().name("bulk-input").start(this::readAll);
+    }
+
+    /**
+     * Reads every line and starts its lookup, then marks the end once every lookup is done.
+     */
+    private void readAll() {
+        // closing the executor waits for the lookups, so END is always queued last
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String line;
+            int read = 0;
+            while ((line = in.readLine()) != null) {
+                String hostname = line.trim();
+                if (hostname.isEmpty() || hostname.startsWith("#")) {
+                    continue;
+                }
+                if (++read == LOAD_AFTER + 1) {
+                    loadModel();
+                }
+                permits.acquire();
+                CompletableFuture<LookupResult> result = new CompletableFuture<>();
+                if (ordered) {
+                    ready.add(result);
+                }
+                executor.execute(() -> {
+                    result.complete(lookUp(hostname));
+                    if (!ordered) {
+                        ready.add(result);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            readError = e;
+        } catch (InterruptedException e) {
+            // closed before the input was finished
+        } finally {
+            ready.add(END);
+        }
+    }
+
+    /**
+     * Loads the model into memory. If it cannot be read, the lookups go on without it and each
+     * reports the failure itself.
+     */
+    private void loadModel() {
+        try {
+            model.load();
+        } catch (UncheckedIOException e) {
+            System.err.println("Unable to load the database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up a hostname, never throwing.
+     *
+     * @param hostname the hostname
+     * @return the result
+     */
+    private LookupResult lookUp(String hostname) {
+        try {
+            return model.getResult(hostname);
+        } catch (RuntimeException e) {
+            return new LookupResult(hostname, null, e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Blocks until the next lookup is done.
+     *
+     * @throws UncheckedIOException if the input could not be read
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    @Override
+    public boolean hasNext() {
+        while (next == null && !done) {
+            CompletableFuture<LookupResult> result = take();
+            if (result == END) {
+                done = true;
+                if (readError != null) {
+                    throw new UncheckedIOException("Unable to read the hostnames", readError);
+                }
+                break;
+            }
+            permits.release();
+            LookupResult lookup = result.join();
+            lookedUp++;
+            if (lookup.isSuccess()) {
+                next = lookup.record();
+            } else {
+                failed++;
+                String reason = lookup.error() == null ? "not found" : lookup.error().getMessage();
+                System.err.println("Unable to look up " + lookup.hostname() + ": " + reason);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public DNRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        DNRecord record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Takes the next result off the queue.
+     *
+     * @return the result, or END
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    private CompletableFuture<LookupResult> take() {
+        try {
+            return ready.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Bulk lookup interrupted");
+        }
+    }
+
+    /**
+     * Gets the number of hostnames looked up so far, including the ones that failed.
+     *
+     * @return the number of hostnames
+     */
+    int getLookedUp() {
+        return lookedUp;
+    }
+
+    /**
+     * Gets the number of hostnames that failed so far.
+     *
+     * @return the number of failures
+     */
+    int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Stops reading the input. Lookups already started still finish.
+     */
+    @Override
+    public void close() {
+        reader.interrupt();
+    }
+}
@@ -0,0 +1,241 @@
+package student.controller;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.LookupResult;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+import student.model.metrics.Metrics;
+
+/**
+ * Serves lookups over http from a model that stays loaded, so repeated lookups skip the JVM start,
+ * the database load and the cold caches.
+ *
+ * <ul>
+ * <li>{@code GET /record/{hostname}?format=json|xml|csv|pretty|binary} - the record for a hostname,
+ * json by default. 404 if it is not in the database and cannot be fetched.</li>
+ * <li>{@code POST /records?format=...} - the records for the hostnames in the body, one per line,
+ * streamed in input order as each is ready. Hostnames that fail are left out.</li>
+ * <li>{@code GET /metrics} - the metrics in the Prometheus text format.</li>
+ * </ul>
+ *
+ * Each request is handled on its own virtual thread. The server only listens on the loopback
+ * address, it is meant for the local machine.
+ */
+public final class LookupServer implements AutoCloseable {
+    /** Most lookups running at once for a single batch request. */
+    private static final int BATCH_CONCURRENCY = DomainNameModel.DEFAULT_CONCURRENCY;
+
+    /** The model lookups are answered from. */
+    private final DomainNameModel model;
+    /** The http server. */
+    private final HttpServer server;
+    /** Runs each request on a virtual thread. */
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Starts the server on a loopback port.
+     *
+     * @param model the model to answer lookups from
+     * @param port the port, 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public LookupServer(DomainNameModel model, int port) throws IOException {
+        this.model = model;
+        this.server = HttpServer.create(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/record/", this::handleRecord);
+        server.createContext("/records", this::handleRecords);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Gets the port the server is listening on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, letting the requests that are running finish for up to a second.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+    }
+
+    /**
+     * Answers {@code GET /record/{hostname}}.
+     *
+     * @param exchange the request
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleRecord(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!checkMethod(exchange, "GET")) {
+                return;
+            }
+            Formats format = format(exchange);
+            String hostname = exchange.getRequestURI().getPath().substring("/record/".length());
+            if (format == null || hostname.isBlank() || hostname.contains("/")) {
+                sendText(exchange, 400, "Expected /record/{hostname}?format=json|xml|csv|pretty");
+                return;
+            }
+            LookupResult result = model.getResult(hostname);
+            if (!result.isSuccess()) {
+                boolean missing = result.error() == null
+                        || result.error() instanceof UnknownHostException;
+                String reason = result.error() == null ? "not found" : result.error().getMessage();
+                sendText(exchange, missing ? 404 : 502,
+                        "Unable to look up " + hostname + ": " + reason);
+                return;
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            DataFormatter.write(List.of(result.record()), format, body);
+            exchange.getResponseHeaders().set("Content-Type", contentType(format));
+            exchange.sendResponseHeaders(200, body.size());
+            body.writeTo(exchange.getResponseBody());
+        } catch (RuntimeException e) {
+            System.err.println("Unable to answer " + exchange.getRequestURI() + ": " + e);
+        }
+    }
+
+    /**
+     * Answers {@code POST /records}, streaming each record as soon as it is ready.
+     *
+     * @param exchange the request
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleRecords(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!checkMethod(exchange, "POST")) {
+                return;
+            }
+            Formats format = format(exchange);
+            if (format == null || !"/records".equals(exchange.getRequestURI().getPath())) {
+                sendText(exchange, 400, "Expected /records?format=json|xml|csv|pretty");
+                return;
+            }
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+            try (BulkLookup lookups = new BulkLookup(model, in, BATCH_CONCURRENCY, true)) {
+                exchange.getResponseHeaders().set("Content-Type", contentType(format));
+                exchange.sendResponseHeaders(200, 0);
+                DataFormatter.write(lookups, format, exchange.getResponseBody(), 1);
+            }
+        } catch (UncheckedIOException e) {
+            // the client went away, or sent a body that could not be read
+            System.err.println("Unable to answer " + exchange.getRequestURI() + ": "
+                    + e.getCause().getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("Unable to answer " + exchange.getRequestURI() + ": " + e);
+        }
+    }
+
+    /**
+     * Answers {@code GET /metrics}.
+     *
+     * @param exchange the request
+     * @throws IOException if the response cannot be sent
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!checkMethod(exchange, "GET")) {
+                return;
+            }
+            StringBuilder text = new StringBuilder();
+            Metrics.writePrometheus(text);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    /**
+     * Checks the method of a request, answering 405 if it is not the one expected.
+     *
+     * @param exchange the request
+     * @param method the method expected
+     * @return true if the method is the one expected
+     * @throws IOException if the response cannot be sent
+     */
+    private static boolean checkMethod(HttpExchange exchange, String method) throws IOException {
+        if (method.equals(exchange.getRequestMethod())) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", method);
+        sendText(exchange, 405, "Expected " + method);
+        return false;
+    }
+
+    /**
+     * Gets the format asked for in the query string.
+     *
+     * @param exchange the request
+     * @return the format, json if none was asked for, or null if it is not a format
+     */
+    private static Formats format(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("format=")) {
+                    return Formats.containsValues(parameter.substring("format=".length()));
+                }
+            }
+        }
+        return Formats.JSON;
+    }
+
+    /**
+     * Gets the content type for a format.
+     *
+     * @param format the format
+     * @return the content type
+     */
+    private static String contentType(Formats format) {
+        return switch (format) {
+            case JSON -> "application/json";
+            case XML -> "application/xml";
+            case CSV -> "text/csv; charset=utf-8";
+            case BINARY -> "application/octet-stream";
+            default -> "text/plain; charset=utf-8";
+        };
+    }
+
+    /**
+     * Sends a short plain text response.
+     *
+     * @param exchange the request
+     * @param status the status code
+     * @param message the text
+     * @throws IOException if the response cannot be sent
+     */
+    private static void sendText(HttpExchange exchange, int status, String message)
+            throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+    }
+}
@@ -1,13 +1,20 @@
 package student.model;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.Path;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
 import student.model.formatters.DataFormatter;
 import student.model.formatters.Formats;
+import student.model.io.ShardManifest;
 
 
 /**
@@ -22,6 +29,9 @@ public interface DomainNameModel {
     /** Do not change the file address! */
     String DATABASE = "data/hostrecords.xml";
 
+    /** Default number of hostnames looked up at the same time by a batch. */
+    int DEFAULT_CONCURRENCY = 32;
+
     /**
      * Get the records as a list.
      * 
@@ -29,11 +39,23 @@ public interface DomainNameModel {
      */
     List<DNRecord> getRecords();
 
+    /**
+     * Streams the records one at a time, in database order.
+     * 
+     * Unlike {@link #getRecords()}, this does not need the whole database in memory, so the first
+     * record is available as soon as it is read. The stream should be closed when done, as it may
+     * hold the database file open.
+     * 
+     * @return the records
+     */
+    Stream<DNRecord> streamRecords();
+
     /**
      * Gets a single record by hostname.
      * 
      * If the record does not exist, gets the information based off the IP address, builds the
-     * record, adds (and saves) it to hostrecords.xml, then returns the new record.
+     * record, adds (and saves) it to hostrecords.xml, then returns the new record. The save is an
+     * append to the journal next to hostrecords.xml, which {@link #compact()} folds back in.
      * 
      * @param hostname the hostname to look up
      * @return the record
@@ -42,6 +64,121 @@ public interface DomainNameModel {
      */
     DNRecord getRecord(String hostname);
 
+    /**
+     * Gets all the records where a field matches a value, ignoring case. For example, all the
+     * hostnames that resolve to an IP address.
+     * 
+     * The hostname, ip, country, region and postal fields are indexed, so searching them does not
+     * scan the records.
+     * 
+     * @param field the field to search
+     * @param value the value to match
+     * @return the matching records, in database order
+     */
+    List<DNRecord> getRecordsBy(RecordField field, String value);
+
+    /**
+     * Groups the records by the value of a field. The keys are the lower case values.
+     * 
+     * @param field the field to group by
+     * @return the records for each value
+     * @see #getRecordsBy(RecordField, String)
+     */
+    Map<String, List<DNRecord>> groupRecordsBy(RecordField field);
+
+    /**
+     * Gets the records that match a query, sorted and limited as it asks.
+     * 
+     * Without a sort, the matches are streamed in database order as they are found. With a sort
+     * and a limit, only the limit best records are held at a time. Models can use their indexes to
+     * avoid reading the records that cannot match. The stream should be closed when done.
+     * 
+     * @param query the query
+     * @return the matching records
+     */
+    default Stream<DNRecord> query(RecordQuery query) {
+        return query.apply(streamRecords());
+    }
+
+    /**
+     * Gets the records located within a distance of a point, using a spatial index over the
+     * latitude and longitude. Records without a location (0, 0) are never returned.
+     * 
+     * @param latitude latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param radiusKm the distance in kilometres
+     * @return the records, closest first
+     * @throws IllegalArgumentException if the point is not a valid location or the radius is
+     *         negative
+     */
+    List<DNRecord> getRecordsNear(double latitude, double longitude, double radiusKm);
+
+    /**
+     * Gets the records located closest to a point.
+     * 
+     * @param latitude latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param count the most records to return
+     * @return the records, closest first
+     * @throws IllegalArgumentException if the point is not a valid location or count is less than
+     *         1
+     * @see #getRecordsNear(double, double, double)
+     */
+    List<DNRecord> getNearestRecords(double latitude, double longitude, int count);
+
+    /**
+     * Gets the record for a hostname like {@link #getRecord(String)}, but returns a failure in the
+     * result instead of reporting it.
+     * 
+     * @param hostname the hostname to look up
+     * @return the result of the lookup
+     */
+    LookupResult getResult(String hostname);
+
+    /**
+     * Gets the records for many hostnames at once, using the default concurrency.
+     * 
+     * @param hostnames the hostnames to look up
+     * @return one result per hostname, in the same order as the hostnames
+     * @see #getRecords(Collection, int)
+     */
+    default List<LookupResult> getRecords(Collection<String> hostnames) {
+        return getRecords(hostnames, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Gets the records for many hostnames at once.
+     * 
+     * Each hostname is handled like {@link #getRecord(String)}, but the misses are looked up at the
+     * same time, with at most maxConcurrency lookups running at once. A hostname that fails does
+     * not stop the batch, its result holds the error instead.
+     * 
+     * @param hostnames the hostnames to look up
+     * @param maxConcurrency the most lookups to run at the same time
+     * @return one result per hostname, in the same order as the hostnames
+     * @throws IllegalArgumentException if maxConcurrency is less than 1
+     */
+    List<LookupResult> getRecords(Collection<String> hostnames, int maxConcurrency);
+
+    /**
+     * Loads the records into memory now, rather than when they are first needed.
+     * 
+     * A lookup on a model that is not loaded reads the database file up to the match, which is
+     * quick once but slow many times over. Callers about to look up many hostnames one at a time
+     * should load first. Does nothing by default.
+     */
+    default void load() {
+        // nothing to load
+    }
+
+    /**
+     * Folds the records saved since the last compaction into the database file, replacing the file
+     * in one atomic rename. Does nothing if there is nothing new.
+     * 
+     * @throws IOException if the database cannot be written
+     */
+    void compact() throws IOException;
+
     /**
      * Writes out the records to the outputstream.
      * 
@@ -55,6 +192,19 @@ public interface DomainNameModel {
         DataFormatter.write(records, format, out);
     }
 
+    /**
+     * Writes out the records to the outputstream as the stream produces them, so the output starts
+     * before the last record is read.
+     * 
+     * @param records the records to write
+     * @param format the format to write the records in
+     * @param out the output stream to write to
+     * @see #streamRecords()
+     */
+    static void writeRecords(Stream<DNRecord> records, Formats format, OutputStream out) {
+        DataFormatter.write(records, format, out);
+    }
+
 
     /**
      * Gets an instance of the model using the 'default' location.
@@ -81,8 +231,26 @@ public interface DomainNameModel {
      * @return the instance of the model
      */
     static DomainNameModel getInstance(String database) {
-        throw new UnsupportedOperationException("Not implemented yet");
-        // you will want to implement this specific to your type of model - if you use it!
+        return getInstance(database, RecordFetcher.network());
+    }
+
+    /**
+     * Gets an instance of the model that builds new records with the given fetcher.
+     * 
+     * The database is a single xml file, or a folder (or its manifest.json) holding a database
+     * sharded by {@link ShardManifest#create}.
+     * 
+     * @param database the name of the file to use
+     * @param fetcher used to build the records that are not in the database
+     * @return the instance of the model
+     * @throws java.io.UncheckedIOException if a sharded database has no readable manifest
+     */
+    static DomainNameModel getInstance(String database, RecordFetcher fetcher) {
+        Path path = Path.of(database);
+        if (ShardManifest.isSharded(path)) {
+            return new ShardedDomainNameModel(path, fetcher);
+        }
+        return new DomainNameModelImpl(database, fetcher);
     }
 
 
@@ -90,6 +258,9 @@ public interface DomainNameModel {
      * Primary record to pass around between objects. Is immutable and uses Jackson annotations for
      * serialization.
      * 
+     * The fetched-at time is kept in the database, so old records can be refreshed, but is not
+     * part of the output formats.
+     * 
      * @param hostname the hostname
      * @param ip the IP address
      * @param city the city
@@ -98,6 +269,7 @@ public interface DomainNameModel {
      * @param postal the postal code
      * @param latitude the latitude
      * @param longitude the longitude
+     * @param fetchedAt when the record was fetched, in epoch millis, 0 if that is not known
      * @return the record
      */
     @JsonIgnoreProperties(ignoreUnknown = true)
@@ -105,7 +277,54 @@ public interface DomainNameModel {
     @JsonPropertyOrder({"hostname", "ip", "city", "region", "country", "postal", "latitude",
             "longitude"})
     record DNRecord(String hostname, String ip, String city, String region, String country,
-            String postal, double latitude, double longitude) {
+            String postal, double latitude, double longitude, @JsonIgnore long fetchedAt) {
+
+        /**
+         * Creates a record without a fetched-at time.
+         * 
+         * @param hostname the hostname
+         * @param ip the IP address
+         * @param city the city
+         * @param region the region
+         * @param country the country
+         * @param postal the postal code
+         * @param latitude the latitude
+         * @param longitude the longitude
+         */
+        public DNRecord(String hostname, String ip, String city, String region, String country,
+                String postal, double latitude, double longitude) {
+            this(hostname, ip, city, region, country, postal, latitude, longitude, 0);
+        }
+
+        /**
+         * Gets a copy of the record with another fetched-at time.
+         * 
+         * @param time when the record was fetched, in epoch millis
+         * @return the copy
+         */
+        public DNRecord withFetchedAt(long time) {
+            return new DNRecord(hostname, ip, city, region, country, postal, latitude, longitude,
+                    time);
+        }
+    }
+
+    /**
+     * The outcome of looking up a single hostname as part of a batch.
+     * 
+     * @param hostname the hostname that was looked up
+     * @param record the record, or null if the lookup failed
+     * @param error why the lookup failed, or null if it worked
+     */
+    record LookupResult(String hostname, DNRecord record, Exception error) {
+
+        /**
+         * Checks if the lookup found or built a record.
+         * 
+         * @return true if there is a record
+         */
+        public boolean isSuccess() {
+            return record != null;
+        }
     }
 
 }
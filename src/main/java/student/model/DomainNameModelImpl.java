@@ -0,0 +1,675 @@
+package student.model;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+import student.model.index.ColumnarRecordStore;
+import student.model.index.ListRecordStore;
+import student.model.index.RecordIndex;
+import student.model.index.RecordStore;
+import student.model.index.SpatialIndex;
+import student.model.io.ChunkedRecordReader;
+import student.model.io.RecordJournal;
+import student.model.io.RecordImporter;
+import student.model.io.RecordSnapshot;
+import student.model.metrics.Counter;
+import student.model.metrics.LatencyHistogram;
+import student.model.metrics.Metrics;
+
+/**
+ * The default model, backed by a database file.
+ *
+ * The database is usually hostrecords xml, but can be any format the app writes, such as a JSON
+ * or CSV export from another system, found from its first bytes by a {@link RecordImporter}. A
+ * database in another format is only read: compacting would write xml over the export, so new
+ * records are kept in memory for the run but never journaled or compacted.
+ *
+ * The file is not read up front. Until something needs all the records in memory (a batch, or
+ * adding a new record), lookups and streams read the file one record at a time, so a single
+ * lookup stops at the first match and a full listing starts right away.
+ *
+ * The xml is only parsed when it changes. Its records are copied into a {@link RecordSnapshot} next
+ * to it, and later runs map that file and decode records as they are reached. Setting the
+ * dninfo.db.snapshot system property to false reads the xml every time instead. Whenever the whole
+ * xml is parsed, to build the snapshot or to load without one, it is split up and parsed on every
+ * core by a {@link ChunkedRecordReader}.
+ *
+ * Once loaded, the records are kept in a {@link ListRecordStore}, or in a
+ * {@link ColumnarRecordStore} if the dninfo.db.store system property is "columnar", which takes
+ * much less memory on large databases at the cost of building each record when it is read.
+ *
+ * New records are appended to a {@link RecordJournal} next to the database instead of rewriting
+ * the xml. The journal is folded back into the xml by {@link #compact()}, which also runs in the
+ * background once the journal file is over dninfo.db.compactBytes (256 KiB by default), counting
+ * what earlier runs left in it. The background compaction is not a daemon thread, so the program
+ * does not exit halfway through it.
+ *
+ * Each record keeps the time it was fetched. With the dninfo.refresh system properties set, a
+ * {@link RecordRefresher} fetches records past their soft TTL again in the background while the old
+ * record is still served, and a lookup only waits for a fetch once a record is past its hard TTL.
+ * Background fetches start once the records are loaded, so a one-shot lookup never leaves one
+ * unsaved when the program exits. A refreshed record is appended to the journal like a new one,
+ * and the last entry for a hostname wins.
+ */
+final class DomainNameModelImpl implements DomainNameModel {
+    /** Default size of the journal on disk that triggers a compaction, about a thousand records. */
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    /** Lookups of a single hostname. */
+    private static final Counter LOOKUPS = Metrics.counter("dninfo_lookups_total",
+            "Lookups of a single hostname");
+    /** Lookups that were not in the database and went to the fetcher. */
+    private static final Counter MISSES = Metrics.counter("dninfo_lookup_misses_total",
+            "Lookups that were not in the database and went to the fetcher");
+    /** Time taken by a lookup, hit or miss. */
+    private static final LatencyHistogram LOOKUP_SECONDS = Metrics.histogram(
+            "dninfo_lookup_seconds", "Time to look up a hostname, from the database or not");
+    /** Time taken by the fetcher. */
+    private static final LatencyHistogram FETCH_SECONDS = Metrics.histogram(
+            "dninfo_fetch_seconds", "Time to build a record that is not in the database");
+    /** Time taken to save a new record to the journal. */
+    private static final LatencyHistogram PERSIST_SECONDS = Metrics.histogram(
+            "dninfo_persist_seconds", "Time to save a new record to the journal");
+    /** Time taken to fold the journal into the database. */
+    private static final LatencyHistogram COMPACT_SECONDS = Metrics.histogram(
+            "dninfo_compact_seconds", "Time to fold the journal back into the database");
+    /** Number of fetches running right now. */
+    private static final AtomicInteger FETCHES_IN_FLIGHT = new AtomicInteger();
+
+    static {
+        Metrics.gauge("dninfo_fetches_in_flight", "Records being fetched right now",
+                FETCHES_IN_FLIGHT::get);
+        Metrics.gauge("dninfo_lookup_hit_ratio", "Share of lookups found in the database", () -> {
+            long lookups = LOOKUPS.get();
+            return lookups == 0 ? 0 : (double) (lookups - MISSES.get()) / lookups;
+        });
+    }
+
+    /** The database file. */
+    private final Path database;
+    /** Builds the records that are not in the database. */
+    private final RecordFetcher fetcher;
+    /** Journal of the records added or refreshed since the last compaction. */
+    private final RecordJournal journal;
+    /** Decides when a record is too old, and refreshes old records in the background. */
+    private final RecordRefresher refresher;
+    /** Size of the journal that triggers a compaction, from dninfo.db.compactBytes. */
+    private final long compactBytes = Long.getLong("dninfo.db.compactBytes", COMPACT_BYTES);
+    /** True while a background compaction is running. */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    /** True if new records can be saved, null until first asked. Guarded by this. */
+    private Boolean writable;
+    /** False once snapshots are turned off or cannot be used. Guarded by this. */
+    private boolean useSnapshot = Boolean.parseBoolean(
+            System.getProperty("dninfo.db.snapshot", "true"));
+    /** The mapped snapshot of the database, null until it is first opened. Guarded by this. */
+    private RecordSnapshot mapped;
+    /** The records, null until they are first needed in memory. Guarded by this. */
+    private RecordIndex index;
+    /** Spatial index over the records, null until a location query needs it. Guarded by this. */
+    private SpatialIndex spatial;
+
+    /**
+     * Creates the model over the database file. A missing file is treated as an empty database.
+     *
+     * @param database the name of the database file
+     * @param fetcher used to build the records that are not in the database
+     */
+    DomainNameModelImpl(String database, RecordFetcher fetcher) {
+        this.database = Path.of(database);
+        this.fetcher = fetcher;
+        this.journal = new RecordJournal(RecordJournal.journalFor(this.database));
+        this.refresher = RecordRefresher.fromSystemProperties(this::refresh);
+    }
+
+    /**
+     * Gets the indexed records in memory, reading the database file the first time.
+     *
+     * @return the records
+     * @throws UncheckedIOException if the database cannot be read
+     */
+    private synchronized RecordIndex loaded() {
+        if (index == null) {
+            RecordIndex read = new RecordIndex(newStore());
+            try (Stream<DNRecord> stream = streamFile(true)) {
+                stream.forEach(read::add);
+            }
+            index = read;
+            if (refresher.isEnabled()) {
+                refresher.start(this::getRecords);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Creates the store picked by the dninfo.db.store system property.
+     *
+     * @return an empty store
+     */
+    private static RecordStore newStore() {
+        if ("columnar".equalsIgnoreCase(System.getProperty("dninfo.db.store"))) {
+            return new ColumnarRecordStore();
+        }
+        return new ListRecordStore();
+    }
+
+    /**
+     * Streams the records straight from the database file, followed by the records in the journal.
+     *
+     * The journal is small, so it is read up front. A hostname in the journal more than once (a
+     * record that was refreshed) is streamed as its last entry, and one that is also in the
+     * database (refreshed, or left by a compaction that was cut short) replaces the database record
+     * where it stands.
+     *
+     * Without a snapshot, a stream that will be read to the end parses the xml on every core with
+     * a {@link ChunkedRecordReader}. One that may stop early, such as a lookup, reads it in order
+     * with a {@link RecordImporter}, so no work is done past the match.
+     *
+     * @param whole true if the stream will be read to the end
+     * @return the records in the files, empty if neither exists
+     * @throws UncheckedIOException if the database cannot be opened
+     */
+    private Stream<DNRecord> streamFile(boolean whole) {
+        Map<String, DNRecord> pending = new LinkedHashMap<>();
+        try (Stream<DNRecord> replay = journal.replay()) {
+            replay.forEach(record -> pending.put(key(record.hostname()), record));
+        }
+        if (!Files.exists(database)) {
+            return pending.values().stream();
+        }
+        try {
+            RecordSnapshot saved = snapshot();
+            Stream<DNRecord> snapshot = saved != null ? saved.stream()
+                    : whole ? ChunkedRecordReader.stream(database)
+                            : RecordImporter.stream(database);
+            if (pending.isEmpty()) {
+                return snapshot;
+            }
+            return Stream.concat(
+                    snapshot.map(record -> {
+                        DNRecord newer = pending.remove(key(record.hostname()));
+                        return newer != null ? newer : record;
+                    }),
+                    // what is left once the database is read is new
+                    Stream.of(pending).flatMap(rest -> rest.values().stream()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read database " + database, e);
+        }
+    }
+
+    /**
+     * Gets the mapped snapshot of the database, building it if it is missing or was built from
+     * another copy of the xml (a different last modified time or size). If the snapshot cannot be
+     * built it is not tried again, and the xml is read instead.
+     *
+     * @return the snapshot, or null if there is no database file or no usable snapshot
+     */
+    private synchronized RecordSnapshot snapshot() {
+        if (!useSnapshot || !Files.exists(database)) {
+            return null;
+        }
+        try {
+            if (mapped == null || !mapped.isBuiltFrom(
+                    Files.readAttributes(database, BasicFileAttributes.class))) {
+                mapped = RecordSnapshot.forDatabase(database);
+            }
+            return mapped;
+        } catch (IOException e) {
+            System.err.println("Unable to use a snapshot of " + database + ": " + e.getMessage());
+            useSnapshot = false;
+            mapped = null;
+            return null;
+        }
+    }
+
+    /**
+     * Gets the key used to compare hostnames, which are not case sensitive.
+     *
+     * @param hostname the hostname
+     * @return the key
+     */
+    private static String key(String hostname) {
+        return hostname == null ? "" : hostname.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public synchronized List<DNRecord> getRecords() {
+        return List.copyOf(loaded().records());
+    }
+
+    @Override
+    public synchronized Stream<DNRecord> streamRecords() {
+        if (index != null) {
+            return List.copyOf(index.records()).stream();
+        }
+        return streamFile(false);
+    }
+
+    @Override
+    public synchronized List<DNRecord> getRecordsBy(RecordField field, String value) {
+        return List.copyOf(loaded().getAll(field, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * If the query matches on an indexed field, the records are loaded and only the rows of the
+     * smallest matching index entry are checked. Otherwise the records are streamed, from memory if
+     * they are loaded and from the file if not.
+     */
+    @Override
+    public Stream<DNRecord> query(RecordQuery query) {
+        return query.apply(candidates(query));
+    }
+
+    /**
+     * Gets the records that may match a query, using the index that leaves the fewest.
+     *
+     * @param query the query
+     * @return the records to check against the query
+     */
+    private synchronized Stream<DNRecord> candidates(RecordQuery query) {
+        List<DNRecord> fewest = null;
+        for (Map.Entry<RecordField, String> condition : query.getWhere().entrySet()) {
+            if (RecordIndex.SECONDARY.contains(condition.getKey())
+                    || condition.getKey() == RecordField.HOSTNAME) {
+                List<DNRecord> rows = loaded().getAll(condition.getKey(), condition.getValue());
+                if (fewest == null || rows.size() < fewest.size()) {
+                    fewest = rows;
+                }
+            }
+        }
+        if (fewest != null) {
+            // the index rows are live, so they are copied before the lock is let go
+            return List.copyOf(fewest).stream();
+        }
+        return streamRecords();
+    }
+
+    @Override
+    public synchronized Map<String, List<DNRecord>> groupRecordsBy(RecordField field) {
+        Map<String, List<DNRecord>> groups = new LinkedHashMap<>();
+        loaded().groupBy(field).forEach((key, group) -> groups.put(key, List.copyOf(group)));
+        return Collections.unmodifiableMap(groups);
+    }
+
+    @Override
+    public synchronized List<DNRecord> getRecordsNear(double latitude, double longitude,
+            double radiusKm) {
+        return spatial().near(latitude, longitude, radiusKm);
+    }
+
+    @Override
+    public synchronized List<DNRecord> getNearestRecords(double latitude, double longitude,
+            int count) {
+        return spatial().nearest(latitude, longitude, count);
+    }
+
+    /**
+     * Gets the spatial index, building it from the records the first time and after a record is
+     * added.
+     *
+     * @return the spatial index
+     */
+    private synchronized SpatialIndex spatial() {
+        if (spatial == null) {
+            spatial = new SpatialIndex(loaded().records());
+        }
+        return spatial;
+    }
+
+    @Override
+    public DNRecord getRecord(String hostname) {
+        try {
+            return lookUp(hostname);
+        } catch (IOException e) {
+            System.err.println("Unable to look up " + hostname + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public List<LookupResult> getRecords(Collection<String> hostnames, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        loaded(); // every lookup in the batch checks memory instead of scanning the file
+        return lookUpAll(this, hostnames, maxConcurrency);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the database cannot be read
+     */
+    @Override
+    public void load() {
+        loaded();
+    }
+
+    /**
+     * Looks up each hostname on its own virtual thread, running at most so many at once.
+     *
+     * @param model the model to look each hostname up in
+     * @param hostnames the hostnames to look up
+     * @param maxConcurrency the most lookups to run at the same time, at least 1
+     * @return one result per hostname, in the same order as the hostnames
+     */
+    static List<LookupResult> lookUpAll(DomainNameModel model, Collection<String> hostnames,
+            int maxConcurrency) {
+        Semaphore permits = new Semaphore(maxConcurrency);
+        List<Future<LookupResult>> futures = new ArrayList<>(hostnames.size());
+        // closing the executor waits for every lookup to finish
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String hostname : hostnames) {
+                // taking the permit before submitting keeps the number of live threads bounded
+                acquire(permits);
+                futures.add(executor.submit(() -> {
+                    try {
+                        return model.getResult(hostname);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+        }
+        List<LookupResult> results = new ArrayList<>(futures.size());
+        for (Future<LookupResult> future : futures) {
+            results.add(future.resultNow());
+        }
+        return results;
+    }
+
+    /**
+     * Waits for a permit to start another lookup.
+     *
+     * @param permits the permits for the batch
+     * @throws CancellationException if the thread is interrupted while waiting
+     */
+    private static void acquire(Semaphore permits) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Batch lookup interrupted");
+        }
+    }
+
+    @Override
+    public LookupResult getResult(String hostname) {
+        try {
+            return new LookupResult(hostname, lookUp(hostname), null);
+        } catch (Exception e) {
+            return new LookupResult(hostname, null, e);
+        }
+    }
+
+    /**
+     * Finds the record for the hostname, fetching and saving it if it is not in the database.
+     *
+     * A record past its soft TTL is returned as is, and refreshed in the background. A record past
+     * its hard TTL is fetched again and replaced before it is returned.
+     *
+     * The fetch is done without holding the lock, so other lookups can run at the same time.
+     *
+     * @param hostname the hostname to look up
+     * @return the record
+     * @throws IOException if the record has to be fetched and the fetch fails
+     */
+    private DNRecord lookUp(String hostname) throws IOException {
+        long start = System.nanoTime();
+        LOOKUPS.increment();
+        try {
+            DNRecord found = find(hostname);
+            if (found != null) {
+                RecordRefresher.Age age = refresher.age(found, System.currentTimeMillis());
+                refresher.served(found, age);
+                if (age != RecordRefresher.Age.EXPIRED) {
+                    return found;
+                }
+                return replace(fetch(hostname));
+            }
+            MISSES.increment();
+            return add(fetch(hostname));
+        } finally {
+            LOOKUP_SECONDS.recordSince(start);
+        }
+    }
+
+    /**
+     * Builds the record for a hostname, stamped with the time it was fetched.
+     *
+     * @param hostname the hostname
+     * @return the new record
+     * @throws IOException if the fetch fails
+     */
+    private DNRecord fetch(String hostname) throws IOException {
+        long start = System.nanoTime();
+        FETCHES_IN_FLIGHT.incrementAndGet();
+        try {
+            return fetcher.fetch(hostname).withFetchedAt(System.currentTimeMillis());
+        } finally {
+            FETCHES_IN_FLIGHT.decrementAndGet();
+            FETCH_SECONDS.recordSince(start);
+        }
+    }
+
+    /**
+     * Finds the record for the hostname. If the records are not in memory yet, the journal is
+     * checked and then the snapshot (or the xml) is scanned only up to the match, otherwise the
+     * hostname index is used.
+     *
+     * @param hostname the hostname to find
+     * @return the record, or null if it is not in the database
+     */
+    private synchronized DNRecord find(String hostname) {
+        if (index != null) {
+            return index.get(hostname);
+        }
+        RecordSnapshot saved = snapshot();
+        if (saved != null) {
+            // the journal holds the newest records, so its last entry wins over the snapshot
+            try (Stream<DNRecord> replay = journal.replay()) {
+                DNRecord added = replay
+                        .filter(record -> hostname.equalsIgnoreCase(record.hostname()))
+                        .reduce((first, last) -> last).orElse(null);
+                if (added != null) {
+                    return added;
+                }
+            }
+            return saved.find(hostname);
+        }
+        try (Stream<DNRecord> stream = streamFile(false)) {
+            return stream.filter(record -> hostname.equalsIgnoreCase(record.hostname()))
+                    .findFirst().orElse(null);
+        }
+    }
+
+    /**
+     * Adds a new record and saves it to the journal. If another lookup added the same hostname
+     * first, that record is kept instead.
+     *
+     * The journal append happens outside the lock, so appends from concurrent lookups are group
+     * committed together.
+     *
+     * @param record the record to add
+     * @return the record now in the database
+     * @throws IOException if the journal cannot be written
+     */
+    private DNRecord add(DNRecord record) throws IOException {
+        synchronized (this) {
+            RecordIndex records = loaded();
+            if (!records.add(record)) {
+                return records.get(record.hostname());
+            }
+            spatial = null;
+        }
+        persist(record);
+        return record;
+    }
+
+    /**
+     * Fetches the record for a hostname again and replaces the one in the database. Called by the
+     * {@link RecordRefresher} for stale records.
+     *
+     * @param hostname the hostname
+     * @return the new record
+     * @throws IOException if the fetch fails or the journal cannot be written
+     */
+    private DNRecord refresh(String hostname) throws IOException {
+        return replace(fetch(hostname));
+    }
+
+    /**
+     * Puts a fetched record in the database in place of the one with the same hostname, or adds it
+     * if there is none, and saves it to the journal.
+     *
+     * @param record the record
+     * @return the record
+     * @throws IOException if the journal cannot be written
+     */
+    private DNRecord replace(DNRecord record) throws IOException {
+        synchronized (this) {
+            loaded().put(record);
+            spatial = null;
+        }
+        persist(record);
+        return record;
+    }
+
+    /**
+     * Appends a record to the journal, and starts a background compaction once the journal file is
+     * large. Nothing is saved if the database is not xml. Called outside the lock.
+     *
+     * The compaction runs on a platform thread that is not a daemon, so a run that ends while it
+     * is writing waits for it rather than leaving the journal to grow.
+     *
+     * @param record the record to save
+     * @throws IOException if the journal cannot be written
+     */
+    private void persist(DNRecord record) throws IOException {
+        if (!isWritable()) {
+            return;
+        }
+        long start = System.nanoTime();
+        journal.append(record);
+        PERSIST_SECONDS.recordSince(start);
+        if (journal.size() >= compactBytes && compacting.compareAndSet(false, true)) {
+            Thread.ofPlatform().name("journal-compaction").daemon(false)
+                    .start(this::compactInBackground);
+        }
+    }
+
+    /**
+     * Compacts the journal, reporting rather than throwing any failure.
+     */
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Unable to compact " + database + ": " + e.getMessage());
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Checks if new records can be saved: the database is xml, or there is none yet. The first time
+     * it is not, a note is written to stderr.
+     *
+     * @return true if the database is xml
+     * @throws IOException if the database cannot be read
+     */
+    private synchronized boolean isWritable() throws IOException {
+        if (writable == null) {
+            Formats format = Files.exists(database) ? RecordImporter.detect(database) : null;
+            writable = format == null || format == Formats.XML;
+            if (!writable) {
+                System.err.println("Not saving new records to " + database + ", which is "
+                        + format + " rather than xml; --convert it to xml to add to it");
+            }
+        }
+        return writable;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Does nothing if the database is not xml, as the file would be rewritten as xml.
+     */
+    @Override
+    public void compact() throws IOException {
+        if (!Files.exists(journal.getFile()) || !isWritable()) {
+            return;
+        }
+        long start = System.nanoTime();
+        journal.compact(() -> writeSnapshot(getRecords()));
+        COMPACT_SECONDS.recordSince(start);
+    }
+
+    /**
+     * Writes the records to a temporary file, then renames it over the database file, so the
+     * database is never left half written. The binary snapshot is rewritten to match, so the next
+     * run does not have to parse the new xml.
+     *
+     * @param snapshot the records to write
+     * @throws IOException if the file cannot be written
+     */
+    private void writeSnapshot(List<DNRecord> snapshot) throws IOException {
+        Path parent = database.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = database.resolveSibling(database.getFileName() + ".tmp");
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+            DataFormatter.writeDatabase(snapshot.iterator(), out);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        try {
+            Files.move(temp, database, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, database, StandardCopyOption.REPLACE_EXISTING);
+        }
+        synchronized (this) {
+            mapped = null;
+            if (!useSnapshot) {
+                return;
+            }
+        }
+        try {
+            BasicFileAttributes written = Files.readAttributes(database,
+                    BasicFileAttributes.class);
+            RecordSnapshot.write(snapshot.iterator(), written.lastModifiedTime().toMillis(),
+                    written.size(), RecordSnapshot.snapshotFor(database));
+        } catch (IOException e) {
+            // the xml is saved, the snapshot is rebuilt from it on the next load
+            System.err.println("Unable to write a snapshot of " + database + ": " + e.getMessage());
+        }
+    }
+}
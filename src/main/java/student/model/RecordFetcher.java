@@ -0,0 +1,37 @@
+package student.model;
+
+import java.io.IOException;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.Formats;
+import student.model.net.NetUtils;
+
+/**
+ * Builds a brand new record for a hostname that is not yet in the database.
+ *
+ * The model only calls this on a miss. The default implementation goes out to the network, but
+ * tests and benchmarks can hand the model a stub instead.
+ */
+@FunctionalInterface
+public interface RecordFetcher {
+
+    /**
+     * Looks up the hostname and builds the record for it.
+     *
+     * @param hostname the hostname to look up
+     * @return the new record
+     * @throws IOException if the hostname cannot be resolved or the details cannot be read
+     */
+    DNRecord fetch(String hostname) throws IOException;
+
+    /**
+     * Gets the fetcher that resolves the hostname with DNS and pulls the location details from
+     * ipapi.co.
+     *
+     * @return the network backed fetcher
+     * @see NetUtils#lookUpIp(String)
+     * @see NetUtils#getIpDetails(String, Formats)
+     */
+    static RecordFetcher network() {
+        return NetworkFetcher.INSTANCE;
+    }
+}
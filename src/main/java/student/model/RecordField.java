@@ -0,0 +1,73 @@
+package student.model;
+
+import java.util.Locale;
+import java.util.function.Function;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * The fields of a {@link DNRecord}, so they can be named when indexing or querying records.
+ */
+public enum RecordField {
+    /** The hostname. */
+    HOSTNAME(DNRecord::hostname),
+    /** The IP address. */
+    IP(DNRecord::ip),
+    /** The city. */
+    CITY(DNRecord::city),
+    /** The region. */
+    REGION(DNRecord::region),
+    /** The country. */
+    COUNTRY(DNRecord::country),
+    /** The postal code. */
+    POSTAL(DNRecord::postal),
+    /** The latitude. */
+    LATITUDE(record -> Double.toString(record.latitude())),
+    /** The longitude. */
+    LONGITUDE(record -> Double.toString(record.longitude()));
+
+    /** Gets the value of the field from a record. */
+    private final Function<DNRecord, String> getter;
+
+    /**
+     * Creates the field.
+     *
+     * @param getter gets the value of the field from a record
+     */
+    RecordField(Function<DNRecord, String> getter) {
+        this.getter = getter;
+    }
+
+    /**
+     * Gets the value of this field from a record, as text.
+     *
+     * @param record the record
+     * @return the value, may be null
+     */
+    public String valueOf(DNRecord record) {
+        return getter.apply(record);
+    }
+
+    /**
+     * Gets the name used for this field in the output formats, such as "hostname".
+     *
+     * @return the name of the field
+     */
+    public String fieldName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Helper function to find a field by name, ignoring case.
+     *
+     * @param value the name of the field
+     * @return the field if found, null otherwise
+     */
+    public static RecordField containsValues(String value) {
+        for (RecordField field : RecordField.values()) {
+            if (field.toString().equalsIgnoreCase(value)) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
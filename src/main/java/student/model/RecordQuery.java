@@ -0,0 +1,248 @@
+package student.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * A query over the records: the fields that must match, the field to sort by, and the most records
+ * to return.
+ *
+ * A field matches when its value is equal to the wanted value, ignoring case, the same as
+ * {@link DomainNameModel#getRecordsBy(RecordField, String)}. Text fields sort ignoring case, and
+ * latitude and longitude sort by number. Records without a value sort last either way, and ties are
+ * broken by hostname.
+ *
+ * A sort with a limit keeps only the best limit records seen so far in a heap, so the matches are
+ * never all held in memory at once. Without a sort the matches stream through as they are found.
+ */
+public final class RecordQuery {
+    /** The query that matches every record, in database order. */
+    public static final RecordQuery ALL = new RecordQuery(Map.of(), null, false, 0);
+
+    /** The fields that must match, and the values they must have. */
+    private final Map<RecordField, String> where;
+    /** The field to sort by, null for database order. */
+    private final RecordField sort;
+    /** True to sort largest first. */
+    private final boolean descending;
+    /** The most records to return, 0 for no limit. */
+    private final int limit;
+
+    /**
+     * Creates a query.
+     *
+     * @param where the values the fields must have, matched ignoring case
+     * @param sort the field to sort by, null for database order
+     * @param descending true to sort largest first
+     * @param limit the most records to return, 0 for no limit
+     * @throws IllegalArgumentException if the limit is negative or a value is null
+     */
+    public RecordQuery(Map<RecordField, String> where, RecordField sort, boolean descending,
+            int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        Map<RecordField, String> copy = new LinkedHashMap<>();
+        where.forEach((field, value) -> {
+            if (value == null) {
+                throw new IllegalArgumentException("No value for " + field.fieldName());
+            }
+            copy.put(field, value);
+        });
+        this.where = Collections.unmodifiableMap(copy);
+        this.sort = sort;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * Parses a query from the command line options. Any of the parts may be null.
+     *
+     * @param where field=value pairs separated by commas, such as "country=US,region=California"
+     * @param sort the field to sort by, with a leading - to sort largest first
+     * @param limit the most records to return
+     * @return the query
+     * @throws IllegalArgumentException if a field is unknown or given twice, or the limit is not a
+     *         positive number
+     */
+    public static RecordQuery parse(String where, String sort, String limit) {
+        Map<RecordField, String> fields = new LinkedHashMap<>();
+        if (where != null) {
+            for (String condition : where.split(",")) {
+                int equals = condition.indexOf('=');
+                if (equals < 0) {
+                    throw new IllegalArgumentException("Expected field=value but got: "
+                            + condition);
+                }
+                RecordField field = field(condition.substring(0, equals));
+                if (fields.put(field, condition.substring(equals + 1).trim()) != null) {
+                    throw new IllegalArgumentException("Field given twice: " + field.fieldName());
+                }
+            }
+        }
+        RecordField order = null;
+        boolean descending = false;
+        if (sort != null) {
+            descending = sort.startsWith("-");
+            order = field(descending ? sort.substring(1) : sort);
+        }
+        int most = 0;
+        if (limit != null) {
+            try {
+                most = Integer.parseInt(limit.trim());
+            } catch (NumberFormatException e) {
+                most = -1;
+            }
+            if (most < 1) {
+                throw new IllegalArgumentException("Invalid limit: " + limit);
+            }
+        }
+        return new RecordQuery(fields, order, descending, most);
+    }
+
+    /**
+     * Gets a field by name.
+     *
+     * @param name the name of the field, ignoring case
+     * @return the field
+     * @throws IllegalArgumentException if there is no such field
+     */
+    private static RecordField field(String name) {
+        RecordField field = RecordField.containsValues(name.trim());
+        if (field == null) {
+            throw new IllegalArgumentException("Unknown field: " + name);
+        }
+        return field;
+    }
+
+    /**
+     * Gets the values the fields must have.
+     *
+     * @return the fields and values, in the order given
+     */
+    public Map<RecordField, String> getWhere() {
+        return where;
+    }
+
+    /**
+     * Gets the field to sort by.
+     *
+     * @return the field, or null for database order
+     */
+    public RecordField getSort() {
+        return sort;
+    }
+
+    /**
+     * Checks if the sort is largest first.
+     *
+     * @return true to sort largest first
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Gets the most records to return.
+     *
+     * @return the limit, 0 for no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Checks if a record has every wanted value.
+     *
+     * @param record the record
+     * @return true if it matches
+     */
+    public boolean matches(DNRecord record) {
+        for (Map.Entry<RecordField, String> condition : where.entrySet()) {
+            if (!condition.getValue().equalsIgnoreCase(condition.getKey().valueOf(record))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the order of the sort.
+     *
+     * @return the order, or null for database order
+     */
+    public Comparator<DNRecord> order() {
+        if (sort == null) {
+            return null;
+        }
+        Comparator<DNRecord> order;
+        if (sort == RecordField.LATITUDE || sort == RecordField.LONGITUDE) {
+            Comparator<DNRecord> byNumber = Comparator.comparingDouble(record -> sort
+                    == RecordField.LATITUDE ? record.latitude() : record.longitude());
+            order = descending ? byNumber.reversed() : byNumber;
+        } else {
+            Comparator<String> text = descending ? String.CASE_INSENSITIVE_ORDER.reversed()
+                    : String.CASE_INSENSITIVE_ORDER;
+            order = Comparator.comparing(sort::valueOf, Comparator.nullsLast(text));
+        }
+        return order.thenComparing(DNRecord::hostname,
+                Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+    }
+
+    /**
+     * Runs the query over records: keeps the matches, then sorts and limits them. The records are
+     * read lazily unless there is a sort, which reads them all when the stream is first used.
+     *
+     * @param records the records to query, closed with the returned stream
+     * @return the answer
+     */
+    public Stream<DNRecord> apply(Stream<DNRecord> records) {
+        Stream<DNRecord> matching = where.isEmpty() ? records : records.filter(this::matches);
+        Comparator<DNRecord> order = order();
+        if (order == null) {
+            return limit > 0 ? matching.limit(limit) : matching;
+        }
+        if (limit == 0) {
+            return matching.sorted(order);
+        }
+        // a lazy stream, so the records are not read until the answer is
+        return Stream.of(matching).flatMap(source -> top(source, order, limit).stream())
+                .onClose(matching::close);
+    }
+
+    /**
+     * Gets the first records in an order, holding no more than count of them at a time.
+     *
+     * The heap is ordered worst first, so the worst of the best so far is the one replaced.
+     *
+     * @param records the records, read to the end and closed
+     * @param order the order
+     * @param count the number of records to keep, at least 1
+     * @return the first records, in order
+     */
+    private static List<DNRecord> top(Stream<DNRecord> records, Comparator<DNRecord> order,
+            int count) {
+        PriorityQueue<DNRecord> best = new PriorityQueue<>(Math.min(count, 1024),
+                order.reversed());
+        try (records) {
+            records.forEach(record -> {
+                if (best.size() < count) {
+                    best.add(record);
+                } else if (order.compare(record, best.peek()) < 0) {
+                    best.poll();
+                    best.add(record);
+                }
+            });
+        }
+        List<DNRecord> sorted = new ArrayList<>(best);
+        sorted.sort(order);
+        return sorted;
+    }
+}
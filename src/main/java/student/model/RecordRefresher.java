@@ -0,0 +1,273 @@
+package student.model;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import student.model.DomainNameModel.DNRecord;
+import student.model.metrics.Counter;
+import student.model.metrics.Metrics;
+import student.model.net.RateLimiter;
+
+/**
+ * Decides when a record is too old to serve as is, and fetches old records again in the
+ * background.
+ *
+ * A record older than the soft TTL is still served, and a fetch is queued to replace it. A record
+ * older than the hard TTL is fetched again before it is served. Records whose fetched-at time is
+ * not known (saved before the time was kept) count as past the soft TTL but never the hard one, so
+ * they are refreshed without ever holding up a lookup.
+ *
+ * Background fetches of all the models in the process share one {@link RateLimiter}, so they stay
+ * within one concurrency and rate budget however many models or shards are open. Once a model has
+ * its records in memory, a sweep also queues every old record it holds, a budget's worth at a
+ * time, so records that are never looked up are kept fresh too.
+ *
+ * Background fetches only start once the model has its records in memory, as a server or a bulk
+ * run does. A one-shot lookup exits before a background fetch could be saved, so it serves a stale
+ * record as is and leaves it for a process that stays up. A record past the hard TTL is still
+ * fetched before it is served.
+ *
+ * Configured with the system properties below. Refreshing is off unless a TTL is set.
+ *
+ * <ul>
+ * <li>dninfo.refresh.softTtl - seconds before a record is refreshed in the background, default 0
+ * for never</li>
+ * <li>dninfo.refresh.hardTtl - seconds before a record is refreshed before it is served, default
+ * 0 for never</li>
+ * <li>dninfo.refresh.rate - background fetches started per second, default 1</li>
+ * <li>dninfo.refresh.maxConcurrency - most background fetches at once, default 4</li>
+ * <li>dninfo.refresh.interval - seconds between sweeps of the records in memory, default 60</li>
+ * </ul>
+ */
+final class RecordRefresher {
+    /** How old a record is. */
+    enum Age {
+        /** Younger than the soft TTL, or refreshing is off. */
+        FRESH,
+        /** Past the soft TTL, served while a fetch is queued. */
+        STALE,
+        /** Past the hard TTL, fetched before it is served. */
+        EXPIRED
+    }
+
+    /** Background fetches that replaced a record. */
+    private static final Counter REFRESHES = Metrics.counter("dninfo_refreshes_total",
+            "Records fetched again in the background");
+    /** Background fetches that failed, leaving the old record. */
+    private static final Counter REFRESH_ERRORS = Metrics.counter("dninfo_refresh_errors_total",
+            "Background fetches that failed, leaving the old record in place");
+    /** Lookups answered with a record past the soft TTL. */
+    private static final Counter STALE_SERVED = Metrics.counter("dninfo_stale_served_total",
+            "Lookups answered with a record past its soft TTL");
+    /** Lookups that had to wait for a record past the hard TTL. */
+    private static final Counter EXPIRED_FETCHES = Metrics.counter("dninfo_expired_fetches_total",
+            "Lookups that fetched a record past its hard TTL before answering");
+
+    /** Runs the blocking fetches, one virtual thread each. */
+    private static final ExecutorService FETCHERS = Executors.newVirtualThreadPerTaskExecutor();
+
+    /** Time after which a record is refreshed in the background, in millis, 0 for never. */
+    private final long softTtl;
+    /** Time after which a record is refreshed before it is served, in millis, 0 for never. */
+    private final long hardTtl;
+    /** Time between sweeps. */
+    private final Duration interval;
+    /** Most fetches a sweep keeps queued, about what the budget gets through in an interval. */
+    private final int backlog;
+    /** Paces the background fetches. */
+    private final RateLimiter limiter;
+    /** Fetches a record again and saves it. */
+    private final RecordFetcher refresh;
+    /** Hostnames with a fetch queued or running, lower case. */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    /** True once background fetches are on and the sweep is scheduled. Set under this. */
+    private volatile boolean started;
+
+    /**
+     * Creates a refresher.
+     *
+     * @param softTtl age after which a record is refreshed in the background, zero for never
+     * @param hardTtl age after which a record is refreshed before it is served, zero for never
+     * @param interval time between sweeps
+     * @param limiter paces the background fetches
+     * @param backlog most fetches a sweep keeps queued
+     * @param refresh fetches a record again and saves it
+     */
+    RecordRefresher(Duration softTtl, Duration hardTtl, Duration interval, RateLimiter limiter,
+            int backlog, RecordFetcher refresh) {
+        this.softTtl = softTtl.toMillis();
+        this.hardTtl = hardTtl.toMillis();
+        this.interval = interval;
+        this.limiter = limiter;
+        this.backlog = Math.max(1, backlog);
+        this.refresh = refresh;
+    }
+
+    /**
+     * Creates a refresher configured by the dninfo.refresh system properties.
+     *
+     * @param refresh fetches a record again and saves it
+     * @return the refresher
+     */
+    static RecordRefresher fromSystemProperties(RecordFetcher refresh) {
+        Duration interval = Duration.ofSeconds(Math.max(1,
+                Long.getLong("dninfo.refresh.interval", 60)));
+        return new RecordRefresher(Duration.ofSeconds(Long.getLong("dninfo.refresh.softTtl", 0)),
+                Duration.ofSeconds(Long.getLong("dninfo.refresh.hardTtl", 0)), interval,
+                Shared.LIMITER, (int) Math.min(Integer.MAX_VALUE,
+                        (long) (Shared.RATE * interval.toSeconds())),
+                refresh);
+    }
+
+    /**
+     * Checks if refreshing is on.
+     *
+     * @return true if either TTL is set
+     */
+    boolean isEnabled() {
+        return softTtl > 0 || hardTtl > 0;
+    }
+
+    /**
+     * Gets how old a record is.
+     *
+     * @param record the record
+     * @param now the time now, in epoch millis
+     * @return the age
+     */
+    Age age(DNRecord record, long now) {
+        if (record.fetchedAt() == 0) {
+            return softTtl > 0 ? Age.STALE : Age.FRESH;
+        }
+        long age = now - record.fetchedAt();
+        if (hardTtl > 0 && age > hardTtl) {
+            return Age.EXPIRED;
+        }
+        return softTtl > 0 && age > softTtl ? Age.STALE : Age.FRESH;
+    }
+
+    /**
+     * Counts a lookup answered from the database, and queues a refresh if the record is stale and
+     * background fetches are on.
+     *
+     * @param record the record found
+     * @param age its age
+     */
+    void served(DNRecord record, Age age) {
+        if (age == Age.STALE) {
+            STALE_SERVED.increment();
+            if (started) {
+                schedule(record.hostname());
+            }
+        } else if (age == Age.EXPIRED) {
+            EXPIRED_FETCHES.increment();
+        }
+    }
+
+    /**
+     * Queues a background fetch of a hostname, unless one is already queued or running.
+     *
+     * @param hostname the hostname
+     * @return true if a fetch was queued
+     */
+    boolean schedule(String hostname) {
+        String key = hostname.toLowerCase(Locale.ROOT);
+        if (!pending.add(key)) {
+            return false;
+        }
+        limiter.execute(() -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return refresh.fetch(hostname);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, FETCHERS)).whenComplete((record, error) -> {
+            pending.remove(key);
+            if (error == null) {
+                REFRESHES.increment();
+            } else {
+                REFRESH_ERRORS.increment();
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Gets the number of fetches queued or running.
+     *
+     * @return the number of hostnames being refreshed
+     */
+    int pending() {
+        return pending.size();
+    }
+
+    /**
+     * Turns on background fetches, and starts sweeping the records for stale ones every interval,
+     * if there is a soft TTL and they are not already on. Called once the records are in memory.
+     * The sweep holds on to the source for as long as the process runs.
+     *
+     * @param records gets a copy of the records in memory
+     */
+    synchronized void start(Supplier<List<DNRecord>> records) {
+        if (started || softTtl <= 0) {
+            return;
+        }
+        started = true;
+        long millis = interval.toMillis();
+        Shared.SWEEPER.scheduleWithFixedDelay(() -> sweep(records.get(), System.currentTimeMillis()),
+                millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the stale records, oldest first in file order, until the backlog is full.
+     *
+     * @param records the records
+     * @param now the time now, in epoch millis
+     * @return the number of fetches queued
+     */
+    int sweep(List<DNRecord> records, long now) {
+        int queued = 0;
+        for (DNRecord record : records) {
+            if (pending.size() >= backlog) {
+                break;
+            }
+            if (age(record, now) != Age.FRESH && schedule(record.hostname())) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Holds the limiter and the sweep thread shared by every refresher, built the first time a
+     * refresher is configured from the system properties.
+     */
+    private static final class Shared {
+        /** Background fetches started per second. */
+        private static final double RATE =
+                Double.parseDouble(System.getProperty("dninfo.refresh.rate", "1"));
+        /** Paces the background fetches of every model. */
+        private static final RateLimiter LIMITER = new RateLimiter(RATE, 1,
+                Integer.getInteger("dninfo.refresh.maxConcurrency", 4), Duration.ofSeconds(5), 0);
+        /** Runs the sweeps, on a daemon thread so it never keeps the process alive. */
+        private static final ScheduledExecutorService SWEEPER =
+                Executors.newSingleThreadScheduledExecutor(
+                        Thread.ofPlatform().name("record-refresh").daemon().factory());
+
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private Shared() {
+            // empty
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package student.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import student.model.index.SpatialIndex;
+import student.model.io.ShardManifest;
+
+/**
+ * A model over a database split into shards by a hash of the hostname, as described by a
+ * {@link ShardManifest}.
+ *
+ * Each shard is a {@link DomainNameModelImpl} over its own xml file, with its own snapshot, journal
+ * and compaction. A lookup only opens the shard its hostname hashes to, and a new record only goes
+ * to that shard's journal, so compacting it rewrites just that shard. Queries over every record
+ * read the shards in parallel on the common fork-join pool and return them in shard order, each
+ * shard in its own file order.
+ */
+final class ShardedDomainNameModel implements DomainNameModel {
+    /** Which shard each hostname belongs to. */
+    private final ShardManifest manifest;
+    /** The shards, in manifest order. */
+    private final List<DomainNameModelImpl> shards;
+
+    /**
+     * Opens the sharded database. The shard files are not read until they are needed.
+     *
+     * @param database the database folder, or its manifest file
+     * @param fetcher used to build the records that are not in the database
+     * @throws UncheckedIOException if the manifest cannot be read
+     */
+    ShardedDomainNameModel(Path database, RecordFetcher fetcher) {
+        try {
+            this.manifest = ShardManifest.read(database);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read sharded database " + database, e);
+        }
+        List<DomainNameModelImpl> opened = new ArrayList<>(manifest.getShards().size());
+        for (Path shard : manifest.getShards()) {
+            opened.add(new DomainNameModelImpl(shard.toString(), fetcher));
+        }
+        this.shards = List.copyOf(opened);
+    }
+
+    /**
+     * Gets the shard a hostname belongs to.
+     *
+     * @param hostname the hostname
+     * @return the shard
+     */
+    private DomainNameModelImpl shardFor(String hostname) {
+        return shards.get(manifest.shardOf(hostname));
+    }
+
+    /**
+     * Runs a query on every shard in parallel, and joins the answers in shard order.
+     *
+     * @param query the query to run on a shard
+     * @return the answers of all the shards
+     */
+    private List<DNRecord> onAll(Function<DomainNameModelImpl, List<DNRecord>> query) {
+        return shards.parallelStream().map(query).flatMap(List::stream).toList();
+    }
+
+    @Override
+    public List<DNRecord> getRecords() {
+        return onAll(DomainNameModelImpl::getRecords);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every shard starts reading at once on the common fork-join pool. The records of a shard are
+     * streamed as soon as it and the shards before it are read.
+     */
+    @Override
+    public Stream<DNRecord> streamRecords() {
+        List<ForkJoinTask<List<DNRecord>>> reads = new ArrayList<>(shards.size());
+        for (DomainNameModelImpl shard : shards) {
+            reads.add(ForkJoinPool.commonPool().submit(() -> {
+                try (Stream<DNRecord> records = shard.streamRecords()) {
+                    return records.toList();
+                }
+            }));
+        }
+        return reads.stream().flatMap(read -> read.join().stream())
+                .onClose(() -> reads.forEach(read -> read.cancel(false)));
+    }
+
+    @Override
+    public DNRecord getRecord(String hostname) {
+        return shardFor(hostname).getRecord(hostname);
+    }
+
+    @Override
+    public List<DNRecord> getRecordsBy(RecordField field, String value) {
+        if (field == RecordField.HOSTNAME) {
+            return shardFor(value).getRecordsBy(field, value);
+        }
+        return onAll(shard -> shard.getRecordsBy(field, value));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * A query on the hostname only runs on its shard. Otherwise each shard answers the query with
+     * its own indexes. Without a sort the shards are streamed one after another; with one, the
+     * shards run in parallel and their answers are merged, so a sort with a limit holds no more than
+     * the limit from each shard.
+     */
+    @Override
+    public Stream<DNRecord> query(RecordQuery query) {
+        String hostname = query.getWhere().get(RecordField.HOSTNAME);
+        if (hostname != null) {
+            return shardFor(hostname).query(query);
+        }
+        if (query.getSort() == null) {
+            Stream<DNRecord> all = shards.stream().flatMap(shard -> shard.query(query));
+            return query.getLimit() > 0 ? all.limit(query.getLimit()) : all;
+        }
+        return query.apply(onAll(shard -> {
+            try (Stream<DNRecord> answer = shard.query(query)) {
+                return answer.toList();
+            }
+        }).stream());
+    }
+
+    @Override
+    public Map<String, List<DNRecord>> groupRecordsBy(RecordField field) {
+        List<Map<String, List<DNRecord>>> groups = shards.parallelStream()
+                .map(shard -> shard.groupRecordsBy(field)).toList();
+        Map<String, List<DNRecord>> merged = new LinkedHashMap<>();
+        for (Map<String, List<DNRecord>> group : groups) {
+            group.forEach((key, records) -> merged.computeIfAbsent(key, k -> new ArrayList<>())
+                    .addAll(records));
+        }
+        merged.replaceAll((key, records) -> List.copyOf(records));
+        return Collections.unmodifiableMap(merged);
+    }
+
+    @Override
+    public List<DNRecord> getRecordsNear(double latitude, double longitude, double radiusKm) {
+        List<DNRecord> found = new ArrayList<>(
+                onAll(shard -> shard.getRecordsNear(latitude, longitude, radiusKm)));
+        found.sort(closestTo(latitude, longitude));
+        return found;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Each shard finds its own closest records, and the closest of those are kept.
+     */
+    @Override
+    public List<DNRecord> getNearestRecords(double latitude, double longitude, int count) {
+        List<DNRecord> found = new ArrayList<>(
+                onAll(shard -> shard.getNearestRecords(latitude, longitude, count)));
+        found.sort(closestTo(latitude, longitude));
+        return List.copyOf(found.subList(0, Math.min(count, found.size())));
+    }
+
+    /**
+     * Orders records by their distance from a point, closest first.
+     *
+     * @param latitude latitude of the point
+     * @param longitude longitude of the point
+     * @return the order
+     */
+    private static Comparator<DNRecord> closestTo(double latitude, double longitude) {
+        return Comparator.comparingDouble(record -> SpatialIndex.distanceKm(latitude, longitude,
+                record.latitude(), record.longitude()));
+    }
+
+    @Override
+    public LookupResult getResult(String hostname) {
+        return shardFor(hostname).getResult(hostname);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the shards the hostnames belong to are loaded into memory first.
+     */
+    @Override
+    public List<LookupResult> getRecords(Collection<String> hostnames, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        Set<DomainNameModelImpl> touched = new LinkedHashSet<>();
+        for (String hostname : hostnames) {
+            touched.add(shardFor(hostname));
+        }
+        touched.parallelStream().forEach(DomainNameModelImpl::load);
+        return DomainNameModelImpl.lookUpAll(this, hostnames, maxConcurrency);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Every shard is loaded, in parallel.
+     */
+    @Override
+    public void load() {
+        shards.parallelStream().forEach(DomainNameModelImpl::load);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Only the shards with new records are rewritten.
+     */
+    @Override
+    public void compact() throws IOException {
+        for (DomainNameModelImpl shard : shards) {
+            shard.compact();
+        }
+    }
+}
@@ -1,16 +1,50 @@
 package student.model.formatters;
 
 
-import java.io.PrintStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.xml.namespace.QName;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.fasterxml.jackson.dataformat.xml.ser.ToXmlGenerator;
+import com.fasterxml.jackson.dataformat.xml.util.DefaultXmlPrettyPrinter;
 import student.model.DomainNameModel.DNRecord;
+import student.model.io.RecordSnapshot;
+import student.model.metrics.LatencyHistogram;
+import student.model.metrics.Metrics;
 
 /**
  * A class to format the data in different ways.
+ * 
+ * The Jackson mapper for each format is built the first time that format is written, so a run that
+ * prints a record in the pretty format never loads Jackson's serializers at all.
  */
 public final class DataFormatter {
+    /** Number of records written between flushes. */
+    private static final int FLUSH_EVERY = 1024;
+
+    /** Size of the buffer pretty print writes through. */
+    private static final int PRETTY_BUFFER_SIZE = 64 * 1024;
+    /** Starting size of the builder for a single pretty printed record. */
+    private static final int PRETTY_RECORD_SIZE = 256;
+    /** Line separator, the same one println used. */
+    private static final String NEWLINE = System.lineSeparator();
+
+    /** Time taken by each write, including waiting on a slow source of records. */
+    private static final LatencyHistogram FORMAT_SECONDS = Metrics.histogram(
+            "dninfo_format_seconds", "Time to write a list of records in any format");
 
     /**
      * Private constructor to prevent instantiation.
@@ -22,91 +56,311 @@ public final class DataFormatter {
     /**
      * Pretty print the data in a human readable format.
      * 
+     * Every record is built in the same builder and copied into one large buffered writer, so
+     * there is no per line string, and the output only hits the stream when the buffer fills up
+     * or a flush is due.
+     * 
      * @param records the records to print
      * @param out the output stream to write to
+     * @param flushEvery number of records between flushes
+     * @throws IOException if the data cannot be written
      */
-    private static void prettyPrint(Collection<DNRecord> records, OutputStream out) {
-        PrintStream pout = new PrintStream(out); // so i can use println
-        for (DNRecord record : records) {
-            prettySingle(record, pout);
-            pout.println();
+    private static void prettyPrint(Iterator<DNRecord> records, OutputStream out, int flushEvery)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8),
+                PRETTY_BUFFER_SIZE);
+        StringBuilder line = new StringBuilder(PRETTY_RECORD_SIZE);
+        char[] chars = new char[PRETTY_RECORD_SIZE];
+        int count = 0;
+        while (records.hasNext()) {
+            line.setLength(0);
+            prettySingle(records.next(), line);
+            line.append(NEWLINE);
+            int length = line.length();
+            if (length > chars.length) {
+                chars = new char[Math.max(length, chars.length * 2)];
+            }
+            // copy out of the builder, Writer.append would make a string of it first
+            line.getChars(0, length, chars, 0);
+            writer.write(chars, 0, length);
+            if (++count % flushEvery == 0) {
+                writer.flush();
+            }
         }
+        writer.flush();
     }
 
     /**
      * Pretty print a single record.
      * 
-     * Let this as an example, so you didn't have to worry about spacing.
+     * Let this as an example, so you didn't have to worry about spacing. The doubles are appended
+     * as primitives, which gives the same text as {@link Double#toString(double)}.
      * 
      * @param record the record to print
-     * @param out the output stream to write to
+     * @param out the builder to append to
      */
-    private static void prettySingle(@Nonnull DNRecord record, @Nonnull PrintStream out) {
-        out.println(record.hostname());
-        out.println("             IP: " + record.ip());
-        out.println("       Location: " + record.city() + ", " + record.region() + ", "
-                + record.country() + ", " + record.postal());
-        out.println("    Coordinates: " + record.latitude() + ", " + record.longitude());
+    private static void prettySingle(@Nonnull DNRecord record, @Nonnull StringBuilder out) {
+        out.append(record.hostname()).append(NEWLINE);
+        out.append("             IP: ").append(record.ip()).append(NEWLINE);
+        out.append("       Location: ").append(record.city()).append(", ").append(record.region())
+                .append(", ").append(record.country()).append(", ").append(record.postal())
+                .append(NEWLINE);
+        out.append("    Coordinates: ").append(record.latitude()).append(", ")
+                .append(record.longitude()).append(NEWLINE);
+    }
 
+    /**
+     * Writes each record with the generator, flushing every so many records so the output reaches
+     * the stream in bounded chunks.
+     * 
+     * @param records the records to write
+     * @param gen the generator to write with
+     * @param flushEvery number of records between flushes
+     * @throws IOException if the data cannot be written
+     */
+    private static void writeAll(Iterator<DNRecord> records, JsonGenerator gen, int flushEvery)
+            throws IOException {
+        int count = 0;
+        while (records.hasNext()) {
+            RecordCodec.write(records.next(), gen);
+            if (++count % flushEvery == 0) {
+                gen.flush();
+            }
+        }
     }
 
     /**
-     * Write the data as XML.
+     * Write the data in the specified format.
      * 
      * @param records the records to write
+     * @param format the format to write the records in
      * @param out the output stream to write to
      */
-    private static void writeXmlData(Collection<DNRecord> records, OutputStream out) {
-        throw new UnsupportedOperationException("Not yet implemented");
+    public static void write(@Nonnull Collection<DNRecord> records, @Nonnull Formats format,
+            @Nonnull OutputStream out) {
+        write(records.iterator(), format, out);
     }
 
-
     /**
-     * Write the data as JSON.
+     * Write the data in the specified format, as the stream produces it. The stream is not
+     * closed.
      * 
      * @param records the records to write
+     * @param format the format to write the records in
      * @param out the output stream to write to
      */
-    private static void writeJsonData(Collection<DNRecord> records, OutputStream out) {
-        throw new UnsupportedOperationException("Not yet implemented");
+    public static void write(@Nonnull Stream<DNRecord> records, @Nonnull Formats format,
+            @Nonnull OutputStream out) {
+        write(records.iterator(), format, out);
     }
 
     /**
-     * Write the data as CSV.
+     * Write the data in the specified format, as the iterator produces it.
+     * 
+     * Records are written one at a time, so the whole set never has to be in memory, and the
+     * output is flushed in chunks so a reader downstream sees data right away. The output stream
+     * is flushed but not closed.
      * 
      * @param records the records to write
+     * @param format the format to write the records in
      * @param out the output stream to write to
+     * @throws UncheckedIOException if the data cannot be written
      */
-    private static void writeCSVData(Collection<DNRecord> records, OutputStream out) {
-        throw new UnsupportedOperationException("Not yet implemented");
+    public static void write(@Nonnull Iterator<DNRecord> records, @Nonnull Formats format,
+            @Nonnull OutputStream out) {
+        write(records, format, out, FLUSH_EVERY);
     }
 
     /**
-     * Write the data in the specified format.
+     * Write the data in the specified format, as the iterator produces it, flushing the output
+     * every so many records. A flush after every record lets a slow source, such as lookups that
+     * go to the network, show each record as soon as it is ready. BINARY output can only be read
+     * once it is complete, so it is not flushed early.
      * 
      * @param records the records to write
      * @param format the format to write the records in
      * @param out the output stream to write to
+     * @param flushEvery number of records between flushes, at least 1
+     * @throws UncheckedIOException if the data cannot be written
      */
-    public static void write(@Nonnull Collection<DNRecord> records, @Nonnull Formats format,
+    public static void write(@Nonnull Iterator<DNRecord> records, @Nonnull Formats format,
+            @Nonnull OutputStream out, int flushEvery) {
+        if (flushEvery < 1) {
+            throw new IllegalArgumentException("flushEvery must be at least 1");
+        }
+        long start = System.nanoTime();
+        try {
+            switch (format) {
+                case XML:
+                    Xml.write(records, out, flushEvery, false);
+                    break;
+                case JSON:
+                    Json.write(records, out, flushEvery);
+                    break;
+                case CSV:
+                    Csv.write(records, out, flushEvery);
+                    break;
+                case BINARY:
+                    RecordSnapshot.write(records, 0, 0, out);
+                    break;
+                default:
+                    prettyPrint(records, out, flushEvery);
+
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            FORMAT_SECONDS.recordSince(start);
+        }
+    }
+
+    /**
+     * Writes records as a database file: the XML format, with each record's fetched-at time when it
+     * is known. The output stream is flushed but not closed.
+     * 
+     * @param records the records to write
+     * @param out the output stream to write to
+     * @throws UncheckedIOException if the data cannot be written
+     */
+    public static void writeDatabase(@Nonnull Iterator<DNRecord> records,
             @Nonnull OutputStream out) {
+        try {
+            Xml.write(records, out, FLUSH_EVERY, true);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes XML. The mapper is only built the first time XML is written, so the other formats
+     * never load the XML classes.
+     */
+    private static final class Xml {
+        /** Name of the root element. */
+        private static final String ROOT = "domainList";
+        /** Name of the element for each record. */
+        private static final String RECORD = "domain";
+        /** Mapper that never closes the output stream. */
+        private static final XmlMapper MAPPER = (XmlMapper) new XmlMapper()
+                .registerModule(RecordCodec.module())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
 
-        switch (format) {
-            case XML:
-                writeXmlData(records, out);
-                break;
-            case JSON:
-                writeJsonData(records, out);
-                break;
-            case CSV:
-                writeCSVData(records, out);
-                break;
-            default:
-                prettyPrint(records, out);
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private Xml() {
+            // empty
+        }
 
+        /**
+         * Write the data as XML.
+         * 
+         * Each record is written as a {@code <domain>} element inside a {@code <domainList>} root,
+         * as it is pulled from the iterator.
+         * 
+         * @param records the records to write
+         * @param out the output stream to write to
+         * @param flushEvery number of records between flushes
+         * @param stored true to add the fetched-at times, as the database keeps them
+         * @throws IOException if the data cannot be written
+         */
+        static void write(Iterator<DNRecord> records, OutputStream out, int flushEvery,
+                boolean stored) throws IOException {
+            try (ToXmlGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                gen.setPrettyPrinter(new DefaultXmlPrettyPrinter());
+                gen.setNextName(new QName(ROOT));
+                gen.writeStartObject();
+                int count = 0;
+                while (records.hasNext()) {
+                    gen.writeFieldName(RECORD);
+                    if (stored) {
+                        RecordCodec.writeStored(records.next(), gen);
+                    } else {
+                        RecordCodec.write(records.next(), gen);
+                    }
+                    if (++count % flushEvery == 0) {
+                        gen.flush();
+                    }
+                }
+                gen.writeEndObject();
+            }
         }
     }
 
+    /**
+     * Writes JSON, building the mapper the first time JSON is written.
+     */
+    private static final class Json {
+        /** Mapper that never closes the output stream. */
+        private static final ObjectMapper MAPPER = new ObjectMapper()
+                .registerModule(RecordCodec.module())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private Json() {
+            // empty
+        }
+
+        /**
+         * Write the data as JSON.
+         * 
+         * @param records the records to write
+         * @param out the output stream to write to
+         * @param flushEvery number of records between flushes
+         * @throws IOException if the data cannot be written
+         */
+        static void write(Iterator<DNRecord> records, OutputStream out, int flushEvery)
+                throws IOException {
+            try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                gen.useDefaultPrettyPrinter();
+                gen.writeStartArray();
+                writeAll(records, gen, flushEvery);
+                gen.writeEndArray();
+            }
+        }
+    }
 
+    /**
+     * Writes CSV, building the mapper and schema the first time CSV is written.
+     */
+    private static final class Csv {
+        /** Mapper that never closes the output stream. */
+        private static final CsvMapper MAPPER = (CsvMapper) new CsvMapper()
+                .registerModule(RecordCodec.module())
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        /** Columns, in record order, with a header row. */
+        private static final CsvSchema SCHEMA = CsvSchema.builder()
+                .addColumn(RecordCodec.HOSTNAME).addColumn(RecordCodec.IP)
+                .addColumn(RecordCodec.CITY).addColumn(RecordCodec.REGION)
+                .addColumn(RecordCodec.COUNTRY).addColumn(RecordCodec.POSTAL)
+                .addNumberColumn(RecordCodec.LATITUDE).addNumberColumn(RecordCodec.LONGITUDE)
+                .setUseHeader(true).build();
+
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private Csv() {
+            // empty
+        }
 
+        /**
+         * Write the data as CSV, with a header row.
+         * 
+         * @param records the records to write
+         * @param out the output stream to write to
+         * @param flushEvery number of records between flushes
+         * @throws IOException if the data cannot be written
+         */
+        static void write(Iterator<DNRecord> records, OutputStream out, int flushEvery)
+                throws IOException {
+            try (JsonGenerator gen = MAPPER.getFactory().createGenerator(out)) {
+                gen.setSchema(SCHEMA);
+                writeAll(records, gen, flushEvery);
+            }
+        }
+    }
 }
@@ -1,9 +1,12 @@
 package student.model.formatters;
 
-/** A list of format types allowed for export and import. */
+/**
+ * A list of format types allowed for export and import. PRETTY is for export only, and the format
+ * of a file being imported is found from its first bytes.
+ */
 public enum Formats {
-    /** Different formatting options. */
-    JSON, XML, CSV, PRETTY;
+    /** Different formatting options. BINARY is the memory mappable snapshot format. */
+    JSON, XML, CSV, PRETTY, BINARY;
 
     /**
      * Helper function to check if a value is in the list of formats.
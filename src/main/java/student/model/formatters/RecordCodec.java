@@ -0,0 +1,316 @@
+package student.model.formatters;
+
+import java.io.IOException;
+import java.io.InputStream;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.Version;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.xml.XmlFactory;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * Writes and reads a {@link DNRecord} straight through a Jackson streaming generator or parser,
+ * without databind looking the record up, building a serializer context or reflecting on its
+ * accessors for every record.
+ *
+ * The same code handles JSON, XML and CSV, since the generators and parsers of all three speak
+ * the same tokens: an object of named fields. The fields are written in the record's order, so
+ * the output is the same as databind gives for the record's annotations. Reading skips fields it
+ * does not know, which lets it read ipapi.co responses as well as saved records.
+ *
+ * <pre>
+ * try (JsonGenerator gen = factory.createGenerator(out)) {
+ *     RecordCodec.write(record, gen);
+ * }
+ * </pre>
+ *
+ * {@link #module()} registers the codec with a mapper, for code that goes through databind.
+ */
+public final class RecordCodec {
+    /** Name of the hostname field. The names are listed in the order the fields are written. */
+    public static final String HOSTNAME = "hostname";
+    /** Name of the ip field. */
+    public static final String IP = "ip";
+    /** Name of the city field. */
+    public static final String CITY = "city";
+    /** Name of the region field. */
+    public static final String REGION = "region";
+    /** Name of the country field. */
+    public static final String COUNTRY = "country";
+    /** Name of the postal field. */
+    public static final String POSTAL = "postal";
+    /** Name of the latitude field. */
+    public static final String LATITUDE = "latitude";
+    /** Name of the longitude field. */
+    public static final String LONGITUDE = "longitude";
+    /** Name of the fetched-at field, only written by {@link #writeStored}. */
+    public static final String FETCHED_AT = "fetchedAt";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RecordCodec() {
+        // empty
+    }
+
+    /**
+     * Writes a record as an object. For XML the caller names the element first, with
+     * {@link JsonGenerator#writeFieldName(String)} or as the root.
+     *
+     * @param record the record
+     * @param gen the generator to write with
+     * @throws IOException if the record cannot be written
+     */
+    public static void write(DNRecord record, JsonGenerator gen) throws IOException {
+        write(record, gen, false);
+    }
+
+    /**
+     * Writes a record as it is kept in the database, the same as {@link #write} with the fetched-at
+     * time added at the end when it is known.
+     *
+     * @param record the record
+     * @param gen the generator to write with
+     * @throws IOException if the record cannot be written
+     */
+    public static void writeStored(DNRecord record, JsonGenerator gen) throws IOException {
+        write(record, gen, true);
+    }
+
+    /**
+     * Writes a record as an object.
+     *
+     * @param record the record
+     * @param gen the generator to write with
+     * @param stored true to add the fetched-at time
+     * @throws IOException if the record cannot be written
+     */
+    private static void write(DNRecord record, JsonGenerator gen, boolean stored)
+            throws IOException {
+        gen.writeStartObject(record);
+        writeString(gen, HOSTNAME, record.hostname());
+        writeString(gen, IP, record.ip());
+        writeString(gen, CITY, record.city());
+        writeString(gen, REGION, record.region());
+        writeString(gen, COUNTRY, record.country());
+        writeString(gen, POSTAL, record.postal());
+        gen.writeFieldName(LATITUDE);
+        gen.writeNumber(record.latitude());
+        gen.writeFieldName(LONGITUDE);
+        gen.writeNumber(record.longitude());
+        if (stored && record.fetchedAt() != 0) {
+            gen.writeFieldName(FETCHED_AT);
+            gen.writeNumber(record.fetchedAt());
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Writes a text field, or a null.
+     *
+     * @param gen the generator
+     * @param name the field name
+     * @param value the value, may be null
+     * @throws IOException if the field cannot be written
+     */
+    private static void writeString(JsonGenerator gen, String name, String value)
+            throws IOException {
+        gen.writeFieldName(name);
+        if (value == null) {
+            gen.writeNull();
+        } else {
+            gen.writeString(value);
+        }
+    }
+
+    /**
+     * Reads a record. The parser is on the start of the object, just before it, or at the start
+     * of or inside an array of records, and is left on the end of the object. Calling it again
+     * reads the next record in the array. Unknown fields are skipped, missing fields are left null
+     * (or 0 for the coordinates).
+     *
+     * @param parser the parser
+     * @return the record, or null at the end of the array or the input
+     * @throws IOException if the input is not a record
+     */
+    public static DNRecord read(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == null || token == JsonToken.END_OBJECT) {
+            token = parser.nextToken();
+        }
+        if (token == JsonToken.START_ARRAY) {
+            token = parser.nextToken();
+        }
+        if (token == null || token == JsonToken.END_ARRAY) {
+            return null;
+        }
+        if (token != JsonToken.START_OBJECT) {
+            throw new IOException("Expected a record but found " + token + " at "
+                    + parser.currentLocation());
+        }
+        String hostname = null;
+        String ip = null;
+        String city = null;
+        String region = null;
+        String country = null;
+        String postal = null;
+        double latitude = 0;
+        double longitude = 0;
+        long fetchedAt = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            parser.nextToken();
+            switch (name) {
+                case HOSTNAME -> hostname = text(parser);
+                case IP -> ip = text(parser);
+                case CITY -> city = text(parser);
+                case REGION -> region = text(parser);
+                case COUNTRY -> country = text(parser);
+                case POSTAL -> postal = text(parser);
+                case LATITUDE -> latitude = number(parser);
+                case LONGITUDE -> longitude = number(parser);
+                case FETCHED_AT -> fetchedAt = (long) number(parser);
+                default -> parser.skipChildren();
+            }
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new IOException("Record is not closed at " + parser.currentLocation());
+        }
+        return new DNRecord(hostname, ip, city, region, country, postal, latitude, longitude,
+                fetchedAt);
+    }
+
+    /**
+     * Reads the record in a document that holds a single record, such as an ipapi.co response.
+     *
+     * @param in the XML document, which is left open
+     * @return the record
+     * @throws IOException if the document cannot be read
+     */
+    public static DNRecord readXml(InputStream in) throws IOException {
+        try (JsonParser parser = XmlInput.FACTORY.createParser(in)) {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Reads the text of the value the parser is on.
+     *
+     * @param parser the parser
+     * @return the text, or null for a null
+     * @throws IOException if the value is not text
+     */
+    private static String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (!token.isScalarValue()) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+
+    /**
+     * Reads the number the parser is on. Formats without numbers (XML, CSV) give it as text, and
+     * empty text is taken as 0.
+     *
+     * @param parser the parser
+     * @return the number
+     * @throws IOException if the value is not a number
+     */
+    private static double number(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token.isNumeric()) {
+            return parser.getDoubleValue();
+        }
+        String text = text(parser);
+        if (text == null || text.isBlank()) {
+            return 0;
+        }
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a number: " + text + " at " + parser.currentLocation(), e);
+        }
+    }
+
+    /**
+     * Gets a module that makes a mapper use the codec for records.
+     *
+     * @return the module
+     */
+    public static Module module() {
+        SimpleModule module = new SimpleModule("RecordCodec", Version.unknownVersion());
+        module.addSerializer(DNRecord.class, new Serializer());
+        module.addDeserializer(DNRecord.class, new Deserializer());
+        return module;
+    }
+
+    /**
+     * The codec as a databind serializer.
+     */
+    private static final class Serializer extends StdSerializer<DNRecord> {
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates the serializer.
+         */
+        Serializer() {
+            super(DNRecord.class);
+        }
+
+        @Override
+        public void serialize(DNRecord value, JsonGenerator gen, SerializerProvider provider)
+                throws IOException {
+            write(value, gen);
+        }
+    }
+
+    /**
+     * The codec as a databind deserializer.
+     */
+    private static final class Deserializer extends StdDeserializer<DNRecord> {
+        /** Serialization version. */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates the deserializer.
+         */
+        Deserializer() {
+            super(DNRecord.class);
+        }
+
+        @Override
+        public DNRecord deserialize(JsonParser parser, DeserializationContext context)
+                throws IOException {
+            return read(parser);
+        }
+    }
+
+    /**
+     * Holds the XML factory, so it is only built once XML is read.
+     */
+    private static final class XmlInput {
+        /** Factory for the XML parsers, thread safe. Leaves the input open. */
+        private static final JsonFactory FACTORY =
+                new XmlFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private XmlInput() {
+            // empty
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package student.model.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * A store that keeps the records in columns instead of as objects.
+ *
+ * City, region, country and postal code repeat a lot (most records share a handful of
+ * countries), so each is dictionary encoded: the column holds an int code, and every distinct
+ * value is kept once. IPv4 addresses are packed into an int. Latitude and longitude are kept in
+ * double arrays, and the fetched-at times in a long array. Only the hostnames, which are unique,
+ * are kept as strings.
+ *
+ * A {@link DNRecord} is built each time a row is read, so reads cost an allocation where the
+ * {@link ListRecordStore} has none, in exchange for a much smaller heap on large databases.
+ */
+public final class ColumnarRecordStore implements RecordStore {
+    /** Starting number of rows. */
+    private static final int INITIAL_CAPACITY = 64;
+    /** Code for a null value. */
+    private static final int NULL_CODE = -1;
+
+    /** The hostnames. */
+    private String[] hostnames = new String[INITIAL_CAPACITY];
+    /** The IPv4 addresses, packed. Rows in {@link #otherIps} have 0 here. */
+    private int[] ips = new int[INITIAL_CAPACITY];
+    /** Addresses that are not plain dotted IPv4 (IPv6, null, odd formatting), by row. */
+    private final Map<Integer, String> otherIps = new HashMap<>();
+    /** City values. */
+    private final Dictionary cities = new Dictionary();
+    /** Region values. */
+    private final Dictionary regions = new Dictionary();
+    /** Country values. */
+    private final Dictionary countries = new Dictionary();
+    /** Postal code values. */
+    private final Dictionary postals = new Dictionary();
+    /** City codes. */
+    private int[] cityCodes = new int[INITIAL_CAPACITY];
+    /** Region codes. */
+    private int[] regionCodes = new int[INITIAL_CAPACITY];
+    /** Country codes. */
+    private int[] countryCodes = new int[INITIAL_CAPACITY];
+    /** Postal codes. */
+    private int[] postalCodes = new int[INITIAL_CAPACITY];
+    /** The latitudes. */
+    private double[] latitudes = new double[INITIAL_CAPACITY];
+    /** The longitudes. */
+    private double[] longitudes = new double[INITIAL_CAPACITY];
+    /** The fetched-at times. */
+    private long[] fetchedAts = new long[INITIAL_CAPACITY];
+    /** Number of rows used. */
+    private int size;
+
+    @Override
+    public int add(DNRecord record) {
+        if (size == hostnames.length) {
+            grow();
+        }
+        int row = size++;
+        write(row, record);
+        return row;
+    }
+
+    @Override
+    public void set(int row, DNRecord record) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(row);
+        }
+        write(row, record);
+    }
+
+    /**
+     * Writes a record into the columns of a row. Values no longer used stay in the dictionaries.
+     *
+     * @param row the row
+     * @param record the record
+     */
+    private void write(int row, DNRecord record) {
+        hostnames[row] = record.hostname();
+        long packed = packIpv4(record.ip());
+        if (packed < 0) {
+            otherIps.put(row, record.ip());
+            ips[row] = 0;
+        } else {
+            otherIps.remove(row);
+            ips[row] = (int) packed;
+        }
+        cityCodes[row] = cities.code(record.city());
+        regionCodes[row] = regions.code(record.region());
+        countryCodes[row] = countries.code(record.country());
+        postalCodes[row] = postals.code(record.postal());
+        latitudes[row] = record.latitude();
+        longitudes[row] = record.longitude();
+        fetchedAts[row] = record.fetchedAt();
+    }
+
+    /**
+     * Doubles the size of every column.
+     */
+    private void grow() {
+        int capacity = hostnames.length * 2;
+        hostnames = Arrays.copyOf(hostnames, capacity);
+        ips = Arrays.copyOf(ips, capacity);
+        cityCodes = Arrays.copyOf(cityCodes, capacity);
+        regionCodes = Arrays.copyOf(regionCodes, capacity);
+        countryCodes = Arrays.copyOf(countryCodes, capacity);
+        postalCodes = Arrays.copyOf(postalCodes, capacity);
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+        fetchedAts = Arrays.copyOf(fetchedAts, capacity);
+    }
+
+    @Override
+    public DNRecord get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(row);
+        }
+        String ip = otherIps.containsKey(row) ? otherIps.get(row) : formatIpv4(ips[row]);
+        return new DNRecord(hostnames[row], ip, cities.value(cityCodes[row]),
+                regions.value(regionCodes[row]), countries.value(countryCodes[row]),
+                postals.value(postalCodes[row]), latitudes[row], longitudes[row], fetchedAts[row]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Counts the columns at their current capacity, so the spare room left by growing is
+     * included.
+     */
+    @Override
+    public long estimatedBytes() {
+        int capacity = hostnames.length;
+        long bytes = Footprint.array(capacity, Footprint.REFERENCE);
+        for (int row = 0; row < size; row++) {
+            bytes += Footprint.string(hostnames[row]);
+        }
+        bytes += 5 * Footprint.array(capacity, Integer.BYTES);
+        bytes += 2 * Footprint.array(capacity, Double.BYTES);
+        bytes += Footprint.array(capacity, Long.BYTES);
+        for (String ip : otherIps.values()) {
+            bytes += Footprint.MAP_ENTRY + Footprint.string(ip);
+        }
+        return bytes + cities.estimatedBytes() + regions.estimatedBytes()
+                + countries.estimatedBytes() + postals.estimatedBytes();
+    }
+
+    /**
+     * Packs a dotted IPv4 address into an int. Only the canonical form (no leading zeros, no
+     * spaces) is packed, so formatting the int gives back the same string.
+     *
+     * @param ip the address, may be null
+     * @return the packed address as an unsigned value, or -1 if it is not a canonical IPv4 address
+     */
+    static long packIpv4(String ip) {
+        if (ip == null) {
+            return -1;
+        }
+        long packed = 0;
+        int octets = 0;
+        int i = 0;
+        int length = ip.length();
+        while (i < length) {
+            int start = i;
+            int value = 0;
+            while (i < length && i - start < 3 && ip.charAt(i) >= '0' && ip.charAt(i) <= '9') {
+                value = value * 10 + ip.charAt(i) - '0';
+                i++;
+            }
+            int digits = i - start;
+            if (digits == 0 || value > 255 || (digits > 1 && ip.charAt(start) == '0')) {
+                return -1;
+            }
+            packed = packed << 8 | value;
+            octets++;
+            if (i < length) {
+                if (ip.charAt(i) != '.' || octets == 4 || i == length - 1) {
+                    return -1;
+                }
+                i++;
+            }
+        }
+        return octets == 4 ? packed : -1;
+    }
+
+    /**
+     * Formats a packed IPv4 address.
+     *
+     * @param packed the packed address
+     * @return the dotted address
+     */
+    static String formatIpv4(int packed) {
+        return new StringBuilder(15).append(packed >>> 24).append('.')
+                .append(packed >>> 16 & 0xFF).append('.').append(packed >>> 8 & 0xFF).append('.')
+                .append(packed & 0xFF).toString();
+    }
+
+    /**
+     * The distinct values of a column, each with an int code.
+     */
+    private static final class Dictionary {
+        /** The values, by code. */
+        private final List<String> values = new ArrayList<>();
+        /** The codes, by value. */
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        /**
+         * Gets the code for a value, adding the value if it is new.
+         *
+         * @param value the value, may be null
+         * @return the code
+         */
+        int code(String value) {
+            if (value == null) {
+                return NULL_CODE;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                values.add(value);
+                codes.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Gets the value for a code.
+         *
+         * @param code the code
+         * @return the value, null for the null code
+         */
+        String value(int code) {
+            return code == NULL_CODE ? null : values.get(code);
+        }
+
+        /**
+         * Estimates the heap used by the dictionary.
+         *
+         * @return the estimate in bytes
+         */
+        long estimatedBytes() {
+            long bytes = Footprint.array(values.size(), Footprint.REFERENCE);
+            for (String value : values) {
+                bytes += Footprint.string(value) + Footprint.MAP_ENTRY;
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package student.model.index;
+
+/**
+ * Rough sizes of heap objects, on a 64 bit JVM with compressed references and compact strings.
+ * Good enough to compare one store against another, not to predict the heap exactly.
+ */
+final class Footprint {
+    /** Size of a reference. */
+    static final int REFERENCE = 4;
+    /** Size of an object header. */
+    static final int OBJECT_HEADER = 12;
+    /** Size of an array header. */
+    static final int ARRAY_HEADER = 16;
+    /** Size of a String, without its bytes. */
+    static final int STRING = 24;
+    /** Size of a HashMap entry holding a boxed Integer, with its share of the table. */
+    static final int MAP_ENTRY = 32 + 2 * REFERENCE + 16;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Footprint() {
+        // empty
+    }
+
+    /**
+     * Rounds a size up to the 8 byte object alignment.
+     *
+     * @param bytes the size
+     * @return the aligned size
+     */
+    static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+     * Gets the size of an array.
+     *
+     * @param length the length of the array
+     * @param elementSize the size of each element
+     * @return the size in bytes
+     */
+    static long array(long length, int elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    /**
+     * Gets the size of a string, assuming it is latin-1.
+     *
+     * @param value the string, may be null
+     * @return the size in bytes, 0 for null
+     */
+    static long string(String value) {
+        return value == null ? 0 : STRING + array(value.length(), 1);
+    }
+}
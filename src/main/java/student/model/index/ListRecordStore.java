@@ -0,0 +1,55 @@
+package student.model.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * The plain store, a list of the records as they were added. Records come back as the same
+ * objects, so reads are free, but every record keeps its own six strings.
+ */
+public final class ListRecordStore implements RecordStore {
+    /** Size of a DNRecord: header, six references, two doubles and a long. */
+    private static final long RECORD = Footprint.align(Footprint.OBJECT_HEADER
+            + 6 * Footprint.REFERENCE + 2 * Double.BYTES + Long.BYTES);
+
+    /** The records, in row order. */
+    private final List<DNRecord> records = new ArrayList<>();
+
+    @Override
+    public int add(DNRecord record) {
+        records.add(record);
+        return records.size() - 1;
+    }
+
+    @Override
+    public void set(int row, DNRecord record) {
+        records.set(row, record);
+    }
+
+    @Override
+    public DNRecord get(int row) {
+        return records.get(row);
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Each string is counted as its own object, as it is when the records are parsed from a file.
+     */
+    @Override
+    public long estimatedBytes() {
+        long bytes = Footprint.array(records.size(), Footprint.REFERENCE);
+        for (DNRecord record : records) {
+            bytes += RECORD + Footprint.string(record.hostname()) + Footprint.string(record.ip())
+                    + Footprint.string(record.city()) + Footprint.string(record.region())
+                    + Footprint.string(record.country()) + Footprint.string(record.postal());
+        }
+        return bytes;
+    }
+}
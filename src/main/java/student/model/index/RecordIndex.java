@@ -0,0 +1,313 @@
+package student.model.index;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordField;
+
+/**
+ * Holds the records in the order they were added, with a hash index on the hostname and secondary
+ * indexes on the fields that are often searched or grouped by.
+ *
+ * The records themselves live in a {@link RecordStore}, and the indexes only hold their rows, so
+ * the store decides how much memory a record takes. Lists returned by the index are views that
+ * read each record from the store when it is reached.
+ *
+ * Keys are compared ignoring case, the same as hostnames. This class is not thread safe, the owner
+ * is expected to guard it.
+ */
+public final class RecordIndex {
+    /** The fields that have a secondary index. */
+    public static final Set<RecordField> SECONDARY =
+            Collections.unmodifiableSet(EnumSet.of(RecordField.IP, RecordField.COUNTRY,
+                    RecordField.REGION, RecordField.POSTAL));
+
+    /** The records, in the order they were added. */
+    private final RecordStore store;
+    /** The rows by hostname key. */
+    private final Map<String, Integer> byHostname = new HashMap<>();
+    /** For each secondary field, the rows by field key. */
+    private final Map<RecordField, Map<String, Rows>> secondary =
+            new EnumMap<>(RecordField.class);
+
+    /**
+     * Creates an empty index over a {@link ListRecordStore}.
+     */
+    public RecordIndex() {
+        this(new ListRecordStore());
+    }
+
+    /**
+     * Creates an empty index over a store.
+     *
+     * @param store the store to keep the records in, which must be empty
+     */
+    public RecordIndex(RecordStore store) {
+        if (store.size() != 0) {
+            throw new IllegalArgumentException("The store must be empty");
+        }
+        this.store = store;
+        for (RecordField field : SECONDARY) {
+            secondary.put(field, new HashMap<>());
+        }
+    }
+
+    /**
+     * Gets the key used for a value, so lookups ignore case.
+     *
+     * @param value the value, may be null
+     * @return the key
+     */
+    private static String key(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a record, unless one with the same hostname is already in the index.
+     *
+     * @param record the record to add
+     * @return true if it was added
+     */
+    public boolean add(DNRecord record) {
+        String hostname = key(record.hostname());
+        if (byHostname.containsKey(hostname)) {
+            return false;
+        }
+        int row = store.add(record);
+        byHostname.put(hostname, row);
+        for (Map.Entry<RecordField, Map<String, Rows>> entry : secondary.entrySet()) {
+            String fieldKey = key(entry.getKey().valueOf(record));
+            entry.getValue().computeIfAbsent(fieldKey, k -> new Rows()).add(row);
+        }
+        return true;
+    }
+
+    /**
+     * Adds a record, or replaces the record with the same hostname in its place, updating the
+     * secondary indexes for any field that changed.
+     *
+     * @param record the record to add
+     * @return the record it replaced, or null if it was added
+     */
+    public DNRecord put(DNRecord record) {
+        Integer row = byHostname.get(key(record.hostname()));
+        if (row == null) {
+            add(record);
+            return null;
+        }
+        DNRecord old = store.get(row);
+        store.set(row, record);
+        for (Map.Entry<RecordField, Map<String, Rows>> entry : secondary.entrySet()) {
+            String oldKey = key(entry.getKey().valueOf(old));
+            String newKey = key(entry.getKey().valueOf(record));
+            if (!oldKey.equals(newKey)) {
+                Map<String, Rows> index = entry.getValue();
+                Rows rows = index.get(oldKey);
+                rows.remove(row);
+                if (rows.size == 0) {
+                    index.remove(oldKey);
+                }
+                index.computeIfAbsent(newKey, k -> new Rows()).insert(row);
+            }
+        }
+        return old;
+    }
+
+    /**
+     * Gets the record for a hostname.
+     *
+     * @param hostname the hostname
+     * @return the record, or null if it is not in the index
+     */
+    public DNRecord get(String hostname) {
+        Integer row = byHostname.get(key(hostname));
+        return row == null ? null : store.get(row);
+    }
+
+    /**
+     * Checks if a field can be searched without a scan.
+     *
+     * @param field the field
+     * @return true if the field is the hostname or has a secondary index
+     */
+    public boolean isIndexed(RecordField field) {
+        return field == RecordField.HOSTNAME || secondary.containsKey(field);
+    }
+
+    /**
+     * Gets all the records where the field matches the value, ignoring case. Uses the index if the
+     * field has one, otherwise scans.
+     *
+     * @param field the field to search
+     * @param value the value to match
+     * @return the matching records, in the order they were added
+     */
+    public List<DNRecord> getAll(RecordField field, String value) {
+        if (field == RecordField.HOSTNAME) {
+            DNRecord record = get(value);
+            return record == null ? List.of() : List.of(record);
+        }
+        Map<String, Rows> index = secondary.get(field);
+        if (index != null) {
+            Rows rows = index.get(key(value));
+            return rows == null ? List.of() : rows.view();
+        }
+        String wanted = key(value);
+        List<DNRecord> found = new ArrayList<>();
+        for (DNRecord record : records()) {
+            if (wanted.equals(key(field.valueOf(record)))) {
+                found.add(record);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Groups the records by the value of a field. Keys are lower case.
+     *
+     * @param field the field to group by
+     * @return the records for each value, the groups in no particular order
+     */
+    public Map<String, List<DNRecord>> groupBy(RecordField field) {
+        Map<String, Rows> index = secondary.get(field);
+        if (index != null) {
+            Map<String, List<DNRecord>> groups = new HashMap<>();
+            index.forEach((key, rows) -> groups.put(key, rows.view()));
+            return Collections.unmodifiableMap(groups);
+        }
+        Map<String, List<DNRecord>> groups = new LinkedHashMap<>();
+        for (DNRecord record : records()) {
+            groups.computeIfAbsent(key(field.valueOf(record)), k -> new ArrayList<>()).add(record);
+        }
+        return groups;
+    }
+
+    /**
+     * Gets the records in the order they were added.
+     *
+     * @return an unmodifiable view of the records
+     */
+    public List<DNRecord> records() {
+        return new StoreView();
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Gets the store the records are kept in, for example to report its memory use.
+     *
+     * @return the store
+     */
+    public RecordStore getStore() {
+        return store;
+    }
+
+    /**
+     * View of every record in the store.
+     */
+    private final class StoreView extends AbstractList<DNRecord> implements RandomAccess {
+        @Override
+        public DNRecord get(int index) {
+            return store.get(index);
+        }
+
+        @Override
+        public int size() {
+            return store.size();
+        }
+    }
+
+    /**
+     * A growable list of rows, in row order.
+     */
+    private final class Rows {
+        /** The rows. */
+        private int[] rows = new int[1];
+        /** Number of rows used. */
+        private int size;
+
+        /**
+         * Adds a row.
+         *
+         * @param row the row
+         */
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        /**
+         * Adds a row in its place in row order.
+         *
+         * @param row the row, not already in the list
+         */
+        void insert(int row) {
+            int at = -Arrays.binarySearch(rows, 0, size, row) - 1;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            System.arraycopy(rows, at, rows, at + 1, size - at);
+            rows[at] = row;
+            size++;
+        }
+
+        /**
+         * Removes a row.
+         *
+         * @param row the row, which must be in the list
+         */
+        void remove(int row) {
+            int at = Arrays.binarySearch(rows, 0, size, row);
+            System.arraycopy(rows, at + 1, rows, at, size - at - 1);
+            size--;
+        }
+
+        /**
+         * Gets a view of the records in the rows.
+         *
+         * @return an unmodifiable view
+         */
+        List<DNRecord> view() {
+            return new RowsView();
+        }
+
+        /**
+         * View of the records in these rows.
+         */
+        private final class RowsView extends AbstractList<DNRecord>
+                implements RandomAccess {
+            @Override
+            public DNRecord get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException(index);
+                }
+                return store.get(rows[index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        }
+    }
+}
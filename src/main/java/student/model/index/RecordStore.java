@@ -0,0 +1,67 @@
+package student.model.index;
+
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * Holds the records behind a {@link RecordIndex}. Each record gets a row number when it is added,
+ * and the index refers to records only by their rows, so a store is free to keep them in whatever
+ * shape it likes and rebuild a {@link DNRecord} when one is asked for.
+ *
+ * Stores are not thread safe, the owner of the index is expected to guard them.
+ *
+ * @see ListRecordStore
+ * @see ColumnarRecordStore
+ */
+public interface RecordStore {
+
+    /**
+     * Adds a record.
+     *
+     * @param record the record to add
+     * @return the row of the record, one more than the row of the record added before it
+     */
+    int add(DNRecord record);
+
+    /**
+     * Replaces the record in a row.
+     *
+     * @param row the row
+     * @param record the new record
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    void set(int row, DNRecord record);
+
+    /**
+     * Gets the record in a row.
+     *
+     * @param row the row
+     * @return the record
+     * @throws IndexOutOfBoundsException if there is no such row
+     */
+    DNRecord get(int row);
+
+    /**
+     * Gets the number of records.
+     *
+     * @return the number of records
+     */
+    int size();
+
+    /**
+     * Estimates the heap used by the records, on a 64 bit JVM with compressed references and
+     * compact strings. Only the store is counted, not the indexes over it.
+     *
+     * @return the estimate in bytes
+     */
+    long estimatedBytes();
+
+    /**
+     * Gets the estimated heap used per record.
+     *
+     * @return the estimate in bytes, 0 if the store is empty
+     */
+    default double bytesPerRecord() {
+        int size = size();
+        return size == 0 ? 0 : (double) estimatedBytes() / size;
+    }
+}
@@ -0,0 +1,331 @@
+package student.model.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * A k-d tree over the locations of the records, for finding the records near a point.
+ *
+ * Each location is turned into a point on the unit sphere (x, y, z), so the tree works the same
+ * at the poles and across the antimeridian, and the straight line (chord) distance between two
+ * points grows with the distance along the surface. Searches compare chords and only convert to
+ * kilometres at the edges.
+ *
+ * The tree is stored in flat arrays, each subtree in a contiguous range with its root in the
+ * middle, so a search touches no objects until it finds a match. Records with a location of
+ * exactly 0, 0 are treated as having no location and left out. The index is immutable, build a
+ * new one when the records change.
+ */
+public final class SpatialIndex {
+    /** Mean radius of the earth in kilometres. */
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    /** Orders hits closest first. */
+    private static final Comparator<Hit> CLOSEST_FIRST = Comparator.comparingDouble(Hit::chord2);
+
+    /** The records, in tree order. */
+    private final DNRecord[] records;
+    /** The x, y, z of each record, in tree order. */
+    private final double[] points;
+
+    /**
+     * Builds the index.
+     *
+     * @param records the records to index
+     */
+    public SpatialIndex(Collection<DNRecord> records) {
+        List<DNRecord> located = new ArrayList<>(records.size());
+        for (DNRecord record : records) {
+            if (record.latitude() != 0 || record.longitude() != 0) {
+                located.add(record);
+            }
+        }
+        this.records = located.toArray(new DNRecord[0]);
+        this.points = new double[this.records.length * 3];
+        for (int i = 0; i < this.records.length; i++) {
+            toPoint(this.records[i].latitude(), this.records[i].longitude(), points, i * 3);
+        }
+        build(0, this.records.length, 0);
+    }
+
+    /**
+     * Gets the number of records with a location.
+     *
+     * @return the number of records in the index
+     */
+    public int size() {
+        return records.length;
+    }
+
+    /**
+     * Finds the records within a distance of a point.
+     *
+     * @param latitude latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param radiusKm the distance in kilometres
+     * @return the records, closest first
+     * @throws IllegalArgumentException if the point is not a valid location or the radius is
+     *         negative
+     */
+    public List<DNRecord> near(double latitude, double longitude, double radiusKm) {
+        checkLocation(latitude, longitude);
+        if (!(radiusKm >= 0)) {
+            throw new IllegalArgumentException("Radius must not be negative: " + radiusKm);
+        }
+        double[] query = new double[3];
+        toPoint(latitude, longitude, query, 0);
+        double angle = radiusKm / EARTH_RADIUS_KM;
+        double chord = angle >= Math.PI ? 2 : 2 * Math.sin(angle / 2);
+        // a little slack so points right on the edge are not lost to rounding
+        double limit = chord * chord * (1 + 1e-12) + 1e-18;
+        List<Hit> hits = new ArrayList<>();
+        near(0, records.length, 0, query, limit, hits);
+        hits.sort(CLOSEST_FIRST);
+        return toRecords(hits);
+    }
+
+    /**
+     * Searches a subtree for points within the limit.
+     *
+     * @param lo start of the subtree, inclusive
+     * @param hi end of the subtree, exclusive
+     * @param depth depth of the subtree root
+     * @param query the point searched around
+     * @param limit the squared chord limit
+     * @param hits collects the matches
+     */
+    private void near(int lo, int hi, int depth, double[] query, double limit, List<Hit> hits) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double chord2 = chord2(mid, query);
+        if (chord2 <= limit) {
+            hits.add(new Hit(mid, chord2));
+        }
+        int axis = depth % 3;
+        double diff = query[axis] - points[mid * 3 + axis];
+        boolean left = diff <= 0;
+        near(left ? lo : mid + 1, left ? mid : hi, depth + 1, query, limit, hits);
+        if (diff * diff <= limit) {
+            near(left ? mid + 1 : lo, left ? hi : mid, depth + 1, query, limit, hits);
+        }
+    }
+
+    /**
+     * Finds the records closest to a point.
+     *
+     * @param latitude latitude of the point in degrees
+     * @param longitude longitude of the point in degrees
+     * @param k the number of records to find
+     * @return up to k records, closest first
+     * @throws IllegalArgumentException if the point is not a valid location or k is less than 1
+     */
+    public List<DNRecord> nearest(double latitude, double longitude, int k) {
+        checkLocation(latitude, longitude);
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1: " + k);
+        }
+        double[] query = new double[3];
+        toPoint(latitude, longitude, query, 0);
+        // the farthest of the best so far is on top, so it is the one replaced
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(k, records.length) + 1,
+                CLOSEST_FIRST.reversed());
+        nearest(0, records.length, 0, query, k, best);
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(CLOSEST_FIRST);
+        return toRecords(hits);
+    }
+
+    /**
+     * Searches a subtree for points closer than the farthest of the best so far.
+     *
+     * @param lo start of the subtree, inclusive
+     * @param hi end of the subtree, exclusive
+     * @param depth depth of the subtree root
+     * @param query the point searched around
+     * @param k the number of records wanted
+     * @param best the best so far, farthest on top
+     */
+    private void nearest(int lo, int hi, int depth, double[] query, int k,
+            PriorityQueue<Hit> best) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double chord2 = chord2(mid, query);
+        if (best.size() < k) {
+            best.add(new Hit(mid, chord2));
+        } else if (chord2 < best.peek().chord2()) {
+            best.poll();
+            best.add(new Hit(mid, chord2));
+        }
+        int axis = depth % 3;
+        double diff = query[axis] - points[mid * 3 + axis];
+        boolean left = diff <= 0;
+        nearest(left ? lo : mid + 1, left ? mid : hi, depth + 1, query, k, best);
+        if (best.size() < k || diff * diff < best.peek().chord2()) {
+            nearest(left ? mid + 1 : lo, left ? hi : mid, depth + 1, query, k, best);
+        }
+    }
+
+    /**
+     * Gets the distance between two locations along the surface of the earth.
+     *
+     * @param lat1 latitude of the first location in degrees
+     * @param lon1 longitude of the first location in degrees
+     * @param lat2 latitude of the second location in degrees
+     * @param lon2 longitude of the second location in degrees
+     * @return the distance in kilometres
+     */
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                        * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Checks that a location is on the map.
+     *
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @throws IllegalArgumentException if it is not
+     */
+    private static void checkLocation(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new IllegalArgumentException(
+                    "Not a valid location: " + latitude + ", " + longitude);
+        }
+    }
+
+    /**
+     * Turns a location into a point on the unit sphere.
+     *
+     * @param latitude latitude in degrees
+     * @param longitude longitude in degrees
+     * @param into the array to write x, y, z to
+     * @param at where in the array to write them
+     */
+    private static void toPoint(double latitude, double longitude, double[] into, int at) {
+        double lat = Math.toRadians(latitude);
+        double lon = Math.toRadians(longitude);
+        double cosLat = Math.cos(lat);
+        into[at] = cosLat * Math.cos(lon);
+        into[at + 1] = cosLat * Math.sin(lon);
+        into[at + 2] = Math.sin(lat);
+    }
+
+    /**
+     * Gets the squared chord between a record and the query point.
+     *
+     * @param i the record, in tree order
+     * @param query the query point
+     * @return the squared chord
+     */
+    private double chord2(int i, double[] query) {
+        double dx = points[i * 3] - query[0];
+        double dy = points[i * 3 + 1] - query[1];
+        double dz = points[i * 3 + 2] - query[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Gets the records for hits.
+     *
+     * @param hits the hits, in the order wanted
+     * @return the records
+     */
+    private List<DNRecord> toRecords(List<Hit> hits) {
+        List<DNRecord> found = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            found.add(records[hit.index()]);
+        }
+        return found;
+    }
+
+    /**
+     * Orders a range into a subtree: the median on the split axis goes in the middle, with the
+     * smaller points before it and the larger after, then each half is done the same way.
+     *
+     * @param lo start of the range, inclusive
+     * @param hi end of the range, exclusive
+     * @param depth depth of the subtree, which picks the split axis
+     */
+    private void build(int lo, int hi, int depth) {
+        if (hi - lo < 2) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        select(lo, hi - 1, mid, depth % 3);
+        build(lo, mid, depth + 1);
+        build(mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Quickselect: moves the kth smallest point on an axis to position k, with smaller or equal
+     * points before it and larger or equal after.
+     *
+     * @param lo start of the range, inclusive
+     * @param hi end of the range, inclusive
+     * @param k the position to fill
+     * @param axis the axis to compare on
+     */
+    private void select(int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = points[((lo + hi) >>> 1) * 3 + axis];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (points[i * 3 + axis] < pivot) {
+                    i++;
+                }
+                while (points[j * 3 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Swaps two records and their points.
+     *
+     * @param a the first position
+     * @param b the second position
+     */
+    private void swap(int a, int b) {
+        DNRecord record = records[a];
+        records[a] = records[b];
+        records[b] = record;
+        for (int c = 0; c < 3; c++) {
+            double value = points[a * 3 + c];
+            points[a * 3 + c] = points[b * 3 + c];
+            points[b * 3 + c] = value;
+        }
+    }
+
+    /**
+     * A record found by a search.
+     *
+     * @param index the record, in tree order
+     * @param chord2 squared chord from the query point
+     */
+    private record Hit(int index, double chord2) {
+    }
+}
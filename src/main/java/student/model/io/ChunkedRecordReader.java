@@ -0,0 +1,546 @@
+package student.model.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.Formats;
+import student.model.formatters.RecordCodec;
+
+/**
+ * Reads a large record file on every core, for the loads where the whole file is needed anyway.
+ *
+ * The file is memory mapped and cut into chunks at record boundaries: before a {@code <domain>}
+ * element in xml, after a line break in csv. The chunks are parsed on a fork-join pool, a few
+ * ahead of the one being read, and their records come out in file order. The format is found from
+ * the first bytes by {@link RecordImporter#detect(Path)}: csv must have a header row, as written by
+ * the CSV format. JSON and binary files have no boundaries to cut at, so they are read in order by
+ * the {@link RecordImporter}.
+ *
+ * The boundaries are found by scanning the bytes, not by parsing, so an xml file must not have
+ * {@code <domain>} inside a comment or CDATA, and a csv field must not hold a line break. Neither
+ * happens in files this app writes. Chunks are parsed as UTF-8.
+ *
+ * <pre>
+ * try (Stream&lt;DNRecord&gt; records = ChunkedRecordReader.stream(database)) {
+ *     records.forEach(store::add);
+ * }
+ * </pre>
+ */
+public final class ChunkedRecordReader {
+    /** Smallest chunk, so a small file is not cut into pieces too small to be worth a task. */
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+    /** Largest chunk, which keeps the mapped buffers and the records in flight bounded. */
+    private static final long MAX_CHUNK_SIZE = 1 << 23;
+    /** Chunks per thread, so a thread that finishes early finds more work. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    /** Chunks parsed ahead of the reader, per thread. */
+    private static final int AHEAD_PER_THREAD = 2;
+    /** Bytes mapped at a time when looking for a boundary. */
+    private static final int SCAN_WINDOW = 64 * 1024;
+
+    /** Start of a record element. */
+    private static final byte[] RECORD_START = "<domain".getBytes(StandardCharsets.US_ASCII);
+    /** End of a record element. */
+    private static final byte[] RECORD_END = "</domain>".getBytes(StandardCharsets.US_ASCII);
+    /** Root element each xml chunk is wrapped in, so the chunk is a document. */
+    private static final byte[] CHUNK_START = "<chunk>".getBytes(StandardCharsets.US_ASCII);
+    /** End of the root element each xml chunk is wrapped in. */
+    private static final byte[] CHUNK_END = "</chunk>".getBytes(StandardCharsets.US_ASCII);
+
+    /** Factory for the csv parsers, thread safe. */
+    private static final CsvFactory CSV_FACTORY = CsvFactory.builder()
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES).build();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ChunkedRecordReader() {
+        // empty
+    }
+
+    /**
+     * Streams the records in a file, parsing on the common fork-join pool. The stream must be
+     * closed to close the file.
+     *
+     * @param file the file to read, in any format the app writes
+     * @return the records, in file order
+     * @throws IOException if the file cannot be opened
+     */
+    public static Stream<DNRecord> stream(Path file) throws IOException {
+        return stream(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Streams the records in a file, parsing on the given pool. The stream must be closed to close
+     * the file. A chunk that cannot be parsed ends the stream with an
+     * {@link UncheckedIOException}.
+     *
+     * @param file the file to read, in any format the app writes
+     * @param pool the pool to parse on
+     * @return the records, in file order
+     * @throws IOException if the file cannot be opened, or is not a record file
+     */
+    public static Stream<DNRecord> stream(Path file, ForkJoinPool pool) throws IOException {
+        Formats format = RecordImporter.detect(file);
+        if (format == null) {
+            return Stream.empty();
+        }
+        if (format != Formats.XML && format != Formats.CSV) {
+            return RecordImporter.stream(file);
+        }
+        boolean csv = format == Formats.CSV;
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            Chunks chunks = csv ? csvChunks(channel, pool) : xmlChunks(channel, pool);
+            Spliterator<DNRecord> split = Spliterators.spliteratorUnknownSize(chunks,
+                    Spliterator.ORDERED | Spliterator.NONNULL);
+            return StreamSupport.stream(split, false).onClose(chunks::close);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Cuts an xml file into chunks that each start at a record element. The last chunk ends after
+     * the last record, leaving out the end of the root element.
+     *
+     * @param channel the file
+     * @param pool the pool to parse on
+     * @return the chunks
+     * @throws IOException if the file cannot be read
+     */
+    private static Chunks xmlChunks(FileChannel channel, ForkJoinPool pool) throws IOException {
+        long end = lastRecordEnd(channel);
+        long start = end < 0 ? -1 : xmlBoundary(channel, 0, end);
+        List<long[]> bounds = split(channel, start, end, pool, false);
+        return new Chunks(channel, bounds, pool, ChunkedRecordReader::parseXml);
+    }
+
+    /**
+     * Cuts a csv file into chunks of whole lines, after the header row. A byte order mark and
+     * blank lines before the header are passed over, as {@link RecordImporter#detect(Path)} does.
+     *
+     * @param channel the file
+     * @param pool the pool to parse on
+     * @return the chunks
+     * @throws IOException if the file cannot be read, or has no header row
+     */
+    private static Chunks csvChunks(FileChannel channel, ForkJoinPool pool) throws IOException {
+        long size = channel.size();
+        long headerStart = textStart(channel);
+        long start = csvBoundary(channel, headerStart, size);
+        if (start < 0) {
+            throw new IOException("No csv header row");
+        }
+        CsvSchema schema = header(channel, headerStart, start);
+        List<long[]> bounds = split(channel, start, size, pool, true);
+        return new Chunks(channel, bounds, pool, buffer -> parseCsv(buffer, schema));
+    }
+
+    /**
+     * Cuts the records between start and end into chunks, sized so each thread of the pool gets a
+     * few.
+     *
+     * @param channel the file
+     * @param start where the first record starts, or -1 if there are none
+     * @param end where the last record ends
+     * @param pool the pool to parse on
+     * @param csv true for line boundaries, false for record elements
+     * @return the start and end of each chunk, in file order
+     * @throws IOException if the file cannot be read, or a record is too large to map
+     */
+    private static List<long[]> split(FileChannel channel, long start, long end, ForkJoinPool pool,
+            boolean csv) throws IOException {
+        if (start < 0 || start >= end) {
+            return Collections.emptyList();
+        }
+        long target = (end - start) / ((long) pool.getParallelism() * CHUNKS_PER_THREAD);
+        target = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, target));
+        List<long[]> bounds = new ArrayList<>();
+        long chunkStart = start;
+        while (chunkStart < end) {
+            long chunkEnd = end;
+            if (end - chunkStart > target) {
+                long next = csv ? csvBoundary(channel, chunkStart + target, end)
+                        : xmlBoundary(channel, chunkStart + target, end);
+                chunkEnd = next < 0 ? end : next;
+            }
+            if (chunkEnd - chunkStart > Integer.MAX_VALUE) {
+                throw new IOException("Record too large to map at " + chunkStart);
+            }
+            bounds.add(new long[] {chunkStart, chunkEnd});
+            chunkStart = chunkEnd;
+        }
+        return bounds;
+    }
+
+    /**
+     * Finds the first record element that starts at or after a position. Other elements whose
+     * name starts with domain, such as the domainList root, are passed over.
+     *
+     * @param channel the file
+     * @param from where to start looking
+     * @param end where to stop looking
+     * @return where the element starts, or -1 if there is none
+     * @throws IOException if the file cannot be read
+     */
+    private static long xmlBoundary(FileChannel channel, long from, long end) throws IOException {
+        long position = from;
+        while (position < end) {
+            // the window overlaps the next one, so a tag cut by the window end is still seen
+            int length = (int) Math.min(SCAN_WINDOW + RECORD_START.length + 1, end - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i + RECORD_START.length < length; i++) {
+                if (matches(window, i, RECORD_START)) {
+                    byte next = window.get(i + RECORD_START.length);
+                    if (next == '>' || next == '/' || Character.isWhitespace(next)) {
+                        return position + i;
+                    }
+                }
+            }
+            position += SCAN_WINDOW;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first line that starts after a position.
+     *
+     * @param channel the file
+     * @param from where to start looking
+     * @param end where to stop looking
+     * @return where the line starts, or -1 if there is none
+     * @throws IOException if the file cannot be read
+     */
+    private static long csvBoundary(FileChannel channel, long from, long end) throws IOException {
+        long position = from;
+        while (position < end) {
+            int length = (int) Math.min(SCAN_WINDOW, end - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = 0; i < length; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += length;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds where the text of the file starts, past a byte order mark and any white space.
+     *
+     * @param channel the file
+     * @return where the first byte of text is
+     * @throws IOException if the file cannot be read
+     */
+    private static long textStart(FileChannel channel) throws IOException {
+        ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                Math.min(SCAN_WINDOW, channel.size()));
+        byte[] head = new byte[window.remaining()];
+        window.get(head);
+        return RecordImporter.textStart(head, head.length);
+    }
+
+    /**
+     * Finds the end of the last record element, scanning back from the end of the file.
+     *
+     * @param channel the file
+     * @return the position just after the last record, or -1 if there are no records
+     * @throws IOException if the file cannot be read
+     */
+    private static long lastRecordEnd(FileChannel channel) throws IOException {
+        long end = channel.size();
+        while (end > 0) {
+            long position = Math.max(0, end - SCAN_WINDOW);
+            int length = (int) Math.min(end - position + RECORD_END.length,
+                    channel.size() - position);
+            ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            for (int i = length - RECORD_END.length; i >= 0; i--) {
+                if (matches(window, i, RECORD_END)) {
+                    return position + i + RECORD_END.length;
+                }
+            }
+            end = position;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks for bytes at a position in a buffer.
+     *
+     * @param buffer the buffer
+     * @param at the position, with room for the bytes after it
+     * @param bytes the bytes to look for
+     * @return true if they are there
+     */
+    private static boolean matches(ByteBuffer buffer, int at, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buffer.get(at + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the column names in the header row.
+     *
+     * @param channel the file
+     * @param start where the header row starts
+     * @param end where the header row ends
+     * @return the schema for the rows after the header
+     * @throws IOException if the file cannot be read, or the header is too long
+     */
+    private static CsvSchema header(FileChannel channel, long start, long end)
+            throws IOException {
+        if (end - start > SCAN_WINDOW) {
+            throw new IOException("Csv header row too long");
+        }
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CsvSchema.Builder schema = CsvSchema.builder();
+        for (String column : StandardCharsets.UTF_8.decode(buffer).toString().strip()
+                .split(",")) {
+            String name = column.strip();
+            if (name.length() >= 2 && name.startsWith("\"") && name.endsWith("\"")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            schema.addColumn(name);
+        }
+        return schema.build();
+    }
+
+    /**
+     * Parses an xml chunk, wrapped in a root element so it reads as a document.
+     *
+     * @param buffer the chunk
+     * @return the records in it
+     * @throws IOException if the chunk is malformed
+     */
+    private static List<DNRecord> parseXml(ByteBuffer buffer) throws IOException {
+        List<DNRecord> records = new ArrayList<>();
+        InputStream in = new SequenceInputStream(Collections.enumeration(List.of(
+                new BufferInputStream(ByteBuffer.wrap(CHUNK_START)), new BufferInputStream(buffer),
+                new BufferInputStream(ByteBuffer.wrap(CHUNK_END)))));
+        try (RecordReader reader = new RecordReader(in)) {
+            reader.forEachRemaining(records::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return records;
+    }
+
+    /**
+     * Parses a csv chunk of whole lines.
+     *
+     * @param buffer the chunk
+     * @param schema the columns
+     * @return the records in it
+     * @throws IOException if the chunk is malformed
+     */
+    private static List<DNRecord> parseCsv(ByteBuffer buffer, CsvSchema schema)
+            throws IOException {
+        List<DNRecord> records = new ArrayList<>();
+        try (CsvParser parser = CSV_FACTORY.createParser(new BufferInputStream(buffer))) {
+            parser.setSchema(schema);
+            for (DNRecord record = RecordCodec.read(parser); record != null;
+                    record = RecordCodec.read(parser)) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Parses a chunk of the file.
+     */
+    @FunctionalInterface
+    private interface ChunkParser {
+        /**
+         * Parses a chunk.
+         *
+         * @param buffer the chunk, mapped
+         * @return the records in it, in order
+         * @throws IOException if the chunk is malformed
+         */
+        List<DNRecord> parse(ByteBuffer buffer) throws IOException;
+    }
+
+    /**
+     * Hands out the records of the chunks in order, keeping a few chunks parsing ahead.
+     */
+    private static final class Chunks implements Iterator<DNRecord> {
+        /** The file, closed once the chunks are read. */
+        private final FileChannel channel;
+        /** Start and end of the chunks not submitted yet. */
+        private final Iterator<long[]> pending;
+        /** The pool to parse on. */
+        private final ForkJoinPool pool;
+        /** Parses a chunk. */
+        private final ChunkParser parser;
+        /** Chunks submitted, in file order. */
+        private final Deque<ForkJoinTask<List<DNRecord>>> running = new ArrayDeque<>();
+        /** Number of chunks to keep submitted. */
+        private final int ahead;
+        /** Records of the chunk being read. */
+        private Iterator<DNRecord> current = Collections.emptyIterator();
+
+        /**
+         * Starts parsing the first chunks.
+         *
+         * @param channel the file
+         * @param bounds start and end of each chunk
+         * @param pool the pool to parse on
+         * @param parser parses a chunk
+         * @throws IOException if a chunk cannot be mapped
+         */
+        Chunks(FileChannel channel, List<long[]> bounds, ForkJoinPool pool, ChunkParser parser)
+                throws IOException {
+            this.channel = channel;
+            this.pending = bounds.iterator();
+            this.pool = pool;
+            this.parser = parser;
+            this.ahead = Math.max(1, pool.getParallelism() * AHEAD_PER_THREAD);
+            while (running.size() < ahead && submitNext()) {
+                // fill the window
+            }
+        }
+
+        /**
+         * Maps the next chunk and submits it to the pool.
+         *
+         * @return false if there are no more chunks
+         * @throws IOException if the chunk cannot be mapped
+         */
+        private boolean submitNext() throws IOException {
+            if (!pending.hasNext()) {
+                return false;
+            }
+            long[] bound = pending.next();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, bound[0],
+                    bound[1] - bound[0]);
+            running.add(pool.submit(() -> parser.parse(buffer)));
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         *
+         * @throws UncheckedIOException if a chunk is malformed
+         */
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                ForkJoinTask<List<DNRecord>> next = running.poll();
+                if (next == null) {
+                    return false;
+                }
+                try {
+                    current = next.get().iterator();
+                    submitNext();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Chunked read interrupted");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof UncheckedIOException unchecked ? unchecked
+                            : new UncheckedIOException(cause instanceof IOException io ? io
+                                    : new IOException(cause));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public DNRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Cancels the chunks still parsing and closes the file. The mapped chunks stay readable.
+         *
+         * @throws UncheckedIOException if the file cannot be closed
+         */
+        void close() {
+            running.forEach(task -> task.cancel(false));
+            running.clear();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Reads a buffer as a stream, without copying it.
+     */
+    private static final class BufferInputStream extends InputStream {
+        /** The bytes left to read. */
+        private final ByteBuffer buffer;
+
+        /**
+         * Creates the stream.
+         *
+         * @param buffer the bytes to read, from its position to its limit
+         */
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
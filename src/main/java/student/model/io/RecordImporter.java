@@ -0,0 +1,232 @@
+package student.model.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.csv.CsvFactory;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.Formats;
+import student.model.formatters.RecordCodec;
+
+/**
+ * Reads records from a file in any of the formats the app writes, working out which one from the
+ * first bytes rather than the file name.
+ *
+ * <ul>
+ * <li>XML starts with {@code <}, and each {@code <domain>} element is a record.</li>
+ * <li>JSON starts with {@code [} or <code>{</code>: an array of records, or records one after
+ * another, such as one per line.</li>
+ * <li>BINARY starts with the {@link RecordSnapshot} magic number, and can only be read from a
+ * file.</li>
+ * <li>Anything else is CSV with a header row naming the columns, in any order.</li>
+ * </ul>
+ *
+ * A byte order mark and leading white space are passed over. Every format is read with a
+ * streaming parser, one record at a time, so a file of any size is read in constant memory. Fields
+ * that are not part of a record are skipped.
+ *
+ * <pre>
+ * try (Stream&lt;DNRecord&gt; records = RecordImporter.stream(Path.of("export.json"))) {
+ *     records.forEach(store::add);
+ * }
+ * </pre>
+ */
+public final class RecordImporter {
+    /** Most bytes looked at to work out the format. */
+    private static final int SNIFF_SIZE = 4096;
+    /** The UTF-8 byte order mark. */
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /** Factory for the JSON parsers, thread safe. */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    /** Factory for the CSV parsers, thread safe. */
+    private static final CsvFactory CSV_FACTORY = CsvFactory.builder()
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES).enable(CsvParser.Feature.TRIM_SPACES)
+            .build();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private RecordImporter() {
+        // empty
+    }
+
+    /**
+     * Works out the format of a stream from its first bytes, and resets the stream back to the
+     * start.
+     *
+     * @param in the stream, which must support mark and reset
+     * @return the format, or null if the stream is empty or only white space
+     * @throws IOException if the stream cannot be read
+     * @throws IllegalArgumentException if the stream does not support mark
+     */
+    public static Formats detect(InputStream in) throws IOException {
+        if (!in.markSupported()) {
+            throw new IllegalArgumentException("The stream must support mark");
+        }
+        in.mark(SNIFF_SIZE);
+        byte[] head = in.readNBytes(SNIFF_SIZE);
+        in.reset();
+        return detect(head, head.length);
+    }
+
+    /**
+     * Works out the format of a file from its first bytes.
+     *
+     * @param file the file
+     * @return the format, or null if the file is empty or only white space
+     * @throws IOException if the file cannot be read
+     */
+    public static Formats detect(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(SNIFF_SIZE);
+            return detect(head, head.length);
+        }
+    }
+
+    /**
+     * Finds where the text starts in the first bytes of a file, past a UTF-8 byte order mark and
+     * any white space.
+     *
+     * @param head the first bytes
+     * @param length the number of bytes read
+     * @return the index of the first byte of text, or length if there is none
+     */
+    static int textStart(byte[] head, int length) {
+        int i = 0;
+        if (length >= BOM.length && head[0] == BOM[0] && head[1] == BOM[1] && head[2] == BOM[2]) {
+            i = BOM.length;
+        }
+        while (i < length && Character.isWhitespace(head[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Works out the format from the first bytes.
+     *
+     * @param head the first bytes
+     * @param length the number of bytes read
+     * @return the format, or null if there is nothing but white space
+     */
+    private static Formats detect(byte[] head, int length) {
+        if (length >= Integer.BYTES
+                && ByteBuffer.wrap(head, 0, Integer.BYTES).getInt() == RecordSnapshot.MAGIC) {
+            return Formats.BINARY;
+        }
+        int i = textStart(head, length);
+        if (i == length) {
+            return null;
+        }
+        return switch (head[i]) {
+            case '<' -> Formats.XML;
+            case '[', '{' -> Formats.JSON;
+            default -> Formats.CSV;
+        };
+    }
+
+    /**
+     * Streams the records in a file. The stream must be closed to close the file.
+     *
+     * @param file the file to read
+     * @return the records, in file order
+     * @throws IOException if the file cannot be opened
+     */
+    public static Stream<DNRecord> stream(Path file) throws IOException {
+        if (detect(file) == Formats.BINARY) {
+            return RecordSnapshot.open(file).stream();
+        }
+        return stream(new BufferedInputStream(Files.newInputStream(file)));
+    }
+
+    /**
+     * Streams the records in a stream. The records are read as the returned stream is, and closing
+     * it closes the input.
+     *
+     * @param in the input, which the returned stream owns
+     * @return the records, in the order they are read
+     * @throws IOException if the input cannot be read, or is a binary snapshot
+     */
+    public static Stream<DNRecord> stream(InputStream in) throws IOException {
+        try {
+            InputStream buffered = in.markSupported() ? in : new BufferedInputStream(in);
+            Formats format = detect(buffered);
+            if (format == null) {
+                in.close();
+                return Stream.empty();
+            }
+            return switch (format) {
+                case XML -> new RecordReader(buffered).stream();
+                case JSON -> stream(JSON_FACTORY.createParser(buffered));
+                case CSV -> {
+                    CsvParser parser = CSV_FACTORY.createParser(buffered);
+                    parser.setSchema(CsvSchema.emptySchema().withHeader());
+                    yield stream(parser);
+                }
+                default -> throw new IOException("A binary snapshot can only be read from a file");
+            };
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Streams the records a parser reads. Closing the stream closes the parser and its input.
+     *
+     * @param parser the parser, before the first record
+     * @return the records
+     */
+    private static Stream<DNRecord> stream(JsonParser parser) {
+        Iterator<DNRecord> records = new Iterator<>() {
+            /** The next record, or null if it has not been read yet. */
+            private DNRecord next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !parser.isClosed()) {
+                    try {
+                        next = RecordCodec.read(parser);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public DNRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                DNRecord record = next;
+                next = null;
+                return record;
+            }
+        };
+        Spliterator<DNRecord> split = Spliterators.spliteratorUnknownSize(records,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(() -> {
+            try {
+                parser.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
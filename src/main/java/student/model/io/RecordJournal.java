@@ -0,0 +1,321 @@
+package student.model.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.RecordCodec;
+
+/**
+ * An append-only journal of records that have not been folded into the xml database yet.
+ *
+ * Adding a record to the database only appends a line of json here, instead of rewriting the whole
+ * xml file. Appends from different threads are group committed: whichever thread gets there first
+ * writes and syncs everything that is waiting, so many lookups share one sync. Compaction writes a
+ * fresh snapshot of the database and then empties the journal.
+ *
+ * The journal sits next to the database, for example data/hostrecords.xml.journal.
+ */
+public final class RecordJournal implements Closeable {
+    /** Suffix added to the database file name. */
+    public static final String SUFFIX = ".journal";
+
+    /** The journal file. */
+    private final Path file;
+
+    /** Guards pending, flushing and channel. */
+    private final Object lock = new Object();
+    /** Appends waiting for the next write. */
+    private List<Pending> pending = new ArrayList<>();
+    /** True while a thread is writing (or compacting), so others only queue. */
+    private boolean flushing;
+    /** Open lazily, so a run that adds nothing never creates the file. */
+    private FileChannel channel;
+
+    /**
+     * Creates the journal. Nothing is opened until the first append.
+     *
+     * @param file the journal file
+     */
+    public RecordJournal(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Gets the journal file that belongs to a database file.
+     *
+     * @param database the database file
+     * @return the journal file next to it
+     */
+    public static Path journalFor(Path database) {
+        return database.resolveSibling(database.getFileName() + SUFFIX);
+    }
+
+    /**
+     * Gets the journal file.
+     *
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the size of the journal on disk, including entries left by earlier runs.
+     *
+     * @return the size in bytes, 0 if there is no journal
+     * @throws IOException if the size cannot be read
+     */
+    public long size() throws IOException {
+        synchronized (lock) {
+            if (channel != null) {
+                return channel.size();
+            }
+        }
+        return Files.exists(file) ? Files.size(file) : 0;
+    }
+
+    /**
+     * Streams the records in the journal, in the order they were added. A line that cannot be
+     * read, such as one cut short by a crash, is skipped. The stream should be closed.
+     *
+     * @return the records, empty if there is no journal
+     * @throws UncheckedIOException if the journal cannot be opened
+     */
+    public Stream<DNRecord> replay() {
+        if (!Files.exists(file)) {
+            return Stream.empty();
+        }
+        try {
+            return Files.lines(file, StandardCharsets.UTF_8).filter(line -> !line.isBlank())
+                    .map(RecordJournal::parse).filter(Objects::nonNull);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read journal " + file, e);
+        }
+    }
+
+    /**
+     * Parses a single journal line.
+     *
+     * @param line the line
+     * @return the record, or null if the line is damaged
+     */
+    private static DNRecord parse(String line) {
+        try (JsonParser parser = Lines.FACTORY.createParser(line)) {
+            DNRecord record = RecordCodec.read(parser);
+            if (record != null) {
+                return record;
+            }
+        } catch (IOException e) {
+            // reported below
+        }
+        System.err.println("Skipping damaged journal entry: " + line);
+        return null;
+    }
+
+    /**
+     * Appends a record, returning once it is synced to disk.
+     *
+     * @param record the record to append
+     * @throws IOException if the journal cannot be written
+     */
+    public void append(DNRecord record) throws IOException {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        boolean leader;
+        synchronized (lock) {
+            pending.add(new Pending(record, done));
+            leader = !flushing;
+            flushing = true;
+        }
+        if (leader) {
+            flushPending();
+        }
+        await(done);
+    }
+
+    /**
+     * Writes batches until nothing is waiting. Only one thread runs this at a time.
+     */
+    private void flushPending() {
+        while (true) {
+            List<Pending> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    flushing = false;
+                    lock.notifyAll();
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            try {
+                write(batch);
+                batch.forEach(p -> p.done().complete(null));
+            } catch (IOException | RuntimeException e) {
+                batch.forEach(p -> p.done().completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of records and syncs the file once.
+     *
+     * @param batch the records to write
+     * @throws IOException if the write fails
+     */
+    private void write(List<Pending> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 192);
+        try (JsonGenerator gen = Lines.FACTORY.createGenerator(bytes)) {
+            gen.setRootValueSeparator(null);
+            for (Pending entry : batch) {
+                RecordCodec.writeStored(entry.record(), gen);
+                gen.writeRaw('\n');
+            }
+        }
+        FileChannel out = channel();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        out.force(false);
+    }
+
+    /**
+     * Gets the channel, opening the journal for append if needed.
+     *
+     * @return the channel
+     * @throws IOException if the journal cannot be opened
+     */
+    private FileChannel channel() throws IOException {
+        synchronized (lock) {
+            if (channel == null) {
+                Path parent = file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * Folds the journal into the database. Appends are held back while the snapshot is written, and
+     * the journal is removed once the snapshot is in place. Appends that were held back are written
+     * to the new journal afterwards, so a record can end up in both; readers keep the journal copy,
+     * as the last entry for a hostname wins.
+     *
+     * @param snapshot writes the full database, including everything in the journal
+     * @throws IOException if the snapshot or the journal cannot be written
+     */
+    public void compact(Snapshot snapshot) throws IOException {
+        synchronized (lock) {
+            while (flushing) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting to compact", e);
+                }
+            }
+            flushing = true;
+        }
+        try {
+            snapshot.write();
+            synchronized (lock) {
+                if (channel != null) {
+                    channel.close();
+                    channel = null;
+                }
+            }
+            Files.deleteIfExists(file);
+        } finally {
+            flushPending();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    /**
+     * Waits for an append to be written.
+     *
+     * @param done completes when the append is on disk
+     * @throws IOException if the write failed
+     */
+    private static void await(CompletableFuture<Void> done) throws IOException {
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for the journal", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Unable to write journal", e.getCause());
+        }
+    }
+
+    /**
+     * Writes a complete snapshot of the database.
+     */
+    @FunctionalInterface
+    public interface Snapshot {
+        /**
+         * Writes the snapshot.
+         *
+         * @throws IOException if the snapshot cannot be written
+         */
+        void write() throws IOException;
+    }
+
+    /**
+     * An append waiting to be written.
+     *
+     * @param record the record to write
+     * @param done completed once the record is on disk
+     */
+    private record Pending(DNRecord record, CompletableFuture<Void> done) {
+    }
+
+    /**
+     * Holds the factory for the json lines, so it is only built once a journal is read or
+     * written. Most runs have no journal.
+     */
+    private static final class Lines {
+        /** Factory for the json lines, thread safe. */
+        private static final JsonFactory FACTORY = new JsonFactory();
+
+        /**
+         * Private constructor to prevent instantiation.
+         */
+        private Lines() {
+            // empty
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package student.model.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import com.ctc.wstx.stax.WstxInputFactory;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * Reads the records from a hostrecords xml file one at a time.
+ *
+ * Uses a StAX (Woodstox) pull parser, so only the record being read is held in memory. Each
+ * {@code <domain>} element becomes a record, no matter what the root element is called.
+ *
+ * <pre>
+ * try (RecordReader reader = RecordReader.open(Path.of(DomainNameModel.DATABASE))) {
+ *     while (reader.hasNext()) {
+ *         DNRecord record = reader.next();
+ *     }
+ * }
+ * </pre>
+ */
+public final class RecordReader implements Iterator<DNRecord>, Closeable {
+    /** Element that holds a single record. */
+    private static final String RECORD_ELEMENT = "domain";
+
+    /** Shared factory, thread safe once configured. */
+    private static final XMLInputFactory FACTORY = new WstxInputFactory();
+
+    static {
+        FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /** The stream being read. */
+    private final InputStream in;
+    /** The parser over the stream. */
+    private final XMLStreamReader parser;
+    /** The next record, or null if it has not been read yet. */
+    private DNRecord next;
+
+    /**
+     * Creates a reader over the stream. The reader owns the stream and closes it.
+     *
+     * @param in the xml to read
+     * @throws IOException if the xml cannot be opened
+     */
+    public RecordReader(InputStream in) throws IOException {
+        this.in = in;
+        try {
+            this.parser = FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new IOException("Unable to open xml", e);
+        }
+    }
+
+    /**
+     * Opens a reader over a file.
+     *
+     * @param file the file to read
+     * @return the reader
+     * @throws IOException if the file cannot be opened
+     */
+    public static RecordReader open(Path file) throws IOException {
+        return new RecordReader(new BufferedInputStream(Files.newInputStream(file)));
+    }
+
+    /**
+     * Streams the records in a file. The stream must be closed to close the file.
+     *
+     * @param file the file to read
+     * @return the records, in file order
+     * @throws IOException if the file cannot be opened
+     */
+    public static Stream<DNRecord> stream(Path file) throws IOException {
+        return open(file).stream();
+    }
+
+    /**
+     * Wraps the rest of this reader as a stream. Closing the stream closes the reader.
+     *
+     * @return the remaining records, in file order
+     */
+    public Stream<DNRecord> stream() {
+        Spliterator<DNRecord> split = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if the xml is malformed
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readNext();
+            } catch (XMLStreamException e) {
+                throw new UncheckedIOException(new IOException("Malformed record xml", e));
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public DNRecord next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        DNRecord record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Moves to the next record element and reads it.
+     *
+     * @return the record, or null at the end of the document
+     * @throws XMLStreamException if the xml is malformed
+     */
+    private DNRecord readNext() throws XMLStreamException {
+        while (parser.hasNext()) {
+            if (parser.next() == XMLStreamConstants.START_ELEMENT
+                    && RECORD_ELEMENT.equals(parser.getLocalName())) {
+                return readRecord();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the fields of the record the parser is on. Unknown fields are skipped, missing fields
+     * are left null (or 0 for the coordinates and the fetched-at time).
+     *
+     * @return the record
+     * @throws XMLStreamException if the xml is malformed
+     */
+    private DNRecord readRecord() throws XMLStreamException {
+        String hostname = null;
+        String ip = null;
+        String city = null;
+        String region = null;
+        String country = null;
+        String postal = null;
+        double latitude = 0;
+        double longitude = 0;
+        long fetchedAt = 0;
+        while (parser.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (parser.getLocalName()) {
+                case "hostname" -> hostname = parser.getElementText();
+                case "ip" -> ip = parser.getElementText();
+                case "city" -> city = parser.getElementText();
+                case "region" -> region = parser.getElementText();
+                case "country" -> country = parser.getElementText();
+                case "postal" -> postal = parser.getElementText();
+                case "latitude" -> latitude = parseDouble(parser.getElementText());
+                case "longitude" -> longitude = parseDouble(parser.getElementText());
+                case "fetchedAt" -> fetchedAt = (long) parseDouble(parser.getElementText());
+                default -> skipElement();
+            }
+        }
+        return new DNRecord(hostname, ip, city, region, country, postal, latitude, longitude,
+                fetchedAt);
+    }
+
+    /**
+     * Skips the element the parser is on, including anything nested in it.
+     *
+     * @throws XMLStreamException if the xml is malformed
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = parser.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * Parses a coordinate, treating an empty value as 0.
+     *
+     * @param value the text of the element
+     * @return the value
+     */
+    private static double parseDouble(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? 0 : Double.parseDouble(trimmed);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            parser.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package student.model.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import student.model.DomainNameModel.DNRecord;
+
+/**
+ * A binary copy of the records, memory mapped so they can be read without parsing the xml.
+ *
+ * The file starts with a header holding a magic number, the format version, and the last modified
+ * time and size of the xml it was built from. The records follow, one after another, each as its
+ * six strings (an int length, -1 for null, then the UTF-8 bytes), its two doubles and its
+ * fetched-at time (a long). At the end is a table with the offset of every record, then the number
+ * of records and the magic number again. Version 1 had no fetched-at time, and version 2 no source
+ * size.
+ *
+ * A snapshot only stands for its xml while both the time and the size match exactly, so an xml
+ * put back with an older time, such as a restored backup, is not hidden by a newer snapshot.
+ *
+ * <pre>
+ * header:  magic, version, source modified (long), source size (long)
+ * records: hostname, ip, city, region, country, postal, latitude, longitude, fetchedAt
+ * footer:  offset of each record (int), count, magic
+ * </pre>
+ *
+ * Opening a snapshot only maps the file and reads the header and footer. A record is decoded when
+ * it is asked for, and a hostname lookup decodes only the hostname of each record until it finds
+ * the match. The offsets table is written last, so a snapshot can be written straight to a stream
+ * without knowing the number of records up front.
+ */
+public final class RecordSnapshot {
+    /** Version of the layout. Snapshots with another version are rebuilt. */
+    public static final int VERSION = 3;
+
+    /** Marks the start and end of a snapshot file. */
+    static final int MAGIC = 0x444E5342; // DNSB
+    /** Bytes before the first record: magic, version, source modified, source size. */
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES * 2;
+    /** Bytes after the offsets table: count, magic. */
+    private static final int TRAILER_SIZE = Integer.BYTES * 2;
+    /** Length written for a null string. */
+    private static final int NULL_LENGTH = -1;
+
+    /** The mapped file, only read with absolute gets so it can be shared between threads. */
+    private final ByteBuffer buffer;
+    /** Last modified time of the xml the snapshot was built from, in epoch millis. */
+    private final long sourceModified;
+    /** Size of the xml the snapshot was built from, in bytes. */
+    private final long sourceSize;
+    /** Number of records. */
+    private final int size;
+    /** Position of the offsets table. */
+    private final int offsets;
+
+    /**
+     * Creates a snapshot over a mapped file that has already been checked.
+     *
+     * @param buffer the mapped file
+     * @param sourceModified last modified time of the source xml
+     * @param sourceSize size of the source xml
+     * @param size number of records
+     * @param offsets position of the offsets table
+     */
+    private RecordSnapshot(ByteBuffer buffer, long sourceModified, long sourceSize, int size,
+            int offsets) {
+        this.buffer = buffer;
+        this.sourceModified = sourceModified;
+        this.sourceSize = sourceSize;
+        this.size = size;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Gets the snapshot file kept next to a database.
+     *
+     * @param database the database file
+     * @return the snapshot file
+     */
+    public static Path snapshotFor(Path database) {
+        return database.resolveSibling(database.getFileName() + ".bin");
+    }
+
+    /**
+     * Maps a snapshot file.
+     *
+     * @param file the snapshot file
+     * @return the snapshot
+     * @throws IOException if the file cannot be read, is not a snapshot, or has another version
+     */
+    public static RecordSnapshot open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + file);
+            }
+            if (length < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Not a record snapshot: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        int length = buffer.capacity();
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(length - Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a record snapshot: " + file);
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("Snapshot " + file + " has version " + version + ", expected "
+                    + VERSION);
+        }
+        int size = buffer.getInt(length - TRAILER_SIZE);
+        long offsets = (long) length - TRAILER_SIZE - (long) size * Integer.BYTES;
+        if (size < 0 || offsets < HEADER_SIZE) {
+            throw new IOException("Damaged record snapshot: " + file);
+        }
+        return new RecordSnapshot(buffer, buffer.getLong(Integer.BYTES * 2),
+                buffer.getLong(Integer.BYTES * 2 + Long.BYTES), size, (int) offsets);
+    }
+
+    /**
+     * Gets the snapshot of a database, building it from the xml first if it is missing, has
+     * another version, or was built from another copy of the xml.
+     *
+     * @param database the xml database file, which must exist
+     * @return the snapshot
+     * @throws IOException if the xml cannot be read or the snapshot cannot be written or mapped
+     */
+    public static RecordSnapshot forDatabase(Path database) throws IOException {
+        BasicFileAttributes source = Files.readAttributes(database, BasicFileAttributes.class);
+        Path file = snapshotFor(database);
+        try {
+            RecordSnapshot snapshot = open(file);
+            if (snapshot.isBuiltFrom(source)) {
+                return snapshot;
+            }
+        } catch (NoSuchFileException e) {
+            // not built yet
+        } catch (IOException e) {
+            System.err.println("Rebuilding " + file + ": " + e.getMessage());
+        }
+        try (Stream<DNRecord> records = ChunkedRecordReader.stream(database)) {
+            write(records.iterator(), source.lastModifiedTime().toMillis(), source.size(), file);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return open(file);
+    }
+
+    /**
+     * Writes a snapshot file, through a temporary file so a reader never sees it half written.
+     *
+     * @param records the records to write
+     * @param sourceModified last modified time of the source xml, in epoch millis
+     * @param sourceSize size of the source xml, in bytes
+     * @param file the snapshot file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Iterator<DNRecord> records, long sourceModified, long sourceSize,
+            Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            write(records, sourceModified, sourceSize, out);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a stream. The stream is flushed but not closed.
+     *
+     * @param records the records to write
+     * @param sourceModified last modified time of the source xml, in epoch millis, or 0 if there
+     *        is none
+     * @param sourceSize size of the source xml, in bytes, or 0 if there is none
+     * @param out the stream to write to
+     * @throws IOException if the stream cannot be written, or the snapshot would be too large to
+     *         map
+     */
+    public static void write(Iterator<DNRecord> records, long sourceModified, long sourceSize,
+            OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeLong(sourceModified);
+        data.writeLong(sourceSize);
+        long position = HEADER_SIZE;
+        int[] offsets = new int[256];
+        int count = 0;
+        while (records.hasNext()) {
+            if (position > Integer.MAX_VALUE) {
+                throw new IOException("Too many records for a snapshot");
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = (int) position;
+            position += writeRecord(records.next(), data);
+        }
+        for (int i = 0; i < count; i++) {
+            data.writeInt(offsets[i]);
+        }
+        data.writeInt(count);
+        data.writeInt(MAGIC);
+        data.flush();
+    }
+
+    /**
+     * Writes a single record.
+     *
+     * @param record the record
+     * @param data the stream to write to
+     * @return the number of bytes written
+     * @throws IOException if the stream cannot be written
+     */
+    private static int writeRecord(DNRecord record, DataOutputStream data) throws IOException {
+        int written = writeString(record.hostname(), data);
+        written += writeString(record.ip(), data);
+        written += writeString(record.city(), data);
+        written += writeString(record.region(), data);
+        written += writeString(record.country(), data);
+        written += writeString(record.postal(), data);
+        data.writeDouble(record.latitude());
+        data.writeDouble(record.longitude());
+        data.writeLong(record.fetchedAt());
+        return written + Double.BYTES * 2 + Long.BYTES;
+    }
+
+    /**
+     * Writes a length prefixed string.
+     *
+     * @param value the string, may be null
+     * @param data the stream to write to
+     * @return the number of bytes written
+     * @throws IOException if the stream cannot be written
+     */
+    private static int writeString(String value, DataOutputStream data) throws IOException {
+        if (value == null) {
+            data.writeInt(NULL_LENGTH);
+            return Integer.BYTES;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(bytes.length);
+        data.write(bytes);
+        return Integer.BYTES + bytes.length;
+    }
+
+    /**
+     * Gets the last modified time of the xml the snapshot was built from.
+     *
+     * @return the time in epoch millis, 0 if it was not built from a file
+     */
+    public long getSourceModified() {
+        return sourceModified;
+    }
+
+    /**
+     * Gets the size of the xml the snapshot was built from.
+     *
+     * @return the size in bytes, 0 if it was not built from a file
+     */
+    public long getSourceSize() {
+        return sourceSize;
+    }
+
+    /**
+     * Checks if the snapshot was built from a file as it is now: the same last modified time and
+     * the same size. A file with an older time is not taken as unchanged.
+     *
+     * @param source the attributes of the xml
+     * @return true if the snapshot still stands for the file
+     */
+    public boolean isBuiltFrom(BasicFileAttributes source) {
+        return sourceModified == source.lastModifiedTime().toMillis()
+                && sourceSize == source.size();
+    }
+
+    /**
+     * Gets the number of records.
+     *
+     * @return the number of records
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decodes a record.
+     *
+     * @param i the index of the record, in file order
+     * @return the record
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public DNRecord get(int i) {
+        int position = offset(i);
+        String[] fields = new String[6];
+        for (int f = 0; f < fields.length; f++) {
+            int length = buffer.getInt(position);
+            fields[f] = readString(position);
+            position += Integer.BYTES + Math.max(length, 0);
+        }
+        double latitude = buffer.getDouble(position);
+        double longitude = buffer.getDouble(position + Double.BYTES);
+        long fetchedAt = buffer.getLong(position + Double.BYTES * 2);
+        return new DNRecord(fields[0], fields[1], fields[2], fields[3], fields[4], fields[5],
+                latitude, longitude, fetchedAt);
+    }
+
+    /**
+     * Decodes only the hostname of a record.
+     *
+     * @param i the index of the record, in file order
+     * @return the hostname
+     * @throws IndexOutOfBoundsException if there is no such record
+     */
+    public String hostname(int i) {
+        return readString(offset(i));
+    }
+
+    /**
+     * Finds the first record with the hostname, ignoring case. Only the hostnames are decoded
+     * until the match is found.
+     *
+     * @param hostname the hostname to find
+     * @return the record, or null if there is none
+     */
+    public DNRecord find(String hostname) {
+        for (int i = 0; i < size; i++) {
+            if (hostname.equalsIgnoreCase(hostname(i))) {
+                return get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Streams the records in file order, decoding each one as it is reached.
+     *
+     * @return the records
+     */
+    public Stream<DNRecord> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * Gets the position of a record.
+     *
+     * @param i the index of the record
+     * @return the position in the file
+     */
+    private int offset(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return buffer.getInt(offsets + i * Integer.BYTES);
+    }
+
+    /**
+     * Reads a length prefixed string.
+     *
+     * @param position position of the length
+     * @return the string, or null if a null was written
+     */
+    private String readString(int position) {
+        int length = buffer.getInt(position);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,258 @@
+package student.model.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.DataFormatter;
+
+/**
+ * Describes a database split across several hostrecords xml files by a hash of the hostname, so a
+ * lookup or an insert only touches one of them.
+ *
+ * The database is a folder holding the shard files and a small manifest.json listing them:
+ *
+ * <pre>
+ * {
+ *   "version" : 1,
+ *   "hash" : "lowercase-string-hash",
+ *   "shards" : [ "shard-000.xml", "shard-001.xml", ... ]
+ * }
+ * </pre>
+ *
+ * A hostname belongs to the shard at its hash modulo the number of shards, where the hash is
+ * {@link String#hashCode()} of the lower case hostname with the high bits folded into the low
+ * ones. Each shard is an ordinary database file, with its own snapshot and journal next to it.
+ */
+public final class ShardManifest {
+    /** Name of the manifest file in the database folder. */
+    public static final String FILE_NAME = "manifest.json";
+    /** Version of the manifest this code writes and reads. */
+    public static final int VERSION = 1;
+    /** Name of the hash in the manifest, so a later change of hash is not misread. */
+    private static final String HASH = "lowercase-string-hash";
+    /** Start of the name of every shard file, and of the journal and snapshot next to it. */
+    private static final String SHARD_PREFIX = "shard-";
+
+    /** Factory for the manifest parser and generator, thread safe. */
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    /** The manifest file. */
+    private final Path file;
+    /** The shard files, in shard order. */
+    private final List<Path> shards;
+
+    /**
+     * Creates the manifest.
+     *
+     * @param file the manifest file
+     * @param shards the shard files, in shard order
+     */
+    private ShardManifest(Path file, List<Path> shards) {
+        this.file = file;
+        this.shards = shards;
+    }
+
+    /**
+     * Checks if a database name is a sharded database: a folder, or a manifest file.
+     *
+     * @param database the database name given to the model
+     * @return true if it should be read as a sharded database
+     */
+    public static boolean isSharded(Path database) {
+        return Files.isDirectory(database)
+                || database.getFileName() != null
+                        && FILE_NAME.equals(database.getFileName().toString());
+    }
+
+    /**
+     * Gets the manifest file of a sharded database.
+     *
+     * @param database the database folder, or its manifest file
+     * @return the manifest file
+     */
+    private static Path manifestFor(Path database) {
+        return Files.isDirectory(database) ? database.resolve(FILE_NAME) : database;
+    }
+
+    /**
+     * Reads the manifest of a sharded database.
+     *
+     * @param database the database folder, or its manifest file
+     * @return the manifest
+     * @throws IOException if the manifest cannot be read, or is not one this code understands
+     */
+    public static ShardManifest read(Path database) throws IOException {
+        Path file = manifestFor(database);
+        int version = 0;
+        String hash = null;
+        List<Path> shards = new ArrayList<>();
+        try (JsonParser parser = FACTORY.createParser(file.toFile())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a shard manifest: " + file);
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "version" -> version = parser.getValueAsInt();
+                    case "hash" -> hash = parser.getValueAsString();
+                    case "shards" -> {
+                        if (value != JsonToken.START_ARRAY) {
+                            throw new IOException("Expected a list of shards in " + file);
+                        }
+                        while (parser.nextToken() == JsonToken.VALUE_STRING) {
+                            shards.add(file.resolveSibling(parser.getText()));
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (version != VERSION || !HASH.equals(hash)) {
+            throw new IOException("Unsupported shard manifest " + file + ": version " + version
+                    + ", hash " + hash);
+        }
+        if (shards.isEmpty()) {
+            throw new IOException("No shards in " + file);
+        }
+        return new ShardManifest(file, Collections.unmodifiableList(shards));
+    }
+
+    /**
+     * Splits records into a new sharded database. The shard files are written first, in parallel,
+     * and the manifest last, so a reader never finds a manifest whose shards are not there.
+     *
+     * A folder that already holds a sharded database is replaced: its manifest and every shard-*
+     * file, journals and snapshots included, are removed before the new shards are written, so
+     * nothing of the old database is replayed into the new one.
+     *
+     * @param dir the folder to write to, created if it is missing
+     * @param count the number of shards
+     * @param records the records to split
+     * @return the manifest
+     * @throws IOException if the files cannot be written
+     * @throws IllegalArgumentException if count is less than 1
+     */
+    public static ShardManifest create(Path dir, int count, Iterator<DNRecord> records)
+            throws IOException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1");
+        }
+        Files.createDirectories(dir);
+        clear(dir);
+        List<Path> shards = new ArrayList<>(count);
+        List<List<DNRecord>> buckets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(dir.resolve(String.format(Locale.ROOT, SHARD_PREFIX + "%03d.xml", i)));
+            buckets.add(new ArrayList<>());
+        }
+        ShardManifest manifest = new ShardManifest(dir.resolve(FILE_NAME),
+                Collections.unmodifiableList(shards));
+        while (records.hasNext()) {
+            DNRecord record = records.next();
+            buckets.get(manifest.shardOf(record.hostname())).add(record);
+        }
+        try {
+            IntStream.range(0, count).parallel().forEach(i -> {
+                try (OutputStream out = Files.newOutputStream(shards.get(i))) {
+                    DataFormatter.writeDatabase(buckets.get(i).iterator(), out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        manifest.write();
+        return manifest;
+    }
+
+    /**
+     * Removes the manifest and the shard files of an earlier sharded database in a folder. The
+     * manifest goes first, so a reader never finds it listing a shard that was removed.
+     *
+     * @param dir the folder
+     * @throws IOException if a file cannot be removed
+     */
+    private static void clear(Path dir) throws IOException {
+        Files.deleteIfExists(dir.resolve(FILE_NAME));
+        try (DirectoryStream<Path> old = Files.newDirectoryStream(dir, SHARD_PREFIX + "*")) {
+            for (Path file : old) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Writes the manifest file, through a temporary file so it is replaced in one rename.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    private void write() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (JsonGenerator gen = FACTORY.createGenerator(temp.toFile(), JsonEncoding.UTF8)) {
+            gen.useDefaultPrettyPrinter();
+            gen.writeStartObject();
+            gen.writeNumberField("version", VERSION);
+            gen.writeStringField("hash", HASH);
+            gen.writeArrayFieldStart("shards");
+            for (Path shard : shards) {
+                gen.writeString(shard.getFileName().toString());
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Gets the manifest file.
+     *
+     * @return the manifest file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the shard files.
+     *
+     * @return the shard files, in shard order
+     */
+    public List<Path> getShards() {
+        return shards;
+    }
+
+    /**
+     * Gets the shard a hostname belongs to. Hostnames are not case sensitive.
+     *
+     * @param hostname the hostname, may be null
+     * @return the number of the shard
+     */
+    public int shardOf(String hostname) {
+        int hash = hostname == null ? 0 : hostname.toLowerCase(Locale.ROOT).hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+}
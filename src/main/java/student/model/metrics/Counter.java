@@ -0,0 +1,47 @@
+package student.model.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, such as the number of lookups. Increments from many threads do not
+ * contend on a lock or a single memory location.
+ */
+public final class Counter {
+    /** The count. */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Creates the counter. Use {@link Metrics#counter(String, String)} to get a registered one.
+     */
+    Counter() {
+        // empty
+    }
+
+    /**
+     * Adds one.
+     */
+    public void increment() {
+        count.increment();
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount the amount to add, not negative
+     */
+    public void add(long amount) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("A counter cannot go down: " + amount);
+        }
+        count.add(amount);
+    }
+
+    /**
+     * Gets the count.
+     *
+     * @return the count so far
+     */
+    public long get() {
+        return count.sum();
+    }
+}
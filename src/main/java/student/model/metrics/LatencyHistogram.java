@@ -0,0 +1,161 @@
+package student.model.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, for reading off percentiles.
+ *
+ * Like an HDR histogram, the buckets are log-linear: each power of two is split into
+ * {@value #SUB_BUCKETS} equal buckets, so every recorded value is known to within about 6% from 1ns
+ * up to centuries, in a fixed array of under a thousand counts. Recording is a few shifts and an
+ * atomic increment, with no lock and no allocation.
+ *
+ * A snapshot taken while values are being recorded may be off by those values, which is fine for
+ * reporting.
+ */
+public final class LatencyHistogram {
+    /** Buckets per power of two. */
+    static final int SUB_BUCKETS = 16;
+    /** log2 of SUB_BUCKETS. */
+    private static final int SUB_BITS = 4;
+    /** Enough buckets for any long. */
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    /** Count of values in each bucket. */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    /** Number of values. */
+    private final LongAdder count = new LongAdder();
+    /** Sum of the values. */
+    private final LongAdder sum = new LongAdder();
+    /** Largest value. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates the histogram. Use {@link Metrics#histogram(String, String)} to get a registered one.
+     */
+    LatencyHistogram() {
+        // empty
+    }
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Records the time since a start taken from {@link System#nanoTime()}.
+     *
+     * @param startNanos the start
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return the count
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Gets the sum of the values recorded.
+     *
+     * @return the sum in nanoseconds
+     */
+    public long sum() {
+        return sum.sum();
+    }
+
+    /**
+     * Gets the largest value recorded.
+     *
+     * @return the largest value in nanoseconds, 0 if there are none
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Gets a percentile.
+     *
+     * @param quantile the share of values at or under the answer, from 0 to 1
+     * @return the highest value in the bucket holding the percentile (capped at the largest value
+     *         recorded), in nanoseconds, or 0 if there are no values
+     */
+    public long percentile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be from 0 to 1: " + quantile);
+        }
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highest(i), max());
+            }
+        }
+        return max();
+    }
+
+    /**
+     * Gets a duration in seconds, for reports.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration in seconds
+     */
+    static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Gets the bucket for a value.
+     *
+     * @param value the value, not negative
+     * @return the bucket
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Gets the highest value that falls in a bucket.
+     *
+     * @param bucket the bucket
+     * @return the highest value
+     */
+    static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,227 @@
+package student.model.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The registry of counters, gauges and latency histograms for the whole program.
+ *
+ * The classes on the hot paths register their metrics once, in static fields, and then update them
+ * without taking a lock. The registry can be written out as Prometheus text or as JSON, which is
+ * what the --metrics option does when the program exits.
+ *
+ * Names follow the Prometheus conventions: {@code dninfo_} first, {@code _total} last on counters
+ * and {@code _seconds} last on histograms, which are reported in seconds.
+ */
+public final class Metrics {
+    /** Percentiles reported for each histogram. */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /** The metrics by name, in name order. */
+    private static final Map<String, Metric> METRICS = new ConcurrentSkipListMap<>();
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Metrics() {
+        // empty
+    }
+
+    /**
+     * Gets the counter with a name, registering it the first time.
+     *
+     * @param name the name
+     * @param help what it counts
+     * @return the counter
+     * @throws IllegalArgumentException if the name is taken by another kind of metric
+     */
+    public static Counter counter(String name, String help) {
+        Metric metric = METRICS.computeIfAbsent(name,
+                key -> new Metric(help, new Counter(), null, null));
+        if (metric.counter() == null) {
+            throw new IllegalArgumentException(name + " is already registered");
+        }
+        return metric.counter();
+    }
+
+    /**
+     * Gets the histogram with a name, registering it the first time.
+     *
+     * @param name the name
+     * @param help what it times
+     * @return the histogram
+     * @throws IllegalArgumentException if the name is taken by another kind of metric
+     */
+    public static LatencyHistogram histogram(String name, String help) {
+        Metric metric = METRICS.computeIfAbsent(name,
+                key -> new Metric(help, null, new LatencyHistogram(), null));
+        if (metric.histogram() == null) {
+            throw new IllegalArgumentException(name + " is already registered");
+        }
+        return metric.histogram();
+    }
+
+    /**
+     * Registers a gauge, a value that is read when the metrics are written, such as a cache size.
+     * Registering the name again replaces the earlier gauge.
+     *
+     * @param name the name
+     * @param help what it measures
+     * @param value reads the value
+     * @throws IllegalArgumentException if the name is taken by another kind of metric
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        METRICS.compute(name, (key, old) -> {
+            if (old != null && old.gauge() == null) {
+                throw new IllegalArgumentException(name + " is already registered");
+            }
+            return new Metric(help, null, null, value);
+        });
+    }
+
+    /**
+     * Writes every metric to a file, as JSON if the name ends in .json and as Prometheus text
+     * otherwise.
+     *
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(Path file) throws IOException {
+        boolean json = file.getFileName() != null
+                && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json");
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (json) {
+                writeJson(out);
+            } else {
+                writePrometheus(out);
+            }
+        }
+    }
+
+    /**
+     * Writes every metric in the Prometheus text format. Histograms are written as summaries,
+     * with their percentiles, sum and count.
+     *
+     * @param out where to write
+     * @throws IOException if the output cannot be written
+     */
+    public static void writePrometheus(Appendable out) throws IOException {
+        for (Map.Entry<String, Metric> entry : METRICS.entrySet()) {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(escapeHelp(metric.help()))
+                    .append('\n');
+            if (metric.counter() != null) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                out.append(name).append(' ').append(Long.toString(metric.counter().get()))
+                        .append('\n');
+            } else if (metric.histogram() != null) {
+                LatencyHistogram histogram = metric.histogram();
+                out.append("# TYPE ").append(name).append(" summary\n");
+                for (double quantile : QUANTILES) {
+                    out.append(name).append("{quantile=\"").append(Double.toString(quantile))
+                            .append("\"} ").append(number(LatencyHistogram
+                                    .seconds(histogram.percentile(quantile))))
+                            .append('\n');
+                }
+                out.append(name).append("_sum ")
+                        .append(number(LatencyHistogram.seconds(histogram.sum()))).append('\n');
+                out.append(name).append("_count ").append(Long.toString(histogram.count()))
+                        .append('\n');
+            } else {
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                out.append(name).append(' ').append(number(metric.gauge().getAsDouble()))
+                        .append('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes every metric as a JSON object keyed by name. Counters and gauges are numbers,
+     * histograms are objects with their count, sum, max and percentiles in seconds.
+     *
+     * @param out where to write
+     * @throws IOException if the output cannot be written
+     */
+    public static void writeJson(Appendable out) throws IOException {
+        out.append("{");
+        String separator = "\n";
+        for (Map.Entry<String, Metric> entry : METRICS.entrySet()) {
+            Metric metric = entry.getValue();
+            out.append(separator).append("  \"").append(entry.getKey()).append("\": ");
+            separator = ",\n";
+            if (metric.counter() != null) {
+                out.append(Long.toString(metric.counter().get()));
+            } else if (metric.histogram() != null) {
+                LatencyHistogram histogram = metric.histogram();
+                out.append("{\"count\": ").append(Long.toString(histogram.count()))
+                        .append(", \"sum\": ")
+                        .append(number(LatencyHistogram.seconds(histogram.sum())))
+                        .append(", \"max\": ")
+                        .append(number(LatencyHistogram.seconds(histogram.max())));
+                for (double quantile : QUANTILES) {
+                    out.append(", \"p").append(percentileName(quantile)).append("\": ")
+                            .append(number(LatencyHistogram
+                                    .seconds(histogram.percentile(quantile))));
+                }
+                out.append('}');
+            } else {
+                double value = metric.gauge().getAsDouble();
+                out.append(Double.isFinite(value) ? number(value) : "null");
+            }
+        }
+        out.append("\n}\n");
+    }
+
+    /**
+     * Gets the name of a percentile, such as 99 or 99.9.
+     *
+     * @param quantile the quantile
+     * @return the percentile without a trailing .0
+     */
+    private static String percentileName(double quantile) {
+        return number(Math.round(quantile * 1000) / 10.0);
+    }
+
+    /**
+     * Writes a number without a trailing .0 on whole numbers.
+     *
+     * @param value the number
+     * @return the number as text
+     */
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Escapes a help text for the Prometheus format.
+     *
+     * @param help the text
+     * @return the escaped text
+     */
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    /**
+     * A registered metric, exactly one of counter, histogram and gauge is set.
+     *
+     * @param help what it measures
+     * @param counter the counter, or null
+     * @param histogram the histogram, or null
+     * @param gauge reads the gauge, or null
+     */
+    private record Metric(String help, Counter counter, LatencyHistogram histogram,
+            DoubleSupplier gauge) {
+    }
+}
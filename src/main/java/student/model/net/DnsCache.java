@@ -0,0 +1,302 @@
+package student.model.net;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache in front of hostname resolution.
+ *
+ * Successful lookups are kept for a TTL, and hostnames that do not resolve are kept (for a usually
+ * shorter TTL) as well, so a typo in a batch is only looked up once. The cache holds at most a fixed
+ * number of hostnames, dropping the least recently used first. It counts hits and misses, and can be
+ * saved to a file so the entries outlive a single run.
+ *
+ * The cache NetUtils uses is configured with the system properties below, for example
+ * {@code -Ddninfo.dns.ttl=600 -Ddninfo.dns.file=data/dnscache.tsv}.
+ *
+ * <ul>
+ * <li>dninfo.dns.ttl - seconds a resolved address is kept, default 300</li>
+ * <li>dninfo.dns.negativeTtl - seconds an unknown host is kept, default 60</li>
+ * <li>dninfo.dns.maxEntries - most hostnames kept, default 10000</li>
+ * <li>dninfo.dns.file - file the cache is loaded from, and saved to on exit</li>
+ * </ul>
+ */
+public final class DnsCache {
+    /** Marks a hostname that did not resolve, in the saved file. */
+    private static final String UNKNOWN = "-";
+
+    /** Time a resolved address is kept. */
+    private final Duration ttl;
+    /** Time an unknown host is kept. */
+    private final Duration negativeTtl;
+    /** The most hostnames kept. */
+    private final int maxEntries;
+    /** Does the actual lookup on a miss. */
+    private final Resolver resolver;
+
+    /** The entries in least recently used order. Guarded by itself. */
+    private final LinkedHashMap<String, Entry> entries;
+
+    /** Number of lookups answered from the cache. */
+    private final LongAdder hits = new LongAdder();
+    /** Number of lookups that had to resolve. */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache that resolves with {@link InetAddress#getByName(String)}.
+     *
+     * @param ttl time a resolved address is kept
+     * @param negativeTtl time an unknown host is kept
+     * @param maxEntries the most hostnames kept
+     */
+    public DnsCache(Duration ttl, Duration negativeTtl, int maxEntries) {
+        this(ttl, negativeTtl, maxEntries,
+                hostname -> InetAddress.getByName(hostname).getHostAddress());
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param ttl time a resolved address is kept
+     * @param negativeTtl time an unknown host is kept
+     * @param maxEntries the most hostnames kept
+     * @param resolver does the actual lookup on a miss
+     */
+    public DnsCache(Duration ttl, Duration negativeTtl, int maxEntries, Resolver resolver) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.maxEntries = maxEntries;
+        this.resolver = resolver;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > DnsCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Creates the cache configured by the dninfo.dns system properties. If a file is set, the cache
+     * is loaded from it now and saved back to it when the JVM exits.
+     *
+     * @return the cache
+     */
+    static DnsCache fromSystemProperties() {
+        DnsCache cache = new DnsCache(
+                Duration.ofSeconds(Long.getLong("dninfo.dns.ttl", 300)),
+                Duration.ofSeconds(Long.getLong("dninfo.dns.negativeTtl", 60)),
+                Integer.getInteger("dninfo.dns.maxEntries", 10_000));
+        String file = System.getProperty("dninfo.dns.file");
+        if (file != null && !file.isBlank()) {
+            Path path = Path.of(file);
+            try {
+                cache.load(path);
+            } catch (IOException e) {
+                System.err.println("Unable to load dns cache " + path + ": " + e.getMessage());
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    cache.save(path);
+                } catch (IOException e) {
+                    System.err.println("Unable to save dns cache " + path + ": " + e.getMessage());
+                }
+            }, "dns-cache-save"));
+        }
+        return cache;
+    }
+
+    /**
+     * Looks up the IP address of a hostname, using the cache when it can.
+     *
+     * @param hostname the hostname to look up
+     * @return the IP address
+     * @throws UnknownHostException if the hostname does not resolve, now or when it was cached
+     */
+    public String lookUp(String hostname) throws UnknownHostException {
+        String key = hostname.toLowerCase(Locale.ROOT);
+        long now = System.currentTimeMillis();
+        Entry cached;
+        synchronized (entries) {
+            cached = entries.get(key);
+        }
+        if (cached != null && cached.expiresAt() > now) {
+            hits.increment();
+            if (cached.ip() == null) {
+                throw new UnknownHostException(hostname);
+            }
+            return cached.ip();
+        }
+        misses.increment();
+        try {
+            String ip = resolver.resolve(hostname);
+            put(key, new Entry(ip, now + ttl.toMillis()));
+            return ip;
+        } catch (UnknownHostException e) {
+            put(key, new Entry(null, now + negativeTtl.toMillis()));
+            throw e;
+        }
+    }
+
+    /**
+     * Stores an entry, evicting the least recently used one if the cache is full.
+     *
+     * @param key the hostname key
+     * @param entry the entry
+     */
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes every entry. The counters are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Gets the hit and miss counts so far.
+     *
+     * @return the counts
+     */
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), size);
+    }
+
+    /**
+     * Saves the entries that have not expired, one per line as hostname, address (or - for an
+     * unknown host) and expiry time in epoch millis, separated by tabs. The file is written to a
+     * temporary file first and then renamed.
+     *
+     * @param file the file to save to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        Map<String, Entry> copy;
+        synchronized (entries) {
+            copy = new LinkedHashMap<>(entries);
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long now = System.currentTimeMillis();
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : copy.entrySet()) {
+                Entry value = entry.getValue();
+                if (value.expiresAt() > now) {
+                    out.write(entry.getKey() + '\t' + (value.ip() == null ? UNKNOWN : value.ip())
+                            + '\t' + value.expiresAt());
+                    out.newLine();
+                }
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Loads entries saved by {@link #save(Path)}, skipping any that have expired or cannot be
+     * read. Does nothing if the file does not exist.
+     *
+     * @param file the file to load from
+     * @throws IOException if the file cannot be read
+     */
+    public void load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split("\t");
+                if (parts.length != 3) {
+                    continue;
+                }
+                try {
+                    long expiresAt = Long.parseLong(parts[2]);
+                    if (expiresAt > now) {
+                        put(parts[0], new Entry(UNKNOWN.equals(parts[1]) ? null : parts[1],
+                                expiresAt));
+                    }
+                } catch (NumberFormatException e) {
+                    // skip the damaged line
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves a hostname to an IP address.
+     */
+    @FunctionalInterface
+    public interface Resolver {
+        /**
+         * Resolves the hostname.
+         *
+         * @param hostname the hostname
+         * @return the IP address
+         * @throws UnknownHostException if the hostname does not resolve
+         */
+        String resolve(String hostname) throws UnknownHostException;
+    }
+
+    /**
+     * Counts for the cache.
+     *
+     * @param hits lookups answered from the cache, including unknown hosts
+     * @param misses lookups that had to resolve
+     * @param size number of hostnames in the cache
+     */
+    public record Stats(long hits, long misses, int size) {
+
+        /**
+         * Gets the share of lookups answered from the cache.
+         *
+         * @return the hit ratio, 0 if there have been no lookups
+         */
+        public double hitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    /**
+     * A cached lookup.
+     *
+     * @param ip the IP address, or null if the hostname did not resolve
+     * @param expiresAt when the entry expires, in epoch millis
+     */
+    private record Entry(String ip, long expiresAt) {
+    }
+}
@@ -0,0 +1,442 @@
+package student.model.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import student.model.formatters.Formats;
+
+/**
+ * A cache of ipapi.co responses, keyed by IP address and format.
+ *
+ * Many hostnames resolve to the same IP (or CDN edge), so the details for an IP are only requested
+ * once per lifetime. While a request for an IP is running, other threads asking for the same IP
+ * wait for that request rather than sending their own. The cache holds at most a fixed number of
+ * responses, dropping the least recently used first. Empty responses (a failed request) are not
+ * kept.
+ *
+ * ipapi.co also says which network an address belongs to (the {@code network} field, such as
+ * {@code 142.250.64.0/19}). XML and JSON responses are filed under that range in an
+ * {@link IpPrefixTrie}, and while the range is fresh, any other address in it is answered from
+ * the response without a request, with the {@code ip} field changed to the address asked for.
+ * A whole cloud or CDN block costs a single request. At most maxEntries networks are kept, dropping
+ * the least recently used first, like the responses.
+ *
+ * The cache NetUtils uses is configured with the system properties below.
+ *
+ * <ul>
+ * <li>dninfo.geo.ttl - seconds a response is kept, default 86400</li>
+ * <li>dninfo.geo.maxEntries - most responses kept, and most networks, default 10000</li>
+ * <li>dninfo.geo.networkTtl - seconds a network answers for its other addresses, default 86400,
+ * 0 to turn it off</li>
+ * </ul>
+ */
+public final class GeoCache {
+    /** Finds the network in an XML response. */
+    private static final Pattern XML_NETWORK =
+            Pattern.compile("<network>\\s*([^<\\s]+)\\s*</network>");
+    /** Finds the network in a JSON response. */
+    private static final Pattern JSON_NETWORK =
+            Pattern.compile("\"network\"\\s*:\\s*\"([^\"]+)\"");
+
+    /** Time a response is kept. */
+    private final Duration ttl;
+    /** Time a network answers for its other addresses, zero if networks are not used. */
+    private final Duration networkTtl;
+    /** The most responses kept. */
+    private final int maxEntries;
+    /** Sends the actual request on a miss. */
+    private final Fetcher fetcher;
+
+    /** The responses in least recently used order. Guarded by itself. */
+    private final LinkedHashMap<Key, Entry> entries;
+    /** Responses by network, for the formats that name it. Guarded by itself. */
+    private final IpPrefixTrie<Map<Formats, Known>> networks = new IpPrefixTrie<>();
+    /** The networks in least recently used order, to drop from the trie. Guarded by networks. */
+    private final LinkedHashMap<String, Boolean> networkOrder;
+    /** Requests that are running, so others can wait on them. */
+    private final Map<Key, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    /** Number of requests answered from the cache. */
+    private final LongAdder hits = new LongAdder();
+    /** Number of requests answered from the response for another address in the network. */
+    private final LongAdder networkHits = new LongAdder();
+    /** Number of requests that went to the fetcher. */
+    private final LongAdder misses = new LongAdder();
+    /** Number of requests that waited on another thread's request. */
+    private final LongAdder shared = new LongAdder();
+
+    /**
+     * Creates the cache, without answering from networks.
+     *
+     * @param ttl time a response is kept
+     * @param maxEntries the most responses kept
+     * @param fetcher sends the actual request on a miss
+     */
+    public GeoCache(Duration ttl, int maxEntries, Fetcher fetcher) {
+        this(ttl, Duration.ZERO, maxEntries, fetcher);
+    }
+
+    /**
+     * Creates the cache.
+     *
+     * @param ttl time a response is kept
+     * @param networkTtl time a network answers for its other addresses, zero to turn it off
+     * @param maxEntries the most responses kept, and the most networks
+     * @param fetcher sends the actual request on a miss
+     */
+    public GeoCache(Duration ttl, Duration networkTtl, int maxEntries, Fetcher fetcher) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be at least 1");
+        }
+        this.ttl = ttl;
+        this.networkTtl = networkTtl;
+        this.maxEntries = maxEntries;
+        this.fetcher = fetcher;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > GeoCache.this.maxEntries;
+            }
+        };
+        this.networkOrder = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                if (size() > GeoCache.this.maxEntries) {
+                    networks.remove(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Creates the cache configured by the dninfo.geo system properties.
+     *
+     * @param fetcher sends the actual request on a miss
+     * @return the cache
+     */
+    static GeoCache fromSystemProperties(Fetcher fetcher) {
+        return new GeoCache(Duration.ofSeconds(Long.getLong("dninfo.geo.ttl", 86_400)),
+                Duration.ofSeconds(Long.getLong("dninfo.geo.networkTtl", 86_400)),
+                Integer.getInteger("dninfo.geo.maxEntries", 10_000), fetcher);
+    }
+
+    /**
+     * Gets the details for an IP address, blocking until they are available.
+     *
+     * @param ip the IP address
+     * @param format the format of the response
+     * @return the response body
+     * @throws IOException if the request fails
+     * @see #getAsync(String, Formats)
+     */
+    public InputStream get(String ip, Formats format) throws IOException {
+        try {
+            return getAsync(ip, format).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for ip details", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Unable to get ip details", e.getCause());
+        }
+    }
+
+    /**
+     * Gets the details for an IP address, from the cache, from the response for another address in
+     * the same network, from a request already running, or from a new request.
+     *
+     * @param ip the IP address
+     * @param format the format of the response
+     * @return completes with the response body, or with the exception the request failed with
+     */
+    public CompletableFuture<InputStream> getAsync(String ip, Formats format) {
+        Key key = new Key(ip, format);
+        byte[] cached = cached(key);
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(new ByteArrayInputStream(cached));
+        }
+        byte[] local = fromNetwork(ip, format);
+        if (local != null) {
+            networkHits.increment();
+            return CompletableFuture.completedFuture(new ByteArrayInputStream(local));
+        }
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            shared.increment();
+            return running.thenApply(ByteArrayInputStream::new);
+        }
+        // another request may have finished between the first check and taking the lead
+        cached = cached(key);
+        if (cached != null) {
+            hits.increment();
+            inFlight.remove(key, mine);
+            mine.complete(cached);
+            return mine.thenApply(ByteArrayInputStream::new);
+        }
+        misses.increment();
+        CompletableFuture<byte[]> request;
+        try {
+            request = fetcher.fetch(ip, format);
+        } catch (RuntimeException e) {
+            request = CompletableFuture.failedFuture(e);
+        }
+        request.whenComplete((body, error) -> {
+            if (error == null && body.length > 0) {
+                synchronized (entries) {
+                    entries.put(key, new Entry(body, System.currentTimeMillis() + ttl.toMillis()));
+                }
+                learnNetwork(ip, format, body);
+            }
+            inFlight.remove(key, mine);
+            if (error != null) {
+                mine.completeExceptionally(unwrap(error));
+            } else {
+                mine.complete(body);
+            }
+        });
+        return mine.thenApply(ByteArrayInputStream::new);
+    }
+
+    /**
+     * Gets a response that has not expired.
+     *
+     * @param key the key
+     * @return the body, or null if there is none
+     */
+    private byte[] cached(Key key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > System.currentTimeMillis()) {
+                return entry.body();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Answers from a fresh response for another address in the same network. The answer is also
+     * cached for the address, so the next request for it is a plain hit.
+     *
+     * @param ip the IP address
+     * @param format the format of the response
+     * @return the body with the address changed, or null if no fresh network holds the address
+     */
+    private byte[] fromNetwork(String ip, Formats format) {
+        if (networkTtl.isZero() || networkPattern(format) == null) {
+            return null;
+        }
+        Known known;
+        synchronized (networks) {
+            Map<Formats, Known> responses = networks.find(ip);
+            known = responses == null ? null : responses.get(format);
+            if (known == null || known.expiresAt() <= System.currentTimeMillis()) {
+                return null;
+            }
+            networkOrder.get(known.network()); // marks it as recently used
+        }
+        byte[] body = withIp(known, ip, format);
+        synchronized (entries) {
+            entries.put(new Key(ip, format), new Entry(body, Math.min(known.expiresAt(),
+                    System.currentTimeMillis() + ttl.toMillis())));
+        }
+        return body;
+    }
+
+    /**
+     * Files a response under the network it names, if it names one.
+     *
+     * @param ip the IP address the response is for
+     * @param format the format of the response
+     * @param body the response body
+     */
+    private void learnNetwork(String ip, Formats format, byte[] body) {
+        Pattern pattern = networkPattern(format);
+        if (networkTtl.isZero() || pattern == null) {
+            return;
+        }
+        Matcher matcher = pattern.matcher(new String(body, StandardCharsets.UTF_8));
+        if (!matcher.find()) {
+            return;
+        }
+        String network = matcher.group(1);
+        Known known = new Known(network, ip, body,
+                System.currentTimeMillis() + networkTtl.toMillis());
+        synchronized (networks) {
+            try {
+                Map<Formats, Known> responses = networks.get(network);
+                if (responses == null) {
+                    responses = new EnumMap<>(Formats.class);
+                    networks.put(network, responses);
+                }
+                responses.put(format, known);
+                // drops the least recently used network once there are too many
+                networkOrder.put(network, Boolean.TRUE);
+            } catch (IllegalArgumentException e) {
+                // not a range we can use, the response is still cached for its own address
+            }
+        }
+    }
+
+    /**
+     * Gets the pattern that finds the network in a response.
+     *
+     * @param format the format of the response
+     * @return the pattern, or null if networks are not read from that format
+     */
+    private static Pattern networkPattern(Formats format) {
+        return switch (format) {
+            case XML -> XML_NETWORK;
+            case JSON -> JSON_NETWORK;
+            default -> null;
+        };
+    }
+
+    /**
+     * Changes the ip field of a response to another address.
+     *
+     * @param known the response
+     * @param ip the address to put in it
+     * @param format the format of the response
+     * @return the changed body
+     */
+    private static byte[] withIp(Known known, String ip, Formats format) {
+        String body = new String(known.body(), StandardCharsets.UTF_8);
+        Pattern field = format == Formats.XML
+                ? Pattern.compile("(<ip>\\s*)" + Pattern.quote(known.ip()) + "(\\s*</ip>)")
+                : Pattern.compile("(\"ip\"\\s*:\\s*\")" + Pattern.quote(known.ip()) + "(\")");
+        return field.matcher(body).replaceFirst("$1" + Matcher.quoteReplacement(ip) + "$2")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Strips the CompletionException that dependent stages wrap failures in.
+     *
+     * @param error the failure
+     * @return the original failure
+     */
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Removes every response and network. The counters are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+        synchronized (networks) {
+            networks.clear();
+            networkOrder.clear();
+        }
+    }
+
+    /**
+     * Gets the counts so far.
+     *
+     * @return the counts
+     */
+    public Stats stats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        int networkCount;
+        synchronized (networks) {
+            networkCount = networks.size();
+        }
+        return new Stats(hits.sum(), networkHits.sum(), misses.sum(), shared.sum(), size,
+                networkCount, inFlight.size());
+    }
+
+    /**
+     * Sends a request for the details of an IP address.
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+        /**
+         * Sends the request without blocking.
+         *
+         * @param ip the IP address
+         * @param format the format of the response
+         * @return completes with the response body (empty if there were no details), or with an
+         *         IOException if the request fails
+         */
+        CompletableFuture<byte[]> fetch(String ip, Formats format);
+    }
+
+    /**
+     * Counts for the cache.
+     *
+     * @param hits requests answered from the cache
+     * @param networkHits requests answered from the response for another address in the network
+     * @param misses requests that went to the fetcher
+     * @param shared requests that waited on another thread's request
+     * @param size number of responses in the cache
+     * @param networks number of networks known
+     * @param inFlight number of requests running right now
+     */
+    public record Stats(long hits, long networkHits, long misses, long shared, int size,
+            int networks, int inFlight) {
+
+        /**
+         * Gets the share of requests that did not need their own fetch.
+         *
+         * @return the hit ratio, 0 if there have been no requests
+         */
+        public double hitRatio() {
+            long total = hits + networkHits + misses + shared;
+            return total == 0 ? 0 : (double) (hits + networkHits + shared) / total;
+        }
+    }
+
+    /**
+     * Cache key.
+     *
+     * @param ip the IP address
+     * @param format the format of the response
+     */
+    private record Key(String ip, Formats format) {
+    }
+
+    /**
+     * A response filed under its network.
+     *
+     * @param network the network, as the response names it
+     * @param ip the IP address the response is for
+     * @param body the response body
+     * @param expiresAt when the network stops answering, in epoch millis
+     */
+    private record Known(String network, String ip, byte[] body, long expiresAt) {
+    }
+
+    /**
+     * A cached response.
+     *
+     * @param body the response body
+     * @param expiresAt when the response expires, in epoch millis
+     */
+    private record Entry(byte[] body, long expiresAt) {
+    }
+}
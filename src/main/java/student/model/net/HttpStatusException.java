@@ -0,0 +1,70 @@
+package student.model.net;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown when a server answers a request with a status other than 200 OK.
+ */
+public class HttpStatusException extends IOException {
+    /** Serial version, as exceptions are serializable. */
+    private static final long serialVersionUID = 1L;
+
+    /** The URL that was requested. */
+    private final String url;
+    /** The status the server answered with. */
+    private final int statusCode;
+    /** How long the server asked us to wait, or null if it did not say. */
+    private final Duration retryAfter;
+
+    /**
+     * Creates the exception.
+     *
+     * @param url the URL that was requested
+     * @param statusCode the status the server answered with
+     */
+    public HttpStatusException(String url, int statusCode) {
+        this(url, statusCode, null);
+    }
+
+    /**
+     * Creates the exception.
+     *
+     * @param url the URL that was requested
+     * @param statusCode the status the server answered with
+     * @param retryAfter how long the server asked us to wait, or null if it did not say
+     */
+    public HttpStatusException(String url, int statusCode, Duration retryAfter) {
+        super("HTTP " + statusCode + " from " + url);
+        this.url = url;
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Gets the URL that was requested.
+     *
+     * @return the url
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Gets the status the server answered with.
+     *
+     * @return the status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Gets how long the server asked us to wait, from the Retry-After header.
+     *
+     * @return the time to wait, or null if the server did not say
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
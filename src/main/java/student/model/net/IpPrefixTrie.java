@@ -0,0 +1,258 @@
+package student.model.net;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A binary trie of network ranges (CIDR blocks such as {@code 142.250.64.0/19}), for finding the
+ * most specific range an address falls in.
+ *
+ * IPv4 and IPv6 ranges are kept in separate tries, one bit of the address per level, so a lookup
+ * takes at most 32 or 128 steps however many ranges there are. IPv4 mapped IPv6 addresses are
+ * treated as IPv4.
+ *
+ * This class is not thread safe, the owner is expected to guard it.
+ *
+ * @param <V> the type of the value kept for each range
+ */
+public final class IpPrefixTrie<V> {
+    /** Root of the IPv4 ranges. */
+    private final Node<V> ipv4 = new Node<>();
+    /** Root of the IPv6 ranges. */
+    private final Node<V> ipv6 = new Node<>();
+    /** Number of ranges with a value. */
+    private int size;
+
+    /**
+     * Adds or replaces the value for a range.
+     *
+     * @param cidr the range, an address and a prefix length such as {@code 10.0.0.0/8}
+     * @param value the value
+     * @throws IllegalArgumentException if the range cannot be read, or covers every address
+     */
+    public void put(String cidr, V value) {
+        Node<V> node = node(cidr, true);
+        if (node.value == null) {
+            size++;
+        }
+        node.value = value;
+    }
+
+    /**
+     * Gets the value for exactly this range, not a range holding it.
+     *
+     * @param cidr the range, an address and a prefix length such as {@code 10.0.0.0/8}
+     * @return the value, or null if the range has none
+     * @throws IllegalArgumentException if the range cannot be read, or covers every address
+     */
+    public V get(String cidr) {
+        Node<V> node = node(cidr, false);
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * Removes the value for exactly this range, and the nodes on its path left leading nowhere.
+     *
+     * @param cidr the range, an address and a prefix length such as {@code 10.0.0.0/8}
+     * @return the value removed, or null if the range had none
+     * @throws IllegalArgumentException if the range cannot be read, or covers every address
+     */
+    public V remove(String cidr) {
+        Node<V> node = node(cidr, false);
+        if (node == null || node.value == null) {
+            return null;
+        }
+        V removed = node.value;
+        node.value = null;
+        size--;
+        // walk the path again, keeping it, then cut off the empty tail from the bottom up
+        int slash = cidr.indexOf('/');
+        byte[] address = parse(cidr.substring(0, slash).trim());
+        int prefix = Integer.parseInt(cidr.substring(slash + 1).trim());
+        List<Node<V>> path = new ArrayList<>(prefix + 1);
+        Node<V> step = root(address);
+        for (int bit = 0; bit < prefix; bit++) {
+            path.add(step);
+            step = step.children[bit(address, bit)];
+        }
+        for (int bit = prefix - 1; bit >= 0 && step.isEmpty(); bit--) {
+            step = path.get(bit);
+            step.children[bit(address, bit)] = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Walks to the node for a range.
+     *
+     * @param cidr the range
+     * @param create true to add the nodes on the way that are missing
+     * @return the node, or null if it is missing and create is false
+     * @throws IllegalArgumentException if the range cannot be read, or covers every address
+     */
+    private Node<V> node(String cidr, boolean create) {
+        int slash = cidr.indexOf('/');
+        byte[] address = slash < 0 ? null : parse(cidr.substring(0, slash).trim());
+        int prefix;
+        try {
+            prefix = slash < 0 ? -1 : Integer.parseInt(cidr.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            prefix = -1;
+        }
+        if (address == null || prefix < 1 || prefix > address.length * 8) {
+            throw new IllegalArgumentException("Not a network range: " + cidr);
+        }
+        Node<V> node = root(address);
+        for (int bit = 0; bit < prefix; bit++) {
+            int b = bit(address, bit);
+            if (node.children[b] == null) {
+                if (!create) {
+                    return null;
+                }
+                node.children[b] = new Node<>();
+            }
+            node = node.children[b];
+        }
+        return node;
+    }
+
+    /**
+     * Finds the value of the most specific range holding an address.
+     *
+     * @param ip the address
+     * @return the value, or null if the address is in no range or cannot be read
+     */
+    public V find(String ip) {
+        byte[] address = parse(ip);
+        if (address == null) {
+            return null;
+        }
+        Node<V> node = root(address);
+        V found = null;
+        for (int bit = 0; node != null; bit++) {
+            if (node.value != null) {
+                found = node.value;
+            }
+            if (bit == address.length * 8) {
+                break;
+            }
+            node = node.children[bit(address, bit)];
+        }
+        return found;
+    }
+
+    /**
+     * Gets the number of ranges.
+     *
+     * @return the number of ranges with a value
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every range.
+     */
+    public void clear() {
+        ipv4.children[0] = null;
+        ipv4.children[1] = null;
+        ipv6.children[0] = null;
+        ipv6.children[1] = null;
+        size = 0;
+    }
+
+    /**
+     * Gets the root for an address.
+     *
+     * @param address the packed address
+     * @return the IPv4 or IPv6 root
+     */
+    private Node<V> root(byte[] address) {
+        return address.length == 4 ? ipv4 : ipv6;
+    }
+
+    /**
+     * Gets a bit of an address, counting from the most significant.
+     *
+     * @param address the packed address
+     * @param bit the bit
+     * @return 0 or 1
+     */
+    private static int bit(byte[] address, int bit) {
+        return (address[bit >>> 3] >>> (7 - (bit & 7))) & 1;
+    }
+
+    /**
+     * Packs an address. Never does a dns lookup: anything that is not a dotted IPv4 address or an
+     * IPv6 literal is rejected.
+     *
+     * @param ip the address
+     * @return 4 bytes for IPv4, 16 for IPv6, or null if it is not an address
+     */
+    static byte[] parse(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        if (ip.indexOf(':') >= 0) {
+            for (int c = 0; c < ip.length(); c++) {
+                if (Character.digit(ip.charAt(c), 16) < 0 && ip.charAt(c) != ':'
+                        && ip.charAt(c) != '.') {
+                    return null;
+                }
+            }
+            try {
+                // only hex digits, colons and dots, so this parses a literal, never looks it up
+                return InetAddress.getByName(ip).getAddress();
+            } catch (UnknownHostException | SecurityException e) {
+                return null;
+            }
+        }
+        String[] parts = ip.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        byte[] address = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            if (parts[i].isEmpty() || parts[i].length() > 3) {
+                return null;
+            }
+            int value = 0;
+            for (int c = 0; c < parts[i].length(); c++) {
+                char ch = parts[i].charAt(c);
+                if (ch < '0' || ch > '9') {
+                    return null;
+                }
+                value = value * 10 + ch - '0';
+            }
+            if (value > 255) {
+                return null;
+            }
+            address[i] = (byte) value;
+        }
+        return address;
+    }
+
+    /**
+     * A level of the trie.
+     *
+     * @param <V> the type of the value
+     */
+    private static final class Node<V> {
+        /** The ranges continuing with a 0 bit and a 1 bit. */
+        @SuppressWarnings("unchecked")
+        private final Node<V>[] children = new Node[2];
+        /** Value of the range ending here, or null if none does. */
+        private V value;
+
+        /**
+         * Checks if nothing ends here or below.
+         *
+         * @return true if there is no value and no children
+         */
+        private boolean isEmpty() {
+            return value == null && children[0] == null && children[1] == null;
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package student.model.net;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.InetAddress;
-import java.net.URL;
+import java.io.UncheckedIOException;
+import java.net.URI;
 import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
 import student.model.formatters.Formats;
+import student.model.metrics.Counter;
+import student.model.metrics.LatencyHistogram;
+import student.model.metrics.Metrics;
 
 /**
  * A series of classes to help with pulling data from https://ipapi.co/.
@@ -18,6 +32,61 @@ public final class NetUtils {
      */
     private static final String API_URL_FORMAT = "https://ipapi.co/%s/%s/";
 
+    /** User agent sent with every request. */
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) "
+            + "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.3";
+
+    /** Time allowed to open a connection, from dninfo.http.connectTimeout (seconds). */
+    private static final Duration CONNECT_TIMEOUT =
+            Duration.ofSeconds(Long.getLong("dninfo.http.connectTimeout", 5));
+
+    /** Time allowed for a response, from dninfo.http.timeout (seconds). */
+    private static final Duration REQUEST_TIMEOUT =
+            Duration.ofSeconds(Long.getLong("dninfo.http.timeout", 5));
+
+    /** Limits the requests sent to ipapi.co, created on first use. */
+    private static volatile RateLimiter rateLimiter;
+
+    /** Shared http client, created on first use. */
+    private static volatile HttpClient httpClient;
+
+    /** Cache in front of hostname lookups, created on first use. */
+    private static volatile DnsCache dnsCache;
+
+    /** Cache in front of the ipapi.co requests, created on first use. */
+    private static volatile GeoCache geoCache;
+
+    /** Time taken by {@link #lookUpIp(String)}. */
+    private static final LatencyHistogram DNS_SECONDS = Metrics.histogram("dninfo_dns_seconds",
+            "Time to resolve a hostname, including answers from the dns cache");
+    /** Time from sending a request to having the whole response. */
+    private static final LatencyHistogram HTTP_SECONDS = Metrics.histogram("dninfo_http_seconds",
+            "Time from sending an http request to having the whole response");
+    /** Requests that failed or were answered with anything but 200. */
+    private static final Counter HTTP_ERRORS = Metrics.counter("dninfo_http_errors_total",
+            "Http requests that failed or were answered with anything but 200");
+    /** Number of requests sent and not answered yet. */
+    private static final AtomicInteger HTTP_IN_FLIGHT = new AtomicInteger();
+
+    static {
+        Metrics.gauge("dninfo_http_in_flight", "Http requests sent and not answered yet",
+                HTTP_IN_FLIGHT::get);
+        Metrics.gauge("dninfo_dns_cache_hit_ratio",
+                "Share of hostname lookups answered by the dns cache", () -> {
+                    DnsCache cache = dnsCache;
+                    return cache == null ? 0 : cache.stats().hitRatio();
+                });
+        Metrics.gauge("dninfo_geo_cache_hit_ratio",
+                "Share of ip detail requests that did not need their own request", () -> {
+                    GeoCache cache = geoCache;
+                    return cache == null ? 0 : cache.stats().hitRatio();
+                });
+        Metrics.gauge("dninfo_geo_in_flight", "Ip detail requests running right now", () -> {
+            GeoCache cache = geoCache;
+            return cache == null ? 0 : cache.stats().inFlight();
+        });
+    }
+
     /**
      * Prevent instantiation.
      */
@@ -50,51 +119,216 @@ public final class NetUtils {
     }
 
 
+    /**
+     * Gets the cache used by {@link #lookUpIp(String)}. Unless one was set, it is created from the
+     * dninfo.dns system properties the first time it is needed.
+     * 
+     * @return the dns cache
+     * @see DnsCache
+     */
+    public static DnsCache getDnsCache() {
+        DnsCache cache = dnsCache;
+        if (cache == null) {
+            synchronized (NetUtils.class) {
+                cache = dnsCache;
+                if (cache == null) {
+                    cache = DnsCache.fromSystemProperties();
+                    dnsCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Replaces the cache used by {@link #lookUpIp(String)}.
+     * 
+     * @param cache the new cache
+     */
+    public static void setDnsCache(DnsCache cache) {
+        dnsCache = cache;
+    }
+
+
+    /**
+     * Gets the cache used by {@link #getIpDetails(String, Formats)}. Unless one was set, it is
+     * created from the dninfo.geo system properties the first time it is needed.
+     * 
+     * @return the ip details cache
+     * @see GeoCache
+     */
+    public static GeoCache getGeoCache() {
+        GeoCache cache = geoCache;
+        if (cache == null) {
+            synchronized (NetUtils.class) {
+                cache = geoCache;
+                if (cache == null) {
+                    cache = GeoCache.fromSystemProperties((ip, format) -> getRateLimiter()
+                            .execute(() -> getUrlContentsAsync(getApiUrl(ip, format))));
+                    geoCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Replaces the cache used by {@link #getIpDetails(String, Formats)}.
+     * 
+     * @param cache the new cache
+     */
+    public static void setGeoCache(GeoCache cache) {
+        geoCache = cache;
+    }
+
+
+    /**
+     * Gets the limiter that paces the ipapi.co requests made by
+     * {@link #getIpDetails(String, Formats)}. Unless one was set, it is created from the dninfo.api
+     * system properties the first time it is needed.
+     * 
+     * @return the rate limiter
+     * @see RateLimiter
+     */
+    public static RateLimiter getRateLimiter() {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            synchronized (NetUtils.class) {
+                limiter = rateLimiter;
+                if (limiter == null) {
+                    limiter = RateLimiter.fromSystemProperties();
+                    rateLimiter = limiter;
+                }
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Replaces the limiter used for the ipapi.co requests.
+     * 
+     * @param limiter the new limiter
+     */
+    public static void setRateLimiter(RateLimiter limiter) {
+        rateLimiter = limiter;
+    }
+
+
     /**
      * Looks up the IP address of a given hostname.
      * 
+     * Answers come from the dns cache when they can, including hostnames that recently failed to
+     * resolve.
      * 
      * @param hostname the URL/hostname to look up
      * @return the IP address of the hostname
      * @throws UnknownHostException if the hostname cannot be resolved
      */
     public static String lookUpIp(String hostname) throws UnknownHostException {
-        InetAddress address = InetAddress.getByName(hostname);
-        String ip = address.getHostAddress();
-        return ip;
+        long start = System.nanoTime();
+        try {
+            return getDnsCache().lookUp(hostname);
+        } finally {
+            DNS_SECONDS.recordSince(start);
+        }
     }
 
 
     /**
-     * Gets the contents of a URL as an InputStream.
+     * Gets the shared http client, creating it on first use. The client keeps connections alive
+     * and reuses them, and uses HTTP/2 when the server supports it.
+     * 
+     * @return the http client
+     */
+    private static HttpClient getHttpClient() {
+        HttpClient client = httpClient;
+        if (client == null) {
+            synchronized (NetUtils.class) {
+                client = httpClient;
+                if (client == null) {
+                    client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+                            .connectTimeout(CONNECT_TIMEOUT)
+                            .followRedirects(HttpClient.Redirect.NORMAL).build();
+                    httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+
+    /**
+     * Gets the contents of a URL without blocking.
      * 
      * @param urlStr the URL to get the contents of
-     * @return the contents of the URL as an InputStream, or the null InputStream if the connection
+     * @return completes with the body of the response, or with an {@link HttpStatusException} if
+     *         the server answers with anything but 200, or another IOException if the request
      *         fails
-     * 
      */
-    public static InputStream getUrlContents(String urlStr) {
+    public static CompletableFuture<byte[]> getUrlContentsAsync(String urlStr) {
+        HttpRequest request;
         try {
-            URL url = new URL(urlStr);
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            // con.setRequestProperty("Content-Type", "application/xml");
-            con.setConnectTimeout(5000);
-            con.setReadTimeout(5000);
-            con.setRequestProperty("User-Agent",
-                    "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 "
-                            + "(KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.3");
-            int status = con.getResponseCode();
-            if (status == 200) {
-                return con.getInputStream();
-            } else {
-                System.err.println("Failed to connect to " + urlStr);
-            }
+            request = HttpRequest.newBuilder(URI.create(urlStr)).timeout(REQUEST_TIMEOUT)
+                    .header("User-Agent", USER_AGENT).GET().build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException("Bad url " + urlStr, e));
+        }
+        long start = System.nanoTime();
+        HTTP_IN_FLIGHT.incrementAndGet();
+        return getHttpClient().sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    HTTP_IN_FLIGHT.decrementAndGet();
+                    HTTP_SECONDS.recordSince(start);
+                    if (error != null || response.statusCode() != 200) {
+                        HTTP_ERRORS.increment();
+                    }
+                })
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        Duration retryAfter = response.headers().firstValue("Retry-After")
+                                .map(NetUtils::parseRetryAfter).orElse(null);
+                        throw new CompletionException(new HttpStatusException(urlStr,
+                                response.statusCode(), retryAfter));
+                    }
+                    return response.body();
+                });
+    }
 
-        } catch (Exception ex) {
-            System.err.println("Failed to connect to " + urlStr);
+
+    /**
+     * Parses a Retry-After header, which is either a number of seconds or an http date.
+     * 
+     * @param value the header value
+     * @return the time to wait, or null if the value cannot be read
+     */
+    static Duration parseRetryAfter(String value) {
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException e) {
+            // not a number, try a date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME);
+            Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return wait.isNegative() ? Duration.ZERO : wait;
+        } catch (DateTimeParseException e) {
+            return null;
         }
-        return InputStream.nullInputStream();
+    }
+
+
+    /**
+     * Gets the contents of a URL as an InputStream.
+     * 
+     * @param urlStr the URL to get the contents of
+     * @return the contents of the URL as an InputStream
+     * @throws UncheckedIOException if the request fails, wrapping an {@link HttpStatusException}
+     *         if the server answers with anything but 200
+     * @see #getUrlContentsAsync(String)
+     */
+    public static InputStream getUrlContents(String urlStr) {
+        return new ByteArrayInputStream(await(getUrlContentsAsync(urlStr)));
     }
 
 
@@ -102,7 +336,8 @@ public final class NetUtils {
      * Gets IP details using the ipapi.co API. Defaults to XML format.
      * 
      * @param ip the IP address to get the information about
-     * @return the contents of the URL as an InputStream, or the null InputStream if the connection
+     * @return the contents of the URL as an InputStream
+     * @throws UncheckedIOException if the request fails
      */
     public static InputStream getIpDetails(String ip) {
         return getIpDetails(ip, Formats.XML);
@@ -112,13 +347,68 @@ public final class NetUtils {
     /**
      * Gets IP details using the ipapi.co API.
      * 
+     * Blocks until {@link #getIpDetailsAsync(String, Formats)} completes.
+     * 
      * @param ip the IP address to get the information about
      * @param format the format of the response
-     * @return the contents of the URL as an InputStream, or the null InputStream if the connection
+     * @return the contents of the URL as an InputStream
+     * @throws UncheckedIOException if the request fails, wrapping an {@link HttpStatusException}
+     *         if the server answers with anything but 200
      */
     public static InputStream getIpDetails(String ip, Formats format) {
-        String urlStr = getApiUrl(ip, format);
-        return getUrlContents(urlStr);
+        return await(getIpDetailsAsync(ip, format));
+    }
+
+
+    /**
+     * Gets IP details using the ipapi.co API without blocking. Defaults to XML format.
+     * 
+     * @param ip the IP address to get the information about
+     * @return completes with the contents of the URL as an InputStream
+     */
+    public static CompletableFuture<InputStream> getIpDetailsAsync(String ip) {
+        return getIpDetailsAsync(ip, Formats.XML);
+    }
+
+
+    /**
+     * Gets IP details using the ipapi.co API without blocking.
+     * 
+     * Responses are cached by IP, and concurrent requests for the same IP share a single request.
+     * Requests that do go out are paced by the rate limiter, and retried if ipapi.co throttles them.
+     * 
+     * @param ip the IP address to get the information about
+     * @param format the format of the response
+     * @return completes with the contents of the URL as an InputStream, or with an IOException if
+     *         the request fails
+     * @see GeoCache
+     */
+    public static CompletableFuture<InputStream> getIpDetailsAsync(String ip, Formats format) {
+        return getGeoCache().getAsync(ip, format);
+    }
+
+
+    /**
+     * Waits for a request, turning a failure back into the exception it started as.
+     * 
+     * @param <T> the type of the result
+     * @param future the request
+     * @return the result
+     * @throws UncheckedIOException if the request failed
+     */
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw new UncheckedIOException(io);
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
     }
 
 }
@@ -0,0 +1,285 @@
+package student.model.net;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps requests to a rate limited API (ipapi.co) just under its limit.
+ *
+ * Requests take a token from a token bucket, so they go out at most at the configured rate, with
+ * short bursts up to the bucket size. On top of that the number of requests in flight is adjusted
+ * AIMD style: it creeps up by about one for each round of fast responses, and is cut when responses
+ * get slow or the server answers 429 Too Many Requests. A 429 also pauses every request for the
+ * Retry-After time (or an exponential backoff if there is none), then the request is retried.
+ *
+ * Waiting never blocks a thread, requests are queued and started when a token and a slot are free.
+ *
+ * The limiter NetUtils uses is configured with the system properties below.
+ *
+ * <ul>
+ * <li>dninfo.api.rate - requests per second, default 2</li>
+ * <li>dninfo.api.burst - most requests sent back to back, default 5</li>
+ * <li>dninfo.api.maxConcurrency - most requests in flight, default 8</li>
+ * <li>dninfo.api.targetLatency - milliseconds above which a response counts as slow, default
+ * 1000</li>
+ * <li>dninfo.api.maxRetries - times a throttled request is retried, default 3</li>
+ * </ul>
+ */
+public final class RateLimiter {
+    /** Status code for Too Many Requests. */
+    private static final int TOO_MANY_REQUESTS = 429;
+    /** Backoff before the first retry when the server does not send Retry-After. */
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(1);
+    /** Longest backoff without Retry-After. */
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+    /** Factor the concurrency limit is cut by on a 429. */
+    private static final double THROTTLED_DECREASE = 0.5;
+    /** Factor the concurrency limit is cut by on a slow response. */
+    private static final double SLOW_DECREASE = 0.9;
+
+    /** Tokens added per nanosecond. */
+    private final double tokensPerNano;
+    /** Size of the bucket. */
+    private final double burst;
+    /** Highest the concurrency limit can go. */
+    private final int maxConcurrency;
+    /** Responses slower than this lower the concurrency limit. */
+    private final long targetLatencyNanos;
+    /** Times a throttled request is retried. */
+    private final int maxRetries;
+
+    /** Requests waiting for a token or a slot, oldest first. All state below is guarded by this. */
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    /** Tokens in the bucket. */
+    private double tokens;
+    /** When the bucket was last topped up, in nanos. */
+    private long refilledAt;
+    /** No request starts before this time, in nanos. Set by Retry-After. */
+    private long pausedUntil;
+    /** The current concurrency limit. */
+    private double limit;
+    /** Number of requests in flight. */
+    private int inFlight;
+    /** True if a timer is already set to start waiting requests. */
+    private boolean wakeUpScheduled;
+
+    /** Number of requests started, including retries. */
+    private long started;
+    /** Number of 429 responses. */
+    private long throttled;
+    /** Number of slow responses. */
+    private long slow;
+
+    /**
+     * Creates a limiter.
+     *
+     * @param ratePerSecond requests per second
+     * @param burst most requests sent back to back
+     * @param maxConcurrency most requests in flight
+     * @param targetLatency responses slower than this count as slow
+     * @param maxRetries times a throttled request is retried
+     */
+    public RateLimiter(double ratePerSecond, int burst, int maxConcurrency, Duration targetLatency,
+            int maxRetries) {
+        if (ratePerSecond <= 0 || burst < 1 || maxConcurrency < 1 || maxRetries < 0) {
+            throw new IllegalArgumentException("Rate, burst and concurrency must be positive");
+        }
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.maxConcurrency = maxConcurrency;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.maxRetries = maxRetries;
+        this.tokens = burst;
+        this.refilledAt = System.nanoTime();
+        this.pausedUntil = refilledAt;
+        // start low and let additive increase find the level the server is happy with
+        this.limit = Math.min(2, maxConcurrency);
+    }
+
+    /**
+     * Creates the limiter configured by the dninfo.api system properties.
+     *
+     * @return the limiter
+     */
+    static RateLimiter fromSystemProperties() {
+        return new RateLimiter(Double.parseDouble(System.getProperty("dninfo.api.rate", "2")),
+                Integer.getInteger("dninfo.api.burst", 5),
+                Integer.getInteger("dninfo.api.maxConcurrency", 8),
+                Duration.ofMillis(Long.getLong("dninfo.api.targetLatency", 1000)),
+                Integer.getInteger("dninfo.api.maxRetries", 3));
+    }
+
+    /**
+     * Runs a request once a token and a slot are free, retrying it if the server throttles it.
+     *
+     * @param <T> the type of the response
+     * @param request starts the request; a 429 must fail it with an {@link HttpStatusException}
+     * @return completes with the response, or with the last failure
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        enqueue(request, result, 0);
+        return result;
+    }
+
+    /**
+     * Queues an attempt at a request.
+     *
+     * @param <T> the type of the response
+     * @param request starts the request
+     * @param result completed when the request is done for good
+     * @param attempt number of attempts already made
+     */
+    private <T> void enqueue(Supplier<CompletableFuture<T>> request, CompletableFuture<T> result,
+            int attempt) {
+        synchronized (this) {
+            waiting.add(() -> start(request, result, attempt));
+        }
+        dispatch();
+    }
+
+    /**
+     * Starts an attempt, which already holds a token and a slot.
+     *
+     * @param <T> the type of the response
+     * @param request starts the request
+     * @param result completed when the request is done for good
+     * @param attempt number of attempts already made
+     */
+    private <T> void start(Supplier<CompletableFuture<T>> request, CompletableFuture<T> result,
+            int attempt) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<T> call;
+        try {
+            call = request.get();
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error;
+            if (cause instanceof HttpStatusException status
+                    && status.getStatusCode() == TOO_MANY_REQUESTS) {
+                Duration wait = status.getRetryAfter() != null ? status.getRetryAfter()
+                        : backoff(attempt);
+                onThrottled(wait);
+                if (attempt < maxRetries) {
+                    CompletableFuture.delayedExecutor(wait.toNanos(), TimeUnit.NANOSECONDS)
+                            .execute(() -> enqueue(request, result, attempt + 1));
+                } else {
+                    result.completeExceptionally(cause);
+                }
+            } else {
+                onFinished(System.nanoTime() - startedAt);
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(response);
+                }
+            }
+            dispatch();
+        });
+    }
+
+    /**
+     * Gets the backoff for a retry when the server did not say how long to wait.
+     *
+     * @param attempt number of attempts already made
+     * @return the time to wait
+     */
+    private static Duration backoff(int attempt) {
+        Duration wait = BASE_BACKOFF.multipliedBy(1L << Math.min(attempt, 16));
+        return wait.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : wait;
+    }
+
+    /**
+     * Records a throttled response: halves the limit, empties the bucket and pauses new requests.
+     *
+     * @param wait how long to pause
+     */
+    private synchronized void onThrottled(Duration wait) {
+        inFlight--;
+        throttled++;
+        limit = Math.max(1, limit * THROTTLED_DECREASE);
+        tokens = 0;
+        pausedUntil = Math.max(pausedUntil, System.nanoTime() + wait.toNanos());
+    }
+
+    /**
+     * Records a finished response: slow ones lower the limit, fast ones raise it a little.
+     *
+     * @param latencyNanos how long the response took
+     */
+    private synchronized void onFinished(long latencyNanos) {
+        inFlight--;
+        if (latencyNanos > targetLatencyNanos) {
+            slow++;
+            limit = Math.max(1, limit * SLOW_DECREASE);
+        } else {
+            limit = Math.min(maxConcurrency, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Starts as many waiting requests as the tokens and the limit allow. If requests are left
+     * waiting only for time to pass, sets a timer to try again.
+     */
+    private void dispatch() {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            while (!waiting.isEmpty() && inFlight < (int) limit && tokens >= 1
+                    && now >= pausedUntil) {
+                tokens--;
+                inFlight++;
+                started++;
+                ready.add(waiting.poll());
+            }
+            if (!waiting.isEmpty() && inFlight < (int) limit && !wakeUpScheduled) {
+                long untilToken = (long) Math.ceil((1 - tokens) / tokensPerNano);
+                long delay = Math.max(1, Math.max(untilToken, pausedUntil - now));
+                wakeUpScheduled = true;
+                CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS).execute(() -> {
+                    synchronized (this) {
+                        wakeUpScheduled = false;
+                    }
+                    dispatch();
+                });
+            }
+        }
+        ready.forEach(Runnable::run);
+    }
+
+    /**
+     * Gets the current state and counts.
+     *
+     * @return the stats
+     */
+    public synchronized Stats stats() {
+        return new Stats(started, throttled, slow, limit, inFlight, waiting.size());
+    }
+
+    /**
+     * State and counts for the limiter.
+     *
+     * @param started requests started, including retries
+     * @param throttled responses that were 429
+     * @param slow responses slower than the target latency
+     * @param limit the current concurrency limit
+     * @param inFlight requests in flight
+     * @param waiting requests waiting for a token or a slot
+     */
+    public record Stats(long started, long throttled, long slow, double limit, int inFlight,
+            int waiting) {
+    }
+}
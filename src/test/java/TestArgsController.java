@@ -0,0 +1,217 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.DNInfoApp;
+import student.controller.ArgsController;
+import student.controller.LookupServer;
+import student.model.DomainNameModel;
+
+/**
+ * Tests the command line, writing to files so nothing goes to stdout. Only looks up hostnames that
+ * are already in the database.
+ */
+public class TestArgsController {
+
+    /** Folder for the database copy and the output. */
+    @TempDir
+    Path tempDir;
+
+    /** Copy of the database. */
+    private String database;
+
+    /**
+     * Copies the sample database into the temp folder.
+     *
+     * @throws IOException if the copy fails
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path copy = tempDir.resolve("hostrecords.xml");
+        Files.copy(Path.of(DomainNameModel.DATABASE), copy);
+        database = copy.toString();
+    }
+
+    /**
+     * Runs the app and reads what it wrote.
+     *
+     * @param args the arguments, without -o and --data
+     * @return the output
+     * @throws IOException if the output cannot be read
+     */
+    private String run(String... args) throws IOException {
+        Path out = tempDir.resolve("out.txt");
+        String[] all = new String[args.length + 4];
+        System.arraycopy(args, 0, all, 0, args.length);
+        all[args.length] = "-o";
+        all[args.length + 1] = out.toString();
+        all[args.length + 2] = "--data";
+        all[args.length + 3] = database;
+        DNInfoApp.main(all);
+        return Files.readString(out);
+    }
+
+    /**
+     * Tests the hostname and all, against the samples.
+     */
+    @Test
+    public void testHostnameAndAll() throws IOException {
+        assertEquals(Files.readString(Path.of("data/samples/output.json")), run("-f", "json"));
+        assertEquals(Files.readString(Path.of("data/samples/output.csv")), run("all", "-f", "CSV"));
+        assertTrue(run("www.github.com").startsWith("www.github.com\n"));
+    }
+
+    /**
+     * Tests the location queries.
+     */
+    @Test
+    public void testNearAndNearest() throws IOException {
+        // Englewood, CO is about 2,300 km from Plainview, NY and 1,500 km from San Francisco
+        assertEquals("hostname\nwww.northeastern.edu\n",
+                run("--near", "39.6,-105.0,100", "-f", "csv").replaceAll(",.*", ""));
+        assertEquals("hostname\nwww.google.com\nwww.northeastern.edu\n",
+                run("-f", "csv", "--nearest", "40.7,-73.9,2").replaceAll(",.*", ""));
+    }
+
+    /**
+     * Tests looking up a file of hostnames, in input order and in finishing order.
+     */
+    @Test
+    public void testInput() throws IOException {
+        Path input = tempDir.resolve("hosts.txt");
+        Files.writeString(input, "www.google.com\n\n# skipped\n  www.github.com  \n"
+                + "www.northeastern.edu\n");
+        assertEquals("hostname\nwww.google.com\nwww.github.com\nwww.northeastern.edu\n",
+                run("--input", input.toString(), "-f", "csv").replaceAll(",.*", ""));
+
+        String unordered = run("--unordered", "-f", "csv", "--input", input.toString());
+        assertEquals(4, unordered.lines().count());
+        assertTrue(unordered.contains("www.github.com,"));
+    }
+
+    /**
+     * Tests writing the metrics, as Prometheus text and as JSON.
+     */
+    @Test
+    public void testMetrics() throws IOException {
+        Path prometheus = tempDir.resolve("metrics.prom");
+        run("www.github.com", "--metrics", prometheus.toString());
+        String text = Files.readString(prometheus);
+        assertTrue(text.contains("# TYPE dninfo_lookups_total counter\n"));
+        assertTrue(text.contains("# TYPE dninfo_format_seconds summary\n"));
+        assertTrue(text.contains("dninfo_lookup_seconds{quantile=\"0.99\"} "));
+        // listed even though every hostname was already in the database
+        assertTrue(text.contains("# TYPE dninfo_parse_seconds summary\n"));
+
+        Path json = tempDir.resolve("metrics.json");
+        run("www.github.com", "--metrics", json.toString());
+        String object = Files.readString(json);
+        assertTrue(object.startsWith("{\n") && object.endsWith("}\n"));
+        assertTrue(object.contains("\"dninfo_lookup_hit_ratio\": "));
+    }
+
+    /**
+     * Tests forwarding a lookup to a running server, and falling back when there is none.
+     */
+    @Test
+    public void testRemote() throws IOException {
+        String expected = run("www.github.com", "-f", "csv");
+        try (LookupServer server = new LookupServer(DomainNameModel.getInstance(database), 0)) {
+            assertEquals(expected, run("www.github.com", "-f", "csv", "--remote",
+                    Integer.toString(server.getPort())));
+        }
+        try (ServerSocket socket = new ServerSocket(0)) {
+            // nothing answers http on a port that was free a moment ago
+            String port = Integer.toString(socket.getLocalPort());
+            socket.close();
+            assertEquals(expected, run("www.github.com", "-f", "csv", "--remote", port));
+        }
+    }
+
+    /**
+     * Tests splitting the database into shards, then looking up from the shards.
+     */
+    @Test
+    public void testShard() throws IOException {
+        String expected = run("all", "-f", "csv");
+        Path shards = tempDir.resolve("shards");
+        run("--shard", shards.toString(), "--shards", "3");
+        assertTrue(Files.exists(shards.resolve("manifest.json")));
+        database = shards.toString();
+        assertEquals(expected.lines().sorted().toList(),
+                run("all", "-f", "csv").lines().sorted().toList());
+        assertTrue(run("www.github.com").startsWith("www.github.com\n"));
+    }
+
+    /**
+     * Tests filtering, sorting and limiting the records written.
+     */
+    @Test
+    public void testQuery() throws IOException {
+        assertEquals("hostname\nwww.github.com\n",
+                run("-f", "csv", "--where", "region=california").replaceAll(",.*", ""));
+        assertEquals("hostname\nwww.google.com\nwww.northeastern.edu\n",
+                run("-f", "csv", "--where", "country=US", "--sort", "-latitude", "--limit", "2")
+                        .replaceAll(",.*", ""));
+        assertEquals("hostname\nwww.northeastern.edu\nwww.google.com\n",
+                run("-f", "csv", "--nearest", "40.7,-73.9,3", "--sort", "-hostname", "--limit",
+                        "2").replaceAll(",.*", ""));
+        assertEquals("hostname\n", run("www.github.com", "-f", "csv", "--where", "country=CA")
+                .replaceAll(",.*", ""));
+    }
+
+    /**
+     * Tests converting a file from one format to another.
+     */
+    @Test
+    public void testConvert() throws IOException {
+        assertEquals(Files.readString(Path.of("data/samples/output.csv")),
+                run("--convert", "data/samples/output.json", "-f", "csv"));
+        assertEquals(Files.readString(Path.of("data/samples/output.json")),
+                run("--convert", "data/samples/output.xml", "-f", "json"));
+        assertEquals("hostname\nwww.google.com\n", run("--convert", "data/samples/output.csv",
+                "-f", "csv", "--where", "city=plainview").replaceAll(",.*", ""));
+    }
+
+    /**
+     * Tests that bad arguments are rejected.
+     */
+    @Test
+    public void testBadArgs() {
+        ArgsController controller = new ArgsController();
+        assertThrows(IllegalArgumentException.class, () -> controller.parseArgs("-f", "yaml"));
+        assertThrows(IllegalArgumentException.class, () -> controller.parseArgs("-o"));
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.parseArgs("--near", "1,2"));
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.parseArgs("--serve", "70000"));
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.parseArgs("--shards", "0"));
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.parseArgs("--where", "planet=earth"));
+        assertThrows(IllegalArgumentException.class,
+                () -> controller.parseArgs("--limit", "0"));
+        assertThrows(IllegalArgumentException.class, () -> controller.parseArgs("--bogus"));
+    }
+
+    /**
+     * Tests that a run that fails reports a failure status, and one that works does not.
+     */
+    @Test
+    public void testExitStatus() throws IOException {
+        String out = tempDir.resolve("out.txt").toString();
+        assertEquals(0, DNInfoApp.run("www.github.com", "-o", out, "--data", database));
+        assertEquals(1, DNInfoApp.run("--bogus"));
+        assertEquals(1, DNInfoApp.run("--near", "91,0,1", "-o", out, "--data", database));
+        assertEquals(1, DNInfoApp.run("--convert", tempDir.resolve("none.json").toString(),
+                "-o", out));
+        Files.createDirectory(tempDir.resolve("empty"));
+        assertEquals(1, DNInfoApp.run("-o", out, "--data", tempDir.resolve("empty").toString()));
+    }
+}
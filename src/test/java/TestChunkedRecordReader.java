@@ -0,0 +1,153 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordFetcher;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+import student.model.io.ChunkedRecordReader;
+import student.model.io.RecordReader;
+import student.model.io.RecordSnapshot;
+
+/**
+ * Tests for the ChunkedRecordReader, on files large enough to be cut into several chunks.
+ */
+public class TestChunkedRecordReader {
+    /** Pool with more threads than the test machine may have, so the files are cut finely. */
+    private static final ForkJoinPool POOL = new ForkJoinPool(8);
+
+    /** Folder for the generated files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Shuts down the pool.
+     */
+    @AfterAll
+    public static void tearDown() {
+        POOL.shutdown();
+    }
+
+    /**
+     * Generates records, about 200 bytes each as xml, with some text that has to be escaped.
+     *
+     * @param count the number of records
+     * @return the records
+     */
+    private static List<DNRecord> records(int count) {
+        List<DNRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            records.add(new DNRecord("host" + i + ".example.com", "10.0." + (i % 256) + ".1",
+                    i % 7 == 0 ? "A & B <domain>" : "Seattle", "Washington", "US", "98109",
+                    i / 1000.0, -i / 1000.0));
+        }
+        return records;
+    }
+
+    /**
+     * Writes records to a file in a format.
+     *
+     * @param name the file name
+     * @param records the records
+     * @param format the format
+     * @return the file
+     * @throws IOException if the file cannot be written
+     */
+    private Path write(String name, List<DNRecord> records, Formats format) throws IOException {
+        Path file = tempDir.resolve(name);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            DataFormatter.write(records, format, out);
+        }
+        return file;
+    }
+
+    /**
+     * Reads every record in a file.
+     *
+     * @param file the file
+     * @return the records
+     * @throws IOException if the file cannot be opened
+     */
+    private static List<DNRecord> read(Path file) throws IOException {
+        try (Stream<DNRecord> records = ChunkedRecordReader.stream(file, POOL)) {
+            return records.toList();
+        }
+    }
+
+    /**
+     * Tests that a multi-chunk xml file reads the same as the sequential reader, in file order.
+     */
+    @Test
+    public void testXml() throws IOException {
+        List<DNRecord> records = records(30_000);
+        Path file = write("hostrecords.xml", records, Formats.XML);
+        assertTrue(Files.size(file) > 4 << 20, "file should span several chunks");
+        try (Stream<DNRecord> sequential = RecordReader.stream(file)) {
+            assertEquals(sequential.toList(), read(file));
+        }
+        assertEquals(records, read(file));
+    }
+
+    /**
+     * Tests that a multi-chunk csv file reads back the records written, in file order.
+     */
+    @Test
+    public void testCsv() throws IOException {
+        List<DNRecord> records = records(30_000);
+        assertEquals(records, read(write("hostrecords.csv", records, Formats.CSV)));
+    }
+
+    /**
+     * Tests files with no records, and a file cut off in the middle of a record.
+     */
+    @Test
+    public void testEmptyAndDamaged() throws IOException {
+        assertEquals(List.of(), read(write("empty.xml", List.of(), Formats.XML)));
+        assertEquals(List.of(), read(write("empty.csv", List.of(), Formats.CSV)));
+        assertEquals(List.of(records(1).get(0)),
+                read(write("sample.csv", records(1), Formats.CSV)));
+
+        Path damaged = tempDir.resolve("damaged.xml");
+        Files.writeString(damaged, "<domainList><domain><hostname>a</domain><domain>"
+                + "<hostname>b</hostname></domain></domainList>");
+        assertThrows(UncheckedIOException.class, () -> read(damaged));
+    }
+
+    /**
+     * Tests csv files with a byte order mark or blank lines before the header, through the reader
+     * and through a model, whose snapshot is built by the reader.
+     */
+    @Test
+    public void testCsvHeaderNotAtStart() throws IOException {
+        List<DNRecord> records = records(3);
+        String csv = Files.readString(write("plain.csv", records, Formats.CSV));
+        RecordFetcher offline = hostname -> {
+            throw new IOException("offline: " + hostname);
+        };
+        for (String lead : List.of("\uFEFF", "\n\n", "\uFEFF \r\n")) {
+            Path file = tempDir.resolve("lead" + lead.length() + ".csv");
+            Files.writeString(file, lead + csv);
+            assertEquals(records, read(file));
+
+            DomainNameModel model = DomainNameModel.getInstance(file.toString(), offline);
+            assertEquals(records, model.getRecords());
+            assertEquals(records.get(1), model.getRecord(records.get(1).hostname()));
+            assertTrue(Files.exists(RecordSnapshot.snapshotFor(file)));
+            assertEquals(records,
+                    DomainNameModel.getInstance(file.toString(), offline).getRecords());
+        }
+    }
+}
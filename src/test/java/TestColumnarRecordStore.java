@@ -0,0 +1,69 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordField;
+import student.model.index.ColumnarRecordStore;
+import student.model.index.ListRecordStore;
+import student.model.index.RecordIndex;
+
+/**
+ * Tests for the dictionary encoded ColumnarRecordStore.
+ */
+public class TestColumnarRecordStore {
+
+    /**
+     * Tests that records come back exactly as they were added, whatever the ip looks like.
+     */
+    @Test
+    public void testRoundTrip() {
+        List<DNRecord> records = List.of(
+                new DNRecord("www.github.com", "140.82.112.3", "San Francisco", "California",
+                        "US", "94110", 37.7509, -122.4153),
+                new DNRecord("max.com", "255.255.255.255", "Plainview", "New York", "US",
+                        "11803", 40.7746, -73.4761),
+                new DNRecord("v6.com", "2606:4700::6810:84e5", null, null, "US", null, 0, 0),
+                new DNRecord("odd.com", "010.1.1.1", "Plainview", "New York", "US", "11803", 1,
+                        2),
+                new DNRecord("none.com", null, null, null, null, null, -1.5, 2.5));
+        ColumnarRecordStore store = new ColumnarRecordStore();
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i, store.add(records.get(i)));
+        }
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i), store.get(i));
+        }
+    }
+
+    /**
+     * Tests the index over a columnar store, and that it takes less memory than the list store.
+     */
+    @Test
+    public void testIndexAndFootprint() {
+        RecordIndex columnar = new RecordIndex(new ColumnarRecordStore());
+        RecordIndex list = new RecordIndex(new ListRecordStore());
+        String[] cities = {"Seattle", "Denver", "Boston"};
+        for (int i = 0; i < 10_000; i++) {
+            DNRecord record = new DNRecord("host" + i + ".com", "10.0." + (i / 256) + "." + i % 256,
+                    cities[i % 3], "Region " + i % 3, "US", String.valueOf(98000 + i % 3),
+                    47 + i % 3, -122);
+            columnar.add(record);
+            list.add(new DNRecord(new String(record.hostname()), new String(record.ip()),
+                    new String(record.city()), new String(record.region()),
+                    new String(record.country()), new String(record.postal()),
+                    record.latitude(), record.longitude()));
+        }
+        assertEquals(list.records(), columnar.records());
+        assertEquals(list.getAll(RecordField.POSTAL, "98001"),
+                columnar.getAll(RecordField.POSTAL, "98001"));
+        assertEquals(list.getAll(RecordField.CITY, "denver"),
+                columnar.getAll(RecordField.CITY, "denver"));
+        assertEquals(list.get("HOST42.com"), columnar.get("host42.com"));
+        assertEquals(3, columnar.groupBy(RecordField.REGION).size());
+
+        double listBytes = list.getStore().bytesPerRecord();
+        double columnarBytes = columnar.getStore().bytesPerRecord();
+        assertTrue(columnarBytes * 2 < listBytes, columnarBytes + " vs " + listBytes);
+    }
+}
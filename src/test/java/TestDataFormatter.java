@@ -0,0 +1,76 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+
+/**
+ * Tests that DataFormatter writes exactly what is in the data/samples files.
+ */
+public class TestDataFormatter {
+
+    /** The records in the sample files. */
+    private static final List<DNRecord> RECORDS = List.of(
+            new DNRecord("www.github.com", "140.82.112.3", "San Francisco", "California", "US",
+                    "94110", 37.7509, -122.4153),
+            new DNRecord("www.northeastern.edu", "23.194.127.178", "Englewood", "Colorado", "US",
+                    "80110", 39.6463, -105.0092),
+            new DNRecord("www.google.com", "142.250.69.228", "Plainview", "New York", "US",
+                    "11803", 40.7746, -73.4761));
+
+    /**
+     * Writes the sample records.
+     *
+     * @param format the format to write
+     * @return the output
+     */
+    private static String write(Formats format) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataFormatter.write(RECORDS, format, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a sample file.
+     *
+     * @param name the file name in data/samples
+     * @return the contents
+     * @throws IOException if the file cannot be read
+     */
+    private static String sample(String name) throws IOException {
+        return Files.readString(Path.of("data/samples", name));
+    }
+
+    /**
+     * Tests each format against its sample.
+     */
+    @Test
+    public void testMatchesSamples() throws IOException {
+        assertEquals(sample("output.xml"), write(Formats.XML));
+        assertEquals(sample("output.json"), write(Formats.JSON));
+        assertEquals(sample("output.csv"), write(Formats.CSV));
+        assertEquals(sample("output.txt"), write(Formats.PRETTY));
+    }
+
+    /**
+     * Tests that writing from a stream gives the same output, and empty input is still valid.
+     */
+    @Test
+    public void testStreamAndEmpty() {
+        for (Formats format : Formats.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataFormatter.write(RECORDS.stream(), format, out);
+            assertEquals(write(format), out.toString(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataFormatter.write(Stream.<DNRecord>empty(), Formats.JSON, out);
+        assertEquals("[ ]", out.toString(StandardCharsets.UTF_8));
+    }
+}
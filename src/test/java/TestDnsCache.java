@@ -0,0 +1,92 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.net.DnsCache;
+
+/**
+ * Tests for the DnsCache, using a stub resolver instead of real dns.
+ */
+public class TestDnsCache {
+
+    /** Folder for saved caches. */
+    @TempDir
+    Path tempDir;
+
+    /** Every hostname the stub was asked to resolve. */
+    private final List<String> resolved = new ArrayList<>();
+
+    /** Stub resolver, hostnames ending in .invalid do not resolve. */
+    private final DnsCache.Resolver stub = hostname -> {
+        resolved.add(hostname);
+        if (hostname.endsWith(".invalid")) {
+            throw new UnknownHostException(hostname);
+        }
+        return "10.0.0." + hostname.length();
+    };
+
+    /**
+     * Tests that repeat lookups, including unknown hosts, come from the cache.
+     */
+    @Test
+    public void testHitsAndNegativeCaching() throws UnknownHostException {
+        DnsCache cache = new DnsCache(Duration.ofMinutes(5), Duration.ofMinutes(1), 10, stub);
+        assertEquals("10.0.0.11", cache.lookUp("example.com"));
+        assertEquals("10.0.0.11", cache.lookUp("EXAMPLE.com"));
+        assertThrows(UnknownHostException.class, () -> cache.lookUp("typo.invalid"));
+        assertThrows(UnknownHostException.class, () -> cache.lookUp("typo.invalid"));
+
+        assertEquals(List.of("example.com", "typo.invalid"), resolved);
+        DnsCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(0.5, stats.hitRatio());
+    }
+
+    /**
+     * Tests that expired entries are resolved again, and the least recently used is evicted.
+     */
+    @Test
+    public void testExpiryAndEviction() throws UnknownHostException {
+        DnsCache expired = new DnsCache(Duration.ZERO, Duration.ZERO, 10, stub);
+        expired.lookUp("a.com");
+        expired.lookUp("a.com");
+        assertEquals(2, resolved.size());
+
+        resolved.clear();
+        DnsCache small = new DnsCache(Duration.ofMinutes(5), Duration.ofMinutes(1), 2, stub);
+        small.lookUp("a.com");
+        small.lookUp("b.com");
+        small.lookUp("a.com");
+        small.lookUp("c.com"); // evicts b.com, the least recently used
+        small.lookUp("a.com");
+        small.lookUp("b.com");
+        assertEquals(List.of("a.com", "b.com", "c.com", "b.com"), resolved);
+        assertEquals(2, small.stats().size());
+    }
+
+    /**
+     * Tests that a saved cache can be loaded into a new one.
+     */
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        Path file = tempDir.resolve("dns.tsv");
+        DnsCache cache = new DnsCache(Duration.ofMinutes(5), Duration.ofMinutes(1), 10, stub);
+        cache.lookUp("example.com");
+        assertThrows(UnknownHostException.class, () -> cache.lookUp("typo.invalid"));
+        cache.save(file);
+
+        resolved.clear();
+        DnsCache loaded = new DnsCache(Duration.ofMinutes(5), Duration.ofMinutes(1), 10, stub);
+        loaded.load(file);
+        assertEquals("10.0.0.11", loaded.lookUp("example.com"));
+        assertThrows(UnknownHostException.class, () -> loaded.lookUp("typo.invalid"));
+        assertEquals(List.of(), resolved);
+    }
+}
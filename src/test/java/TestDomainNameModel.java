@@ -0,0 +1,224 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.DomainNameModel.LookupResult;
+import student.model.RecordFetcher;
+import student.model.RecordField;
+
+/**
+ * Tests for the default DomainNameModel.
+ *
+ * Uses a stub fetcher, so none of these tests need the network.
+ */
+public class TestDomainNameModel {
+
+    /** Folder for the copy of the database. */
+    @TempDir
+    Path tempDir;
+
+    /** Copy of the database, so the real one is never changed. */
+    private String database;
+
+    /** Number of times the stub fetcher was called. */
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    /** Stub fetcher, fails for any hostname ending in .invalid. */
+    private final RecordFetcher stub = hostname -> {
+        fetches.incrementAndGet();
+        if (hostname.endsWith(".invalid")) {
+            throw new UnknownHostException(hostname);
+        }
+        return new DNRecord(hostname, "10.0.0.1", "Seattle", "Washington", "US", "98109",
+                47.6062, -122.3321);
+    };
+
+    /**
+     * Copies the sample database into the temp folder.
+     *
+     * @throws IOException if the copy fails
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path copy = tempDir.resolve("hostrecords.xml");
+        Files.copy(Path.of(DomainNameModel.DATABASE), copy);
+        database = copy.toString();
+        fetches.set(0);
+    }
+
+    /**
+     * Tests that records already in the database are found without a fetch.
+     */
+    @Test
+    public void testGetRecordExisting() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        assertEquals(3, model.getRecords().size());
+        DNRecord expected = new DNRecord("www.github.com", "140.82.112.3", "San Francisco",
+                "California", "US", "94110", 37.7509, -122.4153);
+        assertEquals(expected, model.getRecord("www.github.com"));
+        assertEquals(0, fetches.get());
+    }
+
+    /**
+     * Tests streaming the records straight from the file, and from memory after an add.
+     */
+    @Test
+    public void testStreamRecords() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        try (Stream<DNRecord> records = model.streamRecords()) {
+            assertEquals(List.of("www.github.com", "www.northeastern.edu", "www.google.com"),
+                    records.map(DNRecord::hostname).collect(Collectors.toList()));
+        }
+        model.getRecord("www.example.com");
+        try (Stream<DNRecord> records = model.streamRecords()) {
+            assertEquals(4, records.count());
+        }
+    }
+
+    /**
+     * Tests that a missing database is treated as empty.
+     */
+    @Test
+    public void testMissingDatabase() {
+        DomainNameModel model =
+                DomainNameModel.getInstance(tempDir.resolve("none.xml").toString(), stub);
+        assertEquals(0, model.getRecords().size());
+        assertEquals("www.example.com", model.getRecord("www.example.com").hostname());
+        assertTrue(Files.exists(tempDir.resolve("none.xml.journal")));
+    }
+
+    /**
+     * Tests that a new record is fetched once, and saved to the database.
+     */
+    @Test
+    public void testGetRecordNewIsSaved() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        DNRecord record = model.getRecord("www.example.com");
+        assertEquals("10.0.0.1", record.ip());
+        assertEquals(record, model.getRecord("www.example.com"));
+        assertEquals(1, fetches.get());
+
+        DomainNameModel reloaded = DomainNameModel.getInstance(database, stub);
+        assertEquals(4, reloaded.getRecords().size());
+        assertEquals(record, reloaded.getRecord("www.example.com"));
+    }
+
+    /**
+     * Tests that new records go to the journal, and compaction folds them into the database.
+     */
+    @Test
+    public void testJournalCompaction() throws IOException {
+        Path journal = Path.of(database + ".journal");
+        String original = Files.readString(Path.of(database));
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        model.getRecords(List.of("a.example.com", "b.example.com", "c.example.com"));
+
+        assertEquals(original, Files.readString(Path.of(database)));
+        assertEquals(3, Files.readAllLines(journal).size());
+        assertEquals(6, DomainNameModel.getInstance(database, stub).getRecords().size());
+
+        model.compact();
+        assertFalse(Files.exists(journal));
+        DomainNameModel reloaded = DomainNameModel.getInstance(database, stub);
+        assertEquals(model.getRecords(), reloaded.getRecords());
+        assertEquals(3, fetches.get());
+    }
+
+    /**
+     * Tests that a journal left by earlier runs counts towards compaction, so one record at a time
+     * still folds it in.
+     *
+     * @throws IOException if the journal cannot be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testCompactionAcrossRuns() throws IOException, InterruptedException {
+        Path journal = Path.of(database + ".journal");
+        DomainNameModel.getInstance(database, stub).getRecord("a.example.com");
+        DomainNameModel.getInstance(database, stub).getRecord("b.example.com");
+        assertEquals(2, Files.readAllLines(journal).size(), "below the default size");
+
+        System.setProperty("dninfo.db.compactBytes", "300");
+        try {
+            DomainNameModel.getInstance(database, stub).getRecord("c.example.com");
+        } finally {
+            System.clearProperty("dninfo.db.compactBytes");
+        }
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (Files.exists(journal) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertFalse(Files.exists(journal));
+        assertEquals(6, DomainNameModel.getInstance(database, stub).getRecords().size());
+    }
+
+    /**
+     * Tests that a failed lookup returns null.
+     */
+    @Test
+    public void testGetRecordFailure() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        assertNull(model.getRecord("nothing.invalid"));
+        assertEquals(3, model.getRecords().size());
+    }
+
+    /**
+     * Tests that a batch keeps the input order, and reports failures without stopping.
+     */
+    @Test
+    public void testGetRecordsBatch() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        List<String> hosts = List.of("a.example.com", "www.google.com", "bad.invalid",
+                "b.example.com", "c.example.com");
+        List<LookupResult> results = model.getRecords(hosts, 2);
+
+        assertEquals(hosts.size(), results.size());
+        for (int i = 0; i < hosts.size(); i++) {
+            assertEquals(hosts.get(i), results.get(i).hostname());
+        }
+        assertEquals("142.250.69.228", results.get(1).record().ip());
+        assertFalse(results.get(2).isSuccess());
+        assertEquals(UnknownHostException.class, results.get(2).error().getClass());
+        assertTrue(results.get(4).isSuccess());
+        assertEquals(4, fetches.get());
+        assertEquals(6, model.getRecords().size());
+    }
+
+    /**
+     * Tests the reverse and grouped lookups, including a record added after loading.
+     */
+    @Test
+    public void testGetRecordsBy() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        assertEquals(List.of("www.google.com"),
+                model.getRecordsBy(RecordField.IP, "142.250.69.228").stream()
+                        .map(DNRecord::hostname).toList());
+        assertEquals(3, model.getRecordsBy(RecordField.COUNTRY, "us").size());
+        assertEquals(1, model.getRecordsBy(RecordField.CITY, "Englewood").size());
+
+        model.getRecord("www.example.com");
+        model.getRecord("WWW.EXAMPLE.COM");
+        assertEquals(1, fetches.get());
+        assertEquals(1, model.getRecordsBy(RecordField.IP, "10.0.0.1").size());
+        assertEquals(1, model.getRecordsBy(RecordField.REGION, "Washington").size());
+        assertEquals(4, model.getRecordsBy(RecordField.COUNTRY, "US").size());
+
+        Map<String, List<DNRecord>> byRegion = model.groupRecordsBy(RecordField.REGION);
+        assertEquals(4, byRegion.size());
+        assertEquals("www.example.com", byRegion.get("washington").get(0).hostname());
+    }
+}
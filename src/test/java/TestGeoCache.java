@@ -0,0 +1,167 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import student.model.formatters.Formats;
+import student.model.net.GeoCache;
+import student.model.net.HttpStatusException;
+
+/**
+ * Tests for the GeoCache, using a stub fetcher instead of ipapi.co.
+ */
+public class TestGeoCache {
+
+    /** Number of times the stub was called. */
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    /**
+     * Reads a response as a string.
+     *
+     * @param in the response
+     * @return the body
+     * @throws IOException if the read fails
+     */
+    private static String read(InputStream in) throws IOException {
+        return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tests that concurrent requests for the same IP share one fetch.
+     */
+    @Test
+    public void testSingleFlight() throws Exception {
+        CompletableFuture<byte[]> response = new CompletableFuture<>();
+        GeoCache cache = new GeoCache(Duration.ofMinutes(5), 10, (ip, format) -> {
+            fetches.incrementAndGet();
+            return response;
+        });
+        List<Future<String>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> read(cache.get("1.2.3.4", Formats.XML))));
+            }
+            while (cache.stats().shared() + 1 < 8) {
+                Thread.sleep(1);
+            }
+            assertEquals(1, cache.stats().inFlight());
+            response.complete("<ip>1.2.3.4</ip>".getBytes(StandardCharsets.UTF_8));
+        }
+        for (Future<String> result : results) {
+            assertEquals("<ip>1.2.3.4</ip>", result.get());
+        }
+        assertEquals(1, fetches.get());
+        assertEquals("<ip>1.2.3.4</ip>", read(cache.get("1.2.3.4", Formats.XML)));
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    /**
+     * Tests that a failed request is reported to every caller, and not cached.
+     */
+    @Test
+    public void testFailure() throws IOException {
+        GeoCache cache = new GeoCache(Duration.ofMinutes(5), 10, (ip, format) -> {
+            fetches.incrementAndGet();
+            return CompletableFuture.failedFuture(new HttpStatusException("url", 429));
+        });
+        HttpStatusException error = assertThrows(HttpStatusException.class,
+                () -> cache.get("1.1.1.1", Formats.XML));
+        assertEquals(429, error.getStatusCode());
+        assertThrows(HttpStatusException.class, () -> cache.get("1.1.1.1", Formats.XML));
+        assertEquals(2, fetches.get());
+    }
+
+    /**
+     * Tests that formats are cached apart, empty responses are not kept, and the least recently
+     * used response is evicted.
+     */
+    @Test
+    public void testKeysAndEviction() throws IOException {
+        GeoCache cache = new GeoCache(Duration.ofMinutes(5), 2, (ip, format) -> {
+            fetches.incrementAndGet();
+            return CompletableFuture.completedFuture(
+                    ip.startsWith("0.") ? new byte[0] : format.name().getBytes());
+        });
+        assertEquals("XML", read(cache.get("1.1.1.1", Formats.XML)));
+        assertEquals("JSON", read(cache.get("1.1.1.1", Formats.JSON)));
+        assertEquals(2, fetches.get());
+
+        assertEquals("", read(cache.get("0.0.0.0", Formats.XML)));
+        assertEquals("", read(cache.get("0.0.0.0", Formats.XML)));
+        assertEquals(4, fetches.get());
+
+        cache.get("1.1.1.1", Formats.XML);
+        cache.get("2.2.2.2", Formats.XML); // evicts 1.1.1.1 json
+        assertEquals(5, fetches.get());
+        cache.get("1.1.1.1", Formats.JSON);
+        assertEquals(6, fetches.get());
+    }
+
+    /**
+     * Tests that other addresses in a known network are answered without a fetch, with their own
+     * ip, until the network expires.
+     */
+    @Test
+    public void testNetworks() throws Exception {
+        GeoCache cache = new GeoCache(Duration.ofMinutes(5), Duration.ofMillis(200), 10,
+                (ip, format) -> {
+                    fetches.incrementAndGet();
+                    String body = format == Formats.XML
+                            ? "<root><ip>" + ip + "</ip><network>142.250.64.0/19</network></root>"
+                            : "{\"ip\": \"" + ip + "\", \"network\": \"142.250.64.0/19\"}";
+                    return CompletableFuture.completedFuture(body.getBytes(StandardCharsets.UTF_8));
+                });
+        cache.get("142.250.69.228", Formats.XML);
+        assertEquals("<root><ip>142.250.80.1</ip><network>142.250.64.0/19</network></root>",
+                read(cache.get("142.250.80.1", Formats.XML)));
+        assertEquals(1, fetches.get());
+        assertEquals(1, cache.stats().networkHits());
+        assertEquals(1, cache.stats().networks());
+
+        cache.get("142.250.96.1", Formats.XML); // outside the /19
+        cache.get("142.250.65.1", Formats.JSON); // json was not seen for the network yet
+        assertEquals("{\"ip\": \"142.250.66.2\", \"network\": \"142.250.64.0/19\"}",
+                read(cache.get("142.250.66.2", Formats.JSON)));
+        assertEquals(3, fetches.get());
+
+        Thread.sleep(250);
+        cache.get("142.250.70.1", Formats.XML);
+        assertEquals(4, fetches.get());
+    }
+
+    /**
+     * Tests that once the most networks are known, a new one replaces the least recently used.
+     */
+    @Test
+    public void testNetworksEvicted() throws Exception {
+        GeoCache cache = new GeoCache(Duration.ofMinutes(5), Duration.ofMinutes(5), 2,
+                (ip, format) -> {
+                    fetches.incrementAndGet();
+                    String network = ip.substring(0, ip.indexOf('.')) + ".0.0.0/8";
+                    return CompletableFuture.completedFuture(("<root><ip>" + ip + "</ip><network>"
+                            + network + "</network></root>").getBytes(StandardCharsets.UTF_8));
+                });
+        cache.get("1.0.0.1", Formats.XML);
+        cache.get("2.0.0.1", Formats.XML);
+        cache.get("1.0.0.2", Formats.XML); // answered by 1.0.0.0/8, which is now the most recent
+        cache.get("3.0.0.1", Formats.XML); // replaces 2.0.0.0/8
+        assertEquals(3, fetches.get());
+        assertEquals(2, cache.stats().networks());
+
+        cache.get("3.0.0.2", Formats.XML);
+        cache.get("1.0.0.3", Formats.XML);
+        assertEquals(3, fetches.get());
+        cache.get("2.0.0.2", Formats.XML);
+        assertEquals(4, fetches.get());
+    }
+}
@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import student.model.net.IpPrefixTrie;
+
+/**
+ * Tests for the IpPrefixTrie.
+ */
+public class TestIpPrefixTrie {
+
+    /**
+     * Tests that the most specific range wins, for IPv4 and IPv6.
+     */
+    @Test
+    public void testLongestMatch() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>();
+        trie.put("142.250.0.0/15", "wide");
+        trie.put("142.250.64.0/19", "narrow");
+        trie.put("2607:f8b0::/32", "google6");
+        trie.put("10.1.2.3/32", "host");
+
+        assertEquals("narrow", trie.find("142.250.69.228"));
+        assertEquals("wide", trie.find("142.250.96.1"));
+        assertEquals("wide", trie.find("142.251.0.1"));
+        assertNull(trie.find("142.252.0.1"));
+        assertEquals("google6", trie.find("2607:f8b0:4004:c07::64"));
+        assertNull(trie.find("2607:f8b1::1"));
+        assertEquals("host", trie.find("10.1.2.3"));
+        assertEquals("host", trie.find("::ffff:10.1.2.3"));
+        assertNull(trie.find("10.1.2.4"));
+        assertEquals(4, trie.size());
+
+        assertEquals("wide", trie.get("142.250.0.0/15"));
+        assertNull(trie.get("142.250.0.0/16"));
+        trie.put("142.250.0.0/15", "replaced");
+        assertEquals(4, trie.size());
+        trie.clear();
+        assertNull(trie.find("142.250.69.228"));
+        assertEquals(0, trie.size());
+    }
+
+    /**
+     * Tests that removing a range leaves the ranges around it.
+     */
+    @Test
+    public void testRemove() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>();
+        trie.put("142.250.0.0/15", "wide");
+        trie.put("142.250.64.0/19", "narrow");
+        trie.put("142.250.64.0/24", "narrower");
+
+        assertEquals("narrow", trie.remove("142.250.64.0/19"));
+        assertNull(trie.remove("142.250.64.0/19"));
+        assertEquals("narrower", trie.find("142.250.64.9"));
+        assertEquals("wide", trie.find("142.250.69.228"));
+        assertEquals("narrower", trie.remove("142.250.64.0/24"));
+        assertEquals("wide", trie.find("142.250.64.9"));
+        assertEquals(1, trie.size());
+        assertNull(trie.remove("10.0.0.0/8"));
+        trie.put("142.250.64.0/24", "back");
+        assertEquals("back", trie.find("142.250.64.9"));
+    }
+
+    /**
+     * Tests that things that are not addresses or ranges are rejected without a dns lookup.
+     */
+    @Test
+    public void testBadInput() {
+        IpPrefixTrie<String> trie = new IpPrefixTrie<>();
+        trie.put("1.0.0.0/8", "one");
+        assertNull(trie.find("www.google.com"));
+        assertNull(trie.find("1.2.3"));
+        assertNull(trie.find("1.2.3.256"));
+        assertNull(trie.find("host:name"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("1.2.3.4", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("0.0.0.0/0", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("1.2.3.4/33", "x"));
+    }
+}
@@ -0,0 +1,118 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.controller.LookupServer;
+import student.model.DomainNameModel;
+
+/**
+ * Tests the lookup server on a free local port. Hostnames that are not in the database fail
+ * instead of going to the network.
+ */
+public class TestLookupServer {
+
+    /** Folder for the database copy. */
+    @TempDir
+    Path tempDir;
+
+    /** The server. */
+    private LookupServer server;
+
+    /** Client for the requests. */
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    /**
+     * Starts the server over a copy of the sample database.
+     *
+     * @throws IOException if the copy fails or the server cannot start
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path copy = tempDir.resolve("hostrecords.xml");
+        Files.copy(Path.of(DomainNameModel.DATABASE), copy);
+        server = new LookupServer(DomainNameModel.getInstance(copy.toString(), hostname -> {
+            throw new UnknownHostException(hostname);
+        }), 0);
+    }
+
+    /**
+     * Stops the server.
+     */
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param method the method
+     * @param path the path and query
+     * @param body the body, or null for none
+     * @return the response
+     */
+    private HttpResponse<String> send(String method, String path, String body)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest
+                .newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Tests looking up a single record.
+     */
+    @Test
+    public void testRecord() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("GET", "/record/www.github.com?format=csv", null);
+        assertEquals(200, response.statusCode());
+        assertEquals("text/csv; charset=utf-8",
+                response.headers().firstValue("Content-Type").orElse(null));
+        assertTrue(response.body().startsWith("hostname,ip,"));
+        assertTrue(response.body().contains("\nwww.github.com,"));
+
+        response = send("GET", "/record/www.github.com", null);
+        assertTrue(response.body().contains("\"hostname\" : \"www.github.com\""),
+                response.body());
+
+        assertEquals(404, send("GET", "/record/missing.example", null).statusCode());
+        assertEquals(400, send("GET", "/record/www.github.com?format=yaml", null).statusCode());
+        assertEquals(405, send("POST", "/record/www.github.com", "").statusCode());
+    }
+
+    /**
+     * Tests looking up a batch, in input order, leaving out the failures.
+     */
+    @Test
+    public void testRecords() throws IOException, InterruptedException {
+        HttpResponse<String> response = send("POST", "/records?format=csv",
+                "www.google.com\nmissing.example\nwww.github.com\n");
+        assertEquals(200, response.statusCode());
+        assertEquals("hostname\nwww.google.com\nwww.github.com\n",
+                response.body().replaceAll(",.*", ""));
+        assertEquals(405, send("GET", "/records", null).statusCode());
+    }
+
+    /**
+     * Tests the metrics.
+     */
+    @Test
+    public void testMetrics() throws IOException, InterruptedException {
+        send("GET", "/record/www.github.com", null);
+        HttpResponse<String> response = send("GET", "/metrics", null);
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("# TYPE dninfo_lookup_seconds summary\n"));
+    }
+}
@@ -0,0 +1,68 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import student.model.metrics.Counter;
+import student.model.metrics.LatencyHistogram;
+import student.model.metrics.Metrics;
+
+/**
+ * Tests the metrics registry. The registry is shared by the whole program, so every name here
+ * starts with test_.
+ */
+public class TestMetrics {
+
+    /**
+     * Tests that percentiles are within the bucket precision.
+     */
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = Metrics.histogram("test_percentiles_seconds", "test");
+        assertEquals(0, histogram.percentile(0.5));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000), histogram.max());
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(500_500), histogram.sum());
+        long median = histogram.percentile(0.5);
+        assertTrue(median >= 500_000 && median <= 500_000 * 1.07, "median " + median);
+        long p99 = histogram.percentile(0.99);
+        assertTrue(p99 >= 990_000 && p99 <= 990_000 * 1.07, "p99 " + p99);
+        assertEquals(histogram.max(), histogram.percentile(1));
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.percentile(1));
+        assertEquals(0, histogram.percentile(0));
+    }
+
+    /**
+     * Tests registering and writing each kind of metric.
+     */
+    @Test
+    public void testRegistry() throws IOException {
+        Counter counter = Metrics.counter("test_registry_total", "Things counted");
+        counter.increment();
+        counter.add(2);
+        assertEquals(3, Metrics.counter("test_registry_total", "Things counted").get());
+        assertThrows(IllegalArgumentException.class, () -> counter.add(-1));
+        assertThrows(IllegalArgumentException.class,
+                () -> Metrics.histogram("test_registry_total", "Not a histogram"));
+        Metrics.gauge("test_registry_ratio", "A share", () -> 0.25);
+
+        StringBuilder prometheus = new StringBuilder();
+        Metrics.writePrometheus(prometheus);
+        assertTrue(prometheus.toString().contains("# HELP test_registry_total Things counted\n"
+                + "# TYPE test_registry_total counter\ntest_registry_total 3\n"));
+        assertTrue(prometheus.toString().contains("# TYPE test_registry_ratio gauge\n"
+                + "test_registry_ratio 0.25\n"));
+
+        StringBuilder json = new StringBuilder();
+        Metrics.writeJson(json);
+        assertTrue(json.toString().contains("\"test_registry_total\": 3"));
+        assertTrue(json.toString().contains("\"test_registry_ratio\": 0.25"));
+    }
+}
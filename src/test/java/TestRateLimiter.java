@@ -0,0 +1,111 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import student.model.net.HttpStatusException;
+import student.model.net.RateLimiter;
+
+/**
+ * Tests for the RateLimiter, using requests that complete straight away.
+ */
+public class TestRateLimiter {
+
+    /**
+     * Tests that requests are paced to the rate once the burst is used up.
+     */
+    @Test
+    public void testPacing() throws Exception {
+        RateLimiter limiter = new RateLimiter(50, 1, 4, Duration.ofSeconds(1), 0);
+        long start = System.nanoTime();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            int n = i;
+            results.add(limiter.execute(() -> CompletableFuture.completedFuture(n)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).get());
+        }
+        // one from the bucket, then five at 20ms each
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(90).toNanos());
+        assertEquals(6, limiter.stats().started());
+    }
+
+    /**
+     * Tests that a 429 is retried after Retry-After, and lowers the concurrency limit.
+     */
+    @Test
+    public void testRetryAfter() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000, 10, 8, Duration.ofSeconds(1), 3);
+        AtomicInteger calls = new AtomicInteger();
+        double[] limitOnRetry = new double[1];
+        long start = System.nanoTime();
+        String result = limiter.execute(() -> {
+            if (calls.getAndIncrement() == 0) {
+                return CompletableFuture.failedFuture(
+                        new HttpStatusException("url", 429, Duration.ofMillis(100)));
+            }
+            limitOnRetry[0] = limiter.stats().limit();
+            return CompletableFuture.completedFuture("ok");
+        }).get();
+
+        assertEquals("ok", result);
+        // the limit starts at 2, and the 429 halves it
+        assertEquals(1.0, limitOnRetry[0], 1e-9);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+        RateLimiter.Stats stats = limiter.stats();
+        assertEquals(2, stats.started());
+        assertEquals(1, stats.throttled());
+        assertEquals(0, stats.inFlight());
+    }
+
+    /**
+     * Tests that a response slower than the target latency cuts the concurrency limit by a tenth,
+     * and a fast one raises it again.
+     */
+    @Test
+    public void testSlowResponse() throws Exception {
+        RateLimiter limiter = new RateLimiter(1000, 10, 8, Duration.ofMillis(10), 0);
+        assertEquals(2.0, limiter.stats().limit(), 1e-9);
+        limiter.execute(() -> CompletableFuture.supplyAsync(() -> "slow",
+                CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS))).get();
+        RateLimiter.Stats stats = limiter.stats();
+        assertEquals(1, stats.slow());
+        assertEquals(1.8, stats.limit(), 1e-9);
+
+        limiter.execute(() -> CompletableFuture.completedFuture("fast")).get();
+        assertEquals(1.8 + 1 / 1.8, limiter.stats().limit(), 1e-9);
+    }
+
+    /**
+     * Tests that a request still throttled after every retry fails, and other errors are not
+     * retried.
+     */
+    @Test
+    public void testGivesUp() {
+        RateLimiter limiter = new RateLimiter(1000, 10, 8, Duration.ofSeconds(1), 1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> limiter.execute(() -> {
+                    calls.incrementAndGet();
+                    return CompletableFuture.<String>failedFuture(
+                            new HttpStatusException("url", 429, Duration.ZERO));
+                }).get());
+        assertInstanceOf(HttpStatusException.class, error.getCause());
+        assertEquals(2, calls.get());
+
+        calls.set(0);
+        assertThrows(ExecutionException.class, () -> limiter.execute(() -> {
+            calls.incrementAndGet();
+            return CompletableFuture.<String>failedFuture(new HttpStatusException("url", 404));
+        }).get());
+        assertEquals(1, calls.get());
+    }
+}
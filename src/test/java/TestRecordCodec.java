@@ -0,0 +1,105 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.RecordCodec;
+
+/**
+ * Tests the record codec on its own and through a mapper.
+ */
+public class TestRecordCodec {
+
+    /** A record with a character that needs escaping and a missing field. */
+    private static final DNRecord RECORD = new DNRecord("a.example", "10.0.0.1",
+            "Say \"hi\"", null, "US", "", 1.5, -2.25);
+
+    /** Factory for the JSON tests. */
+    private final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Tests writing JSON and reading it back, on its own and through a mapper.
+     */
+    @Test
+    public void testJsonRoundTrip() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = factory.createGenerator(out)) {
+            RecordCodec.write(RECORD, gen);
+        }
+        String json = "{\"hostname\":\"a.example\",\"ip\":\"10.0.0.1\",\"city\":\"Say \\\"hi\\\"\","
+                + "\"region\":null,\"country\":\"US\",\"postal\":\"\",\"latitude\":1.5,"
+                + "\"longitude\":-2.25}";
+        assertEquals(json, out.toString());
+        try (JsonParser parser = factory.createParser(json)) {
+            assertEquals(RECORD, RecordCodec.read(parser));
+        }
+
+        ObjectMapper mapper = new ObjectMapper().registerModule(RecordCodec.module());
+        assertEquals(json, mapper.writeValueAsString(RECORD));
+        assertEquals(RECORD, mapper.readValue(json, DNRecord.class));
+    }
+
+    /**
+     * Tests reading an array of records, with fields it does not know.
+     */
+    @Test
+    public void testArray() throws IOException {
+        String json = "[{\"hostname\":\"a\",\"extra\":{\"nested\":[1,2]},\"latitude\":\"3\"},"
+                + "{\"ip\":\"1.2.3.4\"}]";
+        try (JsonParser parser = factory.createParser(json)) {
+            assertEquals(new DNRecord("a", null, null, null, null, null, 3, 0),
+                    RecordCodec.read(parser));
+            assertEquals(new DNRecord(null, "1.2.3.4", null, null, null, null, 0, 0),
+                    RecordCodec.read(parser));
+            assertNull(RecordCodec.read(parser));
+        }
+    }
+
+    /**
+     * Tests reading an ipapi.co XML response.
+     */
+    @Test
+    public void testReadXml() throws IOException {
+        String xml = """
+                <?xml version="1.0" encoding="utf-8"?>
+                <root>
+                <ip>142.250.72.78</ip>
+                <network>142.250.64.0/19</network>
+                <city>Plainview</city>
+                <region>New York</region>
+                <country>US</country>
+                <postal>11803</postal>
+                <latitude>40.774600</latitude>
+                <longitude>-73.476100</longitude>
+                <in_eu>False</in_eu>
+                </root>
+                """;
+        assertEquals(new DNRecord(null, "142.250.72.78", "Plainview", "New York", "US", "11803",
+                40.7746, -73.4761), RecordCodec.readXml(
+                        new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Tests that damaged input is rejected.
+     */
+    @Test
+    public void testDamaged() throws IOException {
+        try (JsonParser parser = factory.createParser("{\"hostname\":\"a\"")) {
+            assertThrows(IOException.class, () -> RecordCodec.read(parser));
+        }
+        try (JsonParser parser = factory.createParser("\"a\"")) {
+            assertThrows(IOException.class, () -> RecordCodec.read(parser));
+        }
+        try (JsonParser parser = factory.createParser("{\"latitude\":\"north\"}")) {
+            assertThrows(IOException.class, () -> RecordCodec.read(parser));
+        }
+    }
+}
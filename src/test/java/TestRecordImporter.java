@@ -0,0 +1,136 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+import student.model.io.RecordImporter;
+
+/**
+ * Tests reading records in any format, found from the first bytes.
+ */
+public class TestRecordImporter {
+
+    /** The records in the sample files. */
+    private static final List<DNRecord> RECORDS = List.of(
+            new DNRecord("www.github.com", "140.82.112.3", "San Francisco", "California", "US",
+                    "94110", 37.7509, -122.4153),
+            new DNRecord("www.northeastern.edu", "23.194.127.178", "Englewood", "Colorado", "US",
+                    "80110", 39.6463, -105.0092),
+            new DNRecord("www.google.com", "142.250.69.228", "Plainview", "New York", "US",
+                    "11803", 40.7746, -73.4761));
+
+    /** Folder for the files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Reads all the records in bytes.
+     *
+     * @param bytes the bytes
+     * @return the records
+     * @throws IOException if the bytes cannot be read
+     */
+    private static List<DNRecord> read(byte[] bytes) throws IOException {
+        try (Stream<DNRecord> records = RecordImporter.stream(new ByteArrayInputStream(bytes))) {
+            return records.toList();
+        }
+    }
+
+    /**
+     * Tests that what each format writes is read back, from a stream and from a file.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    @Test
+    public void testEveryFormat() throws IOException {
+        for (Formats format : List.of(Formats.XML, Formats.JSON, Formats.CSV, Formats.BINARY)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            DataFormatter.write(RECORDS, format, out);
+            Path file = Files.write(tempDir.resolve("records.dat"), out.toByteArray());
+            assertEquals(format, RecordImporter.detect(file));
+            try (Stream<DNRecord> records = RecordImporter.stream(file)) {
+                assertEquals(RECORDS, records.toList(), format.name());
+            }
+            if (format != Formats.BINARY) {
+                assertEquals(RECORDS, read(out.toByteArray()), format.name());
+            }
+        }
+        assertThrows(IOException.class, () -> RecordImporter.stream(
+                new ByteArrayInputStream(Files.readAllBytes(tempDir.resolve("records.dat")))));
+    }
+
+    /**
+     * Tests the looser input other systems write: JSON one record per line, CSV with the columns
+     * in another order and a byte order mark, and nothing at all.
+     *
+     * @throws IOException if the input cannot be read
+     */
+    @Test
+    public void testOtherShapes() throws IOException {
+        byte[] lines = ("{\"hostname\":\"a.example\",\"ip\":\"10.0.0.1\",\"asn\":{\"id\":1}}\n"
+                + "{\"hostname\":\"b.example\",\"latitude\":1.5}\n").getBytes(StandardCharsets.UTF_8);
+        assertEquals(List.of(new DNRecord("a.example", "10.0.0.1", null, null, null, null, 0, 0),
+                new DNRecord("b.example", null, null, null, null, null, 1.5, 0)), read(lines));
+
+        byte[] csv = ("\uFEFFip,hostname,latitude\n10.0.0.1,a.example,2.5\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+        List<DNRecord> read = read(csv);
+        assertEquals(1, read.size());
+        assertEquals("a.example", read.get(0).hostname());
+        assertEquals(2.5, read.get(0).latitude());
+
+        assertEquals(List.of(), read(" \n".getBytes(StandardCharsets.UTF_8)));
+        assertNull(RecordImporter.detect(Files.write(tempDir.resolve("empty"), new byte[0])));
+    }
+
+    /**
+     * Tests a JSON export used as the database, including the chunked load of the whole file.
+     *
+     * @throws IOException if the file cannot be copied
+     */
+    @Test
+    public void testJsonDatabase() throws IOException {
+        Path database = Files.copy(Path.of("data/samples/output.json"),
+                tempDir.resolve("export.json"));
+        DomainNameModel model = DomainNameModel.getInstance(database.toString(),
+                hostname -> null);
+        assertEquals(RECORDS.get(1), model.getRecord("www.northeastern.edu"));
+        assertEquals(RECORDS, model.getRecords());
+    }
+
+    /**
+     * Tests that a new record is not saved to a JSON export used as the database, which compacting
+     * would otherwise rewrite as xml.
+     *
+     * @throws IOException if the file cannot be copied
+     */
+    @Test
+    public void testExportNotRewritten() throws IOException {
+        Path database = Files.copy(Path.of("data/samples/output.json"),
+                tempDir.resolve("export.json"));
+        byte[] original = Files.readAllBytes(database);
+        DomainNameModel model = DomainNameModel.getInstance(database.toString(),
+                hostname -> new DNRecord(hostname, "10.0.0.1", null, null, "US", null, 0, 0));
+        assertEquals("10.0.0.1", model.getRecord("new.example").ip());
+        assertEquals(4, model.getRecords().size());
+        model.compact();
+
+        assertFalse(Files.exists(tempDir.resolve("export.json.journal")));
+        assertArrayEquals(original, Files.readAllBytes(database));
+        assertEquals(Formats.JSON, RecordImporter.detect(database));
+    }
+}
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordField;
+import student.model.RecordQuery;
+import student.model.io.ShardManifest;
+
+/**
+ * Tests for querying the records with a filter, a sort and a limit.
+ */
+public class TestRecordQuery {
+
+    /** Folder for the sharded database. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Builds records with a few countries and regions, in a shuffled order.
+     *
+     * @param count the number of records
+     * @return the records
+     */
+    private static List<DNRecord> records(int count) {
+        Random random = new Random(42);
+        String[] countries = {"US", "CA", "DE", null};
+        List<DNRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String country = countries[random.nextInt(countries.length)];
+            records.add(new DNRecord("host" + i + ".example", "10.0.0." + i % 256, null,
+                    "region" + random.nextInt(5), country, null, random.nextDouble() * 180 - 90,
+                    0));
+        }
+        return records;
+    }
+
+    /**
+     * Tests that a sort with a limit keeps the same records as sorting everything.
+     */
+    @Test
+    public void testTopMatchesFullSort() {
+        List<DNRecord> records = records(2000);
+        for (String sort : List.of("latitude", "-latitude", "country", "-country", "hostname")) {
+            RecordQuery all = RecordQuery.parse("region=region3", sort, null);
+            RecordQuery top = RecordQuery.parse("region=region3", sort, "25");
+            List<DNRecord> sorted = all.apply(records.stream()).toList();
+            assertEquals(sorted.subList(0, 25), top.apply(records.stream()).toList(), sort);
+        }
+        assertEquals(records.subList(0, 3),
+                RecordQuery.parse(null, null, "3").apply(records.stream()).toList());
+    }
+
+    /**
+     * Tests that nulls sort last both ways, and that the stream is closed.
+     */
+    @Test
+    public void testNullsLastAndClose() {
+        List<DNRecord> records = records(200);
+        boolean[] closed = new boolean[1];
+        try (Stream<DNRecord> found = RecordQuery.parse(null, "-country", "200")
+                .apply(records.stream().onClose(() -> closed[0] = true))) {
+            List<DNRecord> list = found.toList();
+            assertEquals("US", list.get(0).country());
+            assertEquals(null, list.get(list.size() - 1).country());
+        }
+        assertEquals(true, closed[0]);
+    }
+
+    /**
+     * Tests a query on the model, with and without an index, and on a sharded copy of it.
+     *
+     * @throws IOException if the shards cannot be written
+     */
+    @Test
+    public void testModel() throws IOException {
+        List<DNRecord> records = records(500);
+        ShardManifest.create(tempDir.resolve("shards"), 4, records.iterator());
+        DomainNameModel sharded = DomainNameModel.getInstance(tempDir.resolve("shards").toString(),
+                hostname -> null);
+        RecordQuery query = new RecordQuery(Map.of(RecordField.COUNTRY, "us"),
+                RecordField.LATITUDE, false, 10);
+        // the empty fields come back as empty strings, so the hostnames are compared
+        try (Stream<DNRecord> found = sharded.query(query)) {
+            assertEquals(query.apply(records.stream()).map(DNRecord::hostname).toList(),
+                    found.map(DNRecord::hostname).toList());
+        }
+        RecordQuery unindexed = RecordQuery.parse("latitude=" + records.get(7).latitude(), null,
+                null);
+        try (Stream<DNRecord> found = sharded.query(unindexed)) {
+            assertEquals(List.of(records.get(7).hostname()),
+                    found.map(DNRecord::hostname).toList());
+        }
+        try (Stream<DNRecord> found = sharded.query(
+                RecordQuery.parse("hostname=HOST9.example", null, null))) {
+            assertEquals(List.of(records.get(9).hostname()),
+                    found.map(DNRecord::hostname).toList());
+        }
+
+        DomainNameModel model = DomainNameModel.getInstance(DomainNameModel.DATABASE);
+        try (Stream<DNRecord> found = model.query(RecordQuery.parse("city=englewood,country=us",
+                null, null))) {
+            assertEquals(List.of("www.northeastern.edu"),
+                    found.map(DNRecord::hostname).toList());
+        }
+    }
+
+    /**
+     * Tests that bad queries are rejected.
+     */
+    @Test
+    public void testParse() {
+        assertThrows(IllegalArgumentException.class, () -> RecordQuery.parse("country", null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> RecordQuery.parse("country=US,country=CA", null, null));
+        assertThrows(IllegalArgumentException.class, () -> RecordQuery.parse(null, "size", null));
+        assertThrows(IllegalArgumentException.class, () -> RecordQuery.parse(null, null, "-1"));
+        assertEquals(RecordField.IP, RecordQuery.parse(null, "-IP", null).getSort());
+    }
+}
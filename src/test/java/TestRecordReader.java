@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import student.model.DomainNameModel.DNRecord;
+import student.model.io.RecordReader;
+
+/**
+ * Tests for the streaming xml RecordReader.
+ */
+public class TestRecordReader {
+
+    /**
+     * Builds a reader over an xml string.
+     *
+     * @param xml the xml to read
+     * @return the reader
+     * @throws IOException if the reader cannot be opened
+     */
+    private static RecordReader reader(String xml) throws IOException {
+        return new RecordReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Tests reading records in order, skipping fields that are not part of the record.
+     */
+    @Test
+    public void testReadSkipsUnknownFields() throws IOException {
+        String xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <domainList>
+                    <domain>
+                        <hostname>github.com</hostname>
+                        <ip>140.82.112.3</ip>
+                        <network><range>140.82.112.0/20</range></network>
+                        <city>San Francisco</city>
+                        <country>US</country>
+                        <region>California</region>
+                        <postal>94110</postal>
+                        <latitude>37.7509</latitude>
+                        <longitude>-122.4153</longitude>
+                    </domain>
+                    <domain>
+                        <hostname>empty.com</hostname>
+                        <latitude></latitude>
+                    </domain>
+                </domainList>
+                """;
+        try (RecordReader reader = reader(xml)) {
+            assertEquals(new DNRecord("github.com", "140.82.112.3", "San Francisco", "California",
+                    "US", "94110", 37.7509, -122.4153), reader.next());
+            assertEquals(new DNRecord("empty.com", null, null, null, null, null, 0, 0),
+                    reader.next());
+            assertFalse(reader.hasNext());
+        }
+    }
+
+    /**
+     * Tests that malformed xml is reported when it is reached.
+     */
+    @Test
+    public void testMalformed() throws IOException {
+        try (RecordReader reader = reader("<domainList><domain><hostname>a</domain>")) {
+            assertThrows(UncheckedIOException.class, reader::hasNext);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordFetcher;
+import student.model.RecordField;
+import student.model.formatters.DataFormatter;
+
+/**
+ * Tests for refreshing old records, set up with the dninfo.refresh system properties.
+ */
+public class TestRecordRefresher {
+    /** An hour, in millis. */
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    /** Folder for the database. */
+    @TempDir
+    Path tempDir;
+
+    /** The database file. */
+    private String database;
+
+    /** Number of times the stub fetcher was called. */
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    /** Stub fetcher, which always finds the hostname at a new address. */
+    private final RecordFetcher stub = hostname -> {
+        fetches.incrementAndGet();
+        return new DNRecord(hostname, "10.0.0.2", "Seattle", "Washington", "US", "98109",
+                47.6062, -122.3321);
+    };
+
+    /**
+     * Sets up a database fetched two hours ago.
+     *
+     * @throws IOException if the database cannot be written
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        Path file = tempDir.resolve("hostrecords.xml");
+        long fetched = System.currentTimeMillis() - 2 * HOUR;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            DataFormatter.writeDatabase(List.of(
+                    new DNRecord("a.example", "10.0.0.1", null, null, "US", null, 0, 0, fetched),
+                    new DNRecord("b.example", "10.0.0.1", null, null, "US", null, 0, 0, fetched))
+                    .iterator(), out);
+        }
+        database = file.toString();
+    }
+
+    /**
+     * Turns refreshing back off.
+     */
+    @AfterEach
+    public void tearDown() {
+        System.clearProperty("dninfo.refresh.softTtl");
+        System.clearProperty("dninfo.refresh.hardTtl");
+        System.clearProperty("dninfo.refresh.interval");
+    }
+
+    /**
+     * Waits up to ten seconds for a condition.
+     *
+     * @param condition the condition
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    /**
+     * Tests that the fetched-at time is kept in the database, and that old records are served as
+     * they are when refreshing is off.
+     */
+    @Test
+    public void testOffByDefault() {
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        DNRecord record = model.getRecord("a.example");
+        assertEquals("10.0.0.1", record.ip());
+        assertTrue(record.fetchedAt() < System.currentTimeMillis() - HOUR);
+        assertEquals(0, fetches.get());
+    }
+
+    /**
+     * Tests that a one-shot lookup serves a record past the soft TTL as is, without starting a
+     * background fetch the program would exit before saving.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testStaleServedOnce() throws InterruptedException {
+        System.setProperty("dninfo.refresh.softTtl", "3600");
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        assertEquals("10.0.0.1", model.getRecord("a.example").ip());
+        Thread.sleep(100);
+        assertEquals(0, fetches.get());
+    }
+
+    /**
+     * Tests that once the model is loaded, a record past the soft TTL is served at once, and
+     * replaced in the background.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testStaleServedThenRefreshed() throws InterruptedException {
+        System.setProperty("dninfo.refresh.softTtl", "3600");
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        model.load();
+        assertEquals("10.0.0.1", model.getRecord("a.example").ip());
+        await(() -> "10.0.0.2".equals(model.getRecord("a.example").ip()));
+        assertEquals(1, fetches.get());
+        assertEquals(List.of("b.example"), model.getRecordsBy(RecordField.IP, "10.0.0.1")
+                .stream().map(DNRecord::hostname).toList());
+
+        // the refreshed record is saved in place, with the time it was fetched
+        System.clearProperty("dninfo.refresh.softTtl");
+        await(() -> "10.0.0.2".equals(
+                DomainNameModel.getInstance(database, stub).getRecords().get(0).ip()));
+        List<DNRecord> saved = DomainNameModel.getInstance(database, stub).getRecords();
+        assertEquals("a.example", saved.get(0).hostname());
+        assertEquals("10.0.0.2", saved.get(0).ip());
+        assertTrue(saved.get(0).fetchedAt() > System.currentTimeMillis() - HOUR);
+        assertEquals(2, saved.size());
+    }
+
+    /**
+     * Tests that a record past the hard TTL is fetched before it is served.
+     */
+    @Test
+    public void testExpiredFetchedFirst() {
+        System.setProperty("dninfo.refresh.hardTtl", "3600");
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        assertEquals("10.0.0.2", model.getRecord("a.example").ip());
+        assertEquals("10.0.0.2", model.getRecord("a.example").ip());
+        assertEquals(1, fetches.get());
+    }
+
+    /**
+     * Tests that records that are not looked up are refreshed by the sweep once they are loaded.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    @Test
+    public void testSweep() throws InterruptedException {
+        System.setProperty("dninfo.refresh.softTtl", "3600");
+        System.setProperty("dninfo.refresh.interval", "1");
+        DomainNameModel model = DomainNameModel.getInstance(database, stub);
+        assertEquals(2, model.getRecords().size());
+        await(() -> model.getRecords().stream().allMatch(r -> "10.0.0.2".equals(r.ip())));
+        assertEquals(2, fetches.get());
+    }
+}
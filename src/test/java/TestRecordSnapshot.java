@@ -0,0 +1,102 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.formatters.DataFormatter;
+import student.model.formatters.Formats;
+import student.model.io.RecordSnapshot;
+
+/**
+ * Tests for the memory mapped binary RecordSnapshot.
+ */
+public class TestRecordSnapshot {
+
+    /** Folder for the snapshot files. */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Tests that records written with the BINARY format read back the same, nulls included.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<DNRecord> records = List.of(
+                new DNRecord("www.github.com", "140.82.112.3", "San Francisco", "California",
+                        "US", "94110", 37.7509, -122.4153),
+                new DNRecord("m\u00fcnchen.de", "1.2.3.4", null, null, "DE", null, 0, -0.5));
+        Path file = tempDir.resolve("records.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            DataFormatter.write(records, Formats.BINARY, out);
+        }
+
+        RecordSnapshot snapshot = RecordSnapshot.open(file);
+        assertEquals(2, snapshot.size());
+        assertEquals(0, snapshot.getSourceModified());
+        assertEquals(records, snapshot.stream().toList());
+        assertEquals("m\u00fcnchen.de", snapshot.hostname(1));
+        assertEquals(records.get(0), snapshot.find("WWW.GITHUB.COM"));
+        assertNull(snapshot.find("www.google.com"));
+        assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(2));
+    }
+
+    /**
+     * Tests that the snapshot of a database is built on first use and rebuilt whenever the xml
+     * changes, even to a file with an older time.
+     */
+    @Test
+    public void testRebuiltWhenXmlChanges() throws IOException {
+        Path database = tempDir.resolve("hostrecords.xml");
+        Files.copy(Path.of(DomainNameModel.DATABASE), database);
+        Files.setLastModifiedTime(database, FileTime.fromMillis(1_000_000));
+
+        RecordSnapshot first = RecordSnapshot.forDatabase(database);
+        assertTrue(Files.exists(RecordSnapshot.snapshotFor(database)));
+        assertEquals(3, first.size());
+        assertEquals(1_000_000, first.getSourceModified());
+
+        Files.writeString(database, """
+                <domainList>
+                    <domain><hostname>only.com</hostname><ip>1.1.1.1</ip></domain>
+                </domainList>
+                """);
+        Files.setLastModifiedTime(database, FileTime.fromMillis(2_000_000));
+        RecordSnapshot second = RecordSnapshot.forDatabase(database);
+        assertEquals(1, second.size());
+        assertEquals("only.com", second.hostname(0));
+        assertEquals(2_000_000, second.getSourceModified());
+
+        // a backup put back with its older time is not hidden by the newer snapshot
+        Files.copy(Path.of(DomainNameModel.DATABASE), database,
+                StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(database, FileTime.fromMillis(1_000_000));
+        RecordSnapshot restored = RecordSnapshot.forDatabase(database);
+        assertEquals(3, restored.size());
+        assertEquals(Files.size(database), restored.getSourceSize());
+
+        // and neither is an edit that keeps the time
+        Files.writeString(database, "<domainList></domainList>");
+        Files.setLastModifiedTime(database, FileTime.fromMillis(1_000_000));
+        assertEquals(0, RecordSnapshot.forDatabase(database).size());
+    }
+
+    /**
+     * Tests that a file that is not a snapshot is rejected.
+     */
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = tempDir.resolve("bad.bin");
+        Files.writeString(file, "this is not a snapshot at all");
+        assertThrows(IOException.class, () -> RecordSnapshot.open(file));
+    }
+}
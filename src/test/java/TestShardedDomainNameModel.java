@@ -0,0 +1,152 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import student.model.DomainNameModel;
+import student.model.DomainNameModel.DNRecord;
+import student.model.RecordFetcher;
+import student.model.RecordField;
+import student.model.io.RecordJournal;
+import student.model.io.ShardManifest;
+
+/**
+ * Tests for a database sharded by hostname, opened through DomainNameModel.getInstance.
+ */
+public class TestShardedDomainNameModel {
+    /** Number of shards the sample records are split into. */
+    private static final int SHARDS = 4;
+
+    /** Folder for the sharded database. */
+    @TempDir
+    Path tempDir;
+
+    /** The manifest of the sharded database. */
+    private ShardManifest manifest;
+
+    /** The records of the sample database. */
+    private List<DNRecord> sample;
+
+    /** Stub fetcher, every hostname is in Seattle. */
+    private final RecordFetcher stub = hostname -> new DNRecord(hostname, "10.0.0.1", "Seattle",
+            "Washington", "US", "98109", 47.6062, -122.3321);
+
+    /**
+     * Splits the sample database into shards.
+     *
+     * @throws IOException if the shards cannot be written
+     */
+    @BeforeEach
+    public void setUp() throws IOException {
+        sample = DomainNameModel.getInstance(DomainNameModel.DATABASE, stub).getRecords();
+        manifest = ShardManifest.create(tempDir, SHARDS, sample.iterator());
+    }
+
+    /**
+     * Opens the sharded database.
+     *
+     * @return the model
+     */
+    private DomainNameModel open() {
+        return DomainNameModel.getInstance(tempDir.toString(), stub);
+    }
+
+    /**
+     * Tests that the manifest reads back, and every record is in the shard its hostname hashes to.
+     */
+    @Test
+    public void testManifest() throws IOException {
+        ShardManifest read = ShardManifest.read(manifest.getFile());
+        assertEquals(manifest.getShards(), read.getShards());
+        for (int i = 0; i < SHARDS; i++) {
+            for (DNRecord record : DomainNameModel
+                    .getInstance(read.getShards().get(i).toString(), stub).getRecords()) {
+                assertEquals(i, read.shardOf(record.hostname()));
+                assertEquals(i, read.shardOf(record.hostname().toUpperCase()));
+            }
+        }
+        Files.writeString(manifest.getFile(), "{\"version\": 2, \"shards\": [\"a.xml\"]}");
+        assertThrows(UncheckedIOException.class, this::open);
+    }
+
+    /**
+     * Tests the queries over every shard against the single file database.
+     */
+    @Test
+    public void testQueries() {
+        DomainNameModel model = open();
+        assertEquals(new HashSet<>(sample), new HashSet<>(model.getRecords()));
+        try (Stream<DNRecord> records = model.streamRecords()) {
+            assertEquals(model.getRecords(), records.toList());
+        }
+        for (DNRecord record : sample) {
+            assertEquals(record, model.getRecord(record.hostname()));
+            assertEquals(List.of(record),
+                    model.getRecordsBy(RecordField.HOSTNAME, record.hostname()));
+        }
+        DomainNameModel single = DomainNameModel.getInstance(DomainNameModel.DATABASE, stub);
+        assertEquals(single.getNearestRecords(40.7, -73.9, 2),
+                model.getNearestRecords(40.7, -73.9, 2));
+        assertEquals(single.getRecordsNear(39.6, -105.0, 3000),
+                model.getRecordsNear(39.6, -105.0, 3000));
+        assertEquals(single.groupRecordsBy(RecordField.COUNTRY).keySet(),
+                model.groupRecordsBy(RecordField.COUNTRY).keySet());
+    }
+
+    /**
+     * Tests that new records only touch the shard they belong to, including when compacted.
+     */
+    @Test
+    public void testInsertTouchesOneShard() throws IOException {
+        List<String> before = new ArrayList<>();
+        for (Path shard : manifest.getShards()) {
+            before.add(Files.readString(shard));
+        }
+        String hostname = "new.example.com";
+        int owner = manifest.shardOf(hostname);
+        DomainNameModel model = open();
+        model.getRecords(List.of(hostname));
+
+        for (int i = 0; i < SHARDS; i++) {
+            Path journal = RecordJournal.journalFor(manifest.getShards().get(i));
+            assertEquals(i == owner, Files.exists(journal));
+        }
+        model.compact();
+        for (int i = 0; i < SHARDS; i++) {
+            Path shard = manifest.getShards().get(i);
+            assertFalse(Files.exists(RecordJournal.journalFor(shard)));
+            assertEquals(i != owner, before.get(i).equals(Files.readString(shard)));
+        }
+        assertTrue(open().getRecords().contains(stub.fetch(hostname)
+                .withFetchedAt(open().getRecord(hostname).fetchedAt())));
+        assertEquals(sample.size() + 1, open().getRecords().size());
+    }
+
+    /**
+     * Tests that sharding into a folder already used leaves nothing of the old database: no
+     * journal to replay and no shard past the new count.
+     */
+    @Test
+    public void testReshardReplacesOldShards() throws IOException {
+        open().getRecords(List.of("new.example.com"));
+        assertEquals(sample.size() + 1, open().getRecords().size());
+
+        ShardManifest smaller = ShardManifest.create(tempDir, 2, sample.iterator());
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(List.of("manifest.json", "shard-000.xml", "shard-001.xml"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+        assertEquals(smaller.getShards(), ShardManifest.read(tempDir).getShards());
+        assertEquals(new HashSet<>(sample), new HashSet<>(open().getRecords()));
+    }
+}
@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import student.model.DomainNameModel.DNRecord;
+import student.model.index.SpatialIndex;
+
+/**
+ * Tests the SpatialIndex against a scan of every record.
+ */
+public class TestSpatialIndex {
+
+    /**
+     * Builds records at random locations, plus one with no location.
+     *
+     * @param count the number of records
+     * @return the records
+     */
+    private static List<DNRecord> randomRecords(int count) {
+        Random random = new Random(42);
+        List<DNRecord> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            records.add(new DNRecord("host" + i + ".com", "10.0.0.1", null, null, null, null,
+                    random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        records.add(new DNRecord("nowhere.com", "10.0.0.2", null, null, null, null, 0, 0));
+        return records;
+    }
+
+    /**
+     * Gets the records in distance order by scanning.
+     *
+     * @param records the records
+     * @param lat latitude of the point
+     * @param lon longitude of the point
+     * @return the records with a location, closest first
+     */
+    private static List<DNRecord> byDistance(List<DNRecord> records, double lat, double lon) {
+        return records.stream()
+                .filter(r -> r.latitude() != 0 || r.longitude() != 0)
+                .sorted(Comparator.comparingDouble(
+                        r -> SpatialIndex.distanceKm(lat, lon, r.latitude(), r.longitude())))
+                .toList();
+    }
+
+    /**
+     * Tests radius and nearest queries, including ones across the antimeridian and at a pole.
+     */
+    @Test
+    public void testMatchesScan() {
+        List<DNRecord> records = randomRecords(5000);
+        SpatialIndex index = new SpatialIndex(records);
+        assertEquals(5000, index.size());
+        double[][] points = {{47.6, -122.3}, {10, 179.9}, {-89.5, 0}, {0.1, 0.1}};
+        for (double[] p : points) {
+            List<DNRecord> sorted = byDistance(records, p[0], p[1]);
+            assertEquals(sorted.subList(0, 10), index.nearest(p[0], p[1], 10));
+
+            List<DNRecord> within = sorted.stream().filter(r -> SpatialIndex.distanceKm(p[0],
+                    p[1], r.latitude(), r.longitude()) <= 800).toList();
+            assertEquals(within, index.near(p[0], p[1], 800));
+        }
+        assertEquals(5000, index.near(0, 0, 30_000).size());
+        assertEquals(5000, index.nearest(0, 0, 10_000).size());
+    }
+
+    /**
+     * Tests that bad queries are rejected, and an empty index finds nothing.
+     */
+    @Test
+    public void testBadQueries() {
+        SpatialIndex index = new SpatialIndex(List.of());
+        assertTrue(index.near(0, 0, 100).isEmpty());
+        assertTrue(index.nearest(0, 0, 3).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> index.near(91, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> index.near(0, 0, -1));
+        assertThrows(IllegalArgumentException.class, () -> index.nearest(0, 0, 0));
+    }
+}